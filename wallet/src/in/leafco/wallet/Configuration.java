@@ -17,8 +17,6 @@
 
 package in.leafco.wallet;
 
-import java.math.BigInteger;
-
 import javax.annotation.Nonnull;
 
 import org.slf4j.Logger;
@@ -29,6 +27,9 @@ import android.content.SharedPreferences.Editor;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.text.format.DateUtils;
 import in.leafco.wallet.ExchangeRatesProvider.ExchangeRate;
+import in.leafco.wallet.service.AutosyncScheduler;
+import in.leafco.wallet.service.AutosyncScheduler.SyncResult;
+import in.leafco.wallet.util.Amount;
 
 /**
  * @author Andreas Schildbach
@@ -56,6 +57,9 @@ public class Configuration
 	private static final String PREFS_KEY_CACHED_EXCHANGE_RATE = "cached_exchange_rate";
 	private static final String PREFS_KEY_LAST_EXCHANGE_DIRECTION = "last_exchange_direction";
 	private static final String PREFS_KEY_CHANGE_LOG_VERSION = "change_log_version";
+	private static final String PREFS_KEY_SYNC_BLOCKS_PER_SECOND = "sync_blocks_per_second";
+	private static final String PREFS_KEY_SYNC_FAILURES = "sync_failures";
+	private static final String PREFS_KEY_SYNC_PENDING_INCOMING = "sync_pending_incoming";
 	public static final String PREFS_KEY_REMIND_BACKUP = "remind_backup";
 
 	private static final String PREFS_DEFAULT_BTC_PRECISION = "2/3";
@@ -180,11 +184,16 @@ public class Configuration
 			log.warn("detected app downgrade: " + lastVersionCode + " -> " + currentVersionCode);
 	}
 
+	public long getLastUsed()
+	{
+		return prefs.getLong(PREFS_KEY_LAST_USED, 0);
+	}
+
 	public long getLastUsedAgo()
 	{
 		final long now = System.currentTimeMillis();
 
-		return now - prefs.getLong(PREFS_KEY_LAST_USED, 0);
+		return now - getLastUsed();
 	}
 
 	public void touchLastUsed()
@@ -206,12 +215,46 @@ public class Configuration
 		prefs.edit().putInt(PREFS_KEY_BEST_CHAIN_HEIGHT_EVER, bestChainHeightEver).commit();
 	}
 
+	public float getSyncBlocksPerSecond()
+	{
+		return prefs.getFloat(PREFS_KEY_SYNC_BLOCKS_PER_SECOND, 0);
+	}
+
+	public void updateSyncBlocksPerSecond(final float blocksPerSecond)
+	{
+		final float previous = getSyncBlocksPerSecond();
+
+		// weigh previous syncs higher than the last one, so a single slow sync doesn't skew the estimate
+		final float updated = previous > 0 ? (previous * 3 + blocksPerSecond) / 4 : blocksPerSecond;
+		prefs.edit().putFloat(PREFS_KEY_SYNC_BLOCKS_PER_SECOND, updated).commit();
+
+		log.info("sync rate was {} blocks/s, now estimating {} blocks/s", blocksPerSecond, updated);
+	}
+
+	public int getSyncFailures()
+	{
+		return prefs.getInt(PREFS_KEY_SYNC_FAILURES, 0);
+	}
+
+	public boolean getSyncPendingIncoming()
+	{
+		return prefs.getBoolean(PREFS_KEY_SYNC_PENDING_INCOMING, false);
+	}
+
+	public void recordSyncResult(@Nonnull final SyncResult result)
+	{
+		final int failures = AutosyncScheduler.consecutiveFailures(getSyncFailures(), result);
+		prefs.edit().putInt(PREFS_KEY_SYNC_FAILURES, failures).putBoolean(PREFS_KEY_SYNC_PENDING_INCOMING, result.pendingIncoming).commit();
+
+		log.info("sync result: {}, {} consecutive failures", result, failures);
+	}
+
 	public ExchangeRate getCachedExchangeRate()
 	{
 		if (prefs.contains(PREFS_KEY_CACHED_EXCHANGE_CURRENCY) && prefs.contains(PREFS_KEY_CACHED_EXCHANGE_RATE))
 		{
 			final String cachedExchangeCurrency = prefs.getString(PREFS_KEY_CACHED_EXCHANGE_CURRENCY, null);
-			final BigInteger cachedExchangeRate = BigInteger.valueOf(prefs.getLong(PREFS_KEY_CACHED_EXCHANGE_RATE, 0));
+			final Amount cachedExchangeRate = Amount.valueOf(prefs.getLong(PREFS_KEY_CACHED_EXCHANGE_RATE, 0));
 			return new ExchangeRate(cachedExchangeCurrency, cachedExchangeRate, null);
 		}
 		else
@@ -50,6 +50,8 @@ public class Constants
 
 	public static final String CHECKPOINTS_FILENAME = "checkpoints" + FILENAME_NETWORK_SUFFIX;
 
+	public static final String BROADCAST_QUEUE_FILENAME = "broadcast-queue" + FILENAME_NETWORK_SUFFIX;
+
 	private static final String BLOCKEXPLORER_BASE_URL_PROD = "http://explorer.leafco.in/";
 	private static final String BLOCKEXPLORER_BASE_URL_TEST = "https://explorer.leafco.in/testnet/"; //LEAF: Not yet...
 	public static final String BLOCKEXPLORER_BASE_URL = NETWORK_PARAMETERS.getId().equals(NetworkParameters.ID_MAINNET) ? BLOCKEXPLORER_BASE_URL_PROD
@@ -61,11 +63,14 @@ public class Constants
 	public static final String MIMETYPE_TRANSACTION = "application/x-leaftx";
 
 	public static final int MAX_NUM_CONFIRMATIONS = 3;
+	public static final int MAX_TRANSACTION_SIZE = 100000;
 	public static final String USER_AGENT = "Leafcoin Wallet";
 	public static final String DEFAULT_EXCHANGE_CURRENCY = "USD";
 	public static final int WALLET_OPERATION_STACK_SIZE = 256 * 1024;
 	public static final long BLOCKCHAIN_STATE_BROADCAST_THROTTLE_MS = DateUtils.SECOND_IN_MILLIS;
 	public static final long BLOCKCHAIN_UPTODATE_THRESHOLD_MS = DateUtils.HOUR_IN_MILLIS;
+	public static final long BLOCKCHAIN_STALL_WINDOW_MS = DateUtils.MINUTE_IN_MILLIS;
+	public static final int BLOCKCHAIN_STALL_MIN_BLOCKS = 10;
 
 	public static final String CURRENCY_CODE_BTC = "LEAF";
 	public static final String CURRENCY_CODE_MBTC = "mLEAF";
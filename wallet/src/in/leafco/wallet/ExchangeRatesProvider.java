@@ -50,6 +50,7 @@ import android.net.Uri;
 import android.preference.PreferenceManager;
 import android.provider.BaseColumns;
 import android.text.format.DateUtils;
+import in.leafco.wallet.util.Amount;
 import in.leafco.wallet.util.GenericUtils;
 import in.leafco.wallet.util.Io;
 
@@ -60,7 +61,7 @@ public class ExchangeRatesProvider extends ContentProvider
 {
 	public static class ExchangeRate
 	{
-		public ExchangeRate(@Nonnull final String currencyCode, @Nonnull final BigInteger rate, final String source)
+		public ExchangeRate(@Nonnull final String currencyCode, @Nonnull final Amount rate, final String source)
 		{
 			this.currencyCode = currencyCode;
 			this.rate = rate;
@@ -68,13 +69,13 @@ public class ExchangeRatesProvider extends ContentProvider
 		}
 
 		public final String currencyCode;
-		public BigInteger rate;
+		public Amount rate;
 		public final String source;
 
 		@Override
 		public String toString()
 		{
-			return getClass().getSimpleName() + '[' + currencyCode + ':' + GenericUtils.formatValue(rate, Constants.BTC_MAX_PRECISION, 0) + ']';
+			return getClass().getSimpleName() + '[' + currencyCode + ':' + GenericUtils.formatValue(rate.longValue(), Constants.BTC_MAX_PRECISION, 0) + ']';
 		}
 	}
 
@@ -194,7 +195,7 @@ public class ExchangeRatesProvider extends ContentProvider
                 }
                 float mBTCRate = leafBtcConversion*1000;
                 String strmBTCRate = String.format("%.5f", mBTCRate).replace(',', '.');
-                newExchangeRates.put("mBTC", new ExchangeRate("mBTC", new BigDecimal(GenericUtils.toNanoCoins(strmBTCRate, 0)).toBigInteger(), providerUrl));
+                newExchangeRates.put("mBTC", new ExchangeRate("mBTC", GenericUtils.toAmount(strmBTCRate, 0), providerUrl));
 				exchangeRates = newExchangeRates;
 				lastUpdated = now;
 
@@ -257,7 +258,7 @@ public class ExchangeRatesProvider extends ContentProvider
 	public static ExchangeRate getExchangeRate(@Nonnull final Cursor cursor)
 	{
 		final String currencyCode = cursor.getString(cursor.getColumnIndexOrThrow(ExchangeRatesProvider.KEY_CURRENCY_CODE));
-		final BigInteger rate = BigInteger.valueOf(cursor.getLong(cursor.getColumnIndexOrThrow(ExchangeRatesProvider.KEY_RATE)));
+		final Amount rate = Amount.valueOf(cursor.getLong(cursor.getColumnIndexOrThrow(ExchangeRatesProvider.KEY_RATE)));
 		final String source = cursor.getString(cursor.getColumnIndexOrThrow(ExchangeRatesProvider.KEY_SOURCE));
 
 		return new ExchangeRate(currencyCode, rate, source);
@@ -332,7 +333,7 @@ public class ExchangeRatesProvider extends ContentProvider
 
 									if (leafRate.signum() > 0)
 									{
-										rates.put(currencyCode, new ExchangeRate(currencyCode, leafRate, url.getHost()));
+										rates.put(currencyCode, new ExchangeRate(currencyCode, Amount.valueOf(leafRate), url.getHost()));
 										break;
 									}
 								}
@@ -35,6 +35,7 @@ import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 
 import in.leafco.wallet.service.AutosyncReceiver;
+import in.leafco.wallet.service.AutosyncScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,8 +45,10 @@ import android.app.Application;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager.NameNotFoundException;
+import android.os.BatteryManager;
 import android.os.StrictMode;
 import android.preference.PreferenceManager;
 import android.text.format.DateUtils;
@@ -488,6 +491,21 @@ public class WalletApplication extends Application
 		startService(intent);
 	}
 
+	/**
+	 * Broadcasts several transactions from the wallet with one request to the blockchain service. Only the hashes travel, so the
+	 * request stays small regardless of the size of the transactions.
+	 */
+	public void broadcastTransactions(@Nonnull final List<Transaction> txs)
+	{
+		final byte[][] hashes = new byte[txs.size()][];
+		for (int i = 0; i < hashes.length; i++)
+			hashes[i] = txs.get(i).getHash().getBytes();
+
+		final Intent intent = new Intent(BlockchainService.ACTION_BROADCAST_TRANSACTIONS, null, this, BlockchainServiceImpl.class);
+		intent.putExtra(BlockchainService.ACTION_BROADCAST_TRANSACTIONS_HASHES, hashes);
+		startService(intent);
+	}
+
 	public static PackageInfo packageInfoFromContext(final Context context)
 	{
 		try
@@ -537,30 +555,44 @@ public class WalletApplication extends Application
 			return 6;
 	}
 
-	public static void scheduleStartBlockchainService(@Nonnull final Context context)
+	public static boolean isPowerConnected(@Nonnull final Context context)
+	{
+		final Intent batteryChanged = context.getApplicationContext().registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+
+		// if we didn't receive an intent, we assume the device is not charging
+		if (batteryChanged == null)
+			return false;
+
+		final int batteryStatus = batteryChanged.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+		return batteryStatus == BatteryManager.BATTERY_STATUS_CHARGING || batteryStatus == BatteryManager.BATTERY_STATUS_FULL;
+	}
+
+	/**
+	 * @param willSync
+	 *            if a sync is running or has just been started; only then are previous failures retried early
+	 */
+	public static void scheduleStartBlockchainService(@Nonnull final Context context, final boolean willSync)
 	{
 		final Configuration config = new Configuration(PreferenceManager.getDefaultSharedPreferences(context));
 
-		final long lastUsedAgo = config.getLastUsedAgo();
-        final long alarmInterval;
-        if (lastUsedAgo < Constants.LAST_USAGE_THRESHOLD_JUST_MS)
-            alarmInterval = AlarmManager.INTERVAL_FIFTEEN_MINUTES;
-        else if (lastUsedAgo < Constants.LAST_USAGE_THRESHOLD_RECENTLY_MS)
-            alarmInterval = AlarmManager.INTERVAL_HALF_DAY;
-        else
-            alarmInterval = AlarmManager.INTERVAL_DAY;
+		final long now = System.currentTimeMillis();
+		final long lastUsed = config.getLastUsed();
+		final int syncFailures = config.getSyncFailures();
+		final boolean syncPendingIncoming = config.getSyncPendingIncoming();
+		final float syncBlocksPerSecond = config.getSyncBlocksPerSecond();
+		final long alarmInterval = AutosyncScheduler.nextIntervalMs(now, lastUsed, syncFailures, syncPendingIncoming, syncBlocksPerSecond,
+				willSync);
 
-        log.info("last used {} minutes ago, rescheduling sync in roughly {} minutes", lastUsedAgo / DateUtils.MINUTE_IN_MILLIS, alarmInterval
-                / DateUtils.MINUTE_IN_MILLIS);
+		log.info("last used {} minutes ago, {} failed syncs{}{}, syncing at {} blocks/s, rescheduling sync in roughly {} minutes",
+				new Object[] { (now - lastUsed) / DateUtils.MINUTE_IN_MILLIS, syncFailures, syncPendingIncoming ? ", pending incoming" : "",
+						willSync ? "" : ", not syncing", syncBlocksPerSecond, alarmInterval / DateUtils.MINUTE_IN_MILLIS });
 
         final AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         final Intent startIntent = new Intent(context, AutosyncReceiver.class);
         startIntent.setAction("in.leafco.wallet.AUTOSYNC_ACTION");
         final PendingIntent alarmIntent = PendingIntent.getBroadcast(context, 0, startIntent, 0);
         alarmManager.cancel(alarmIntent);
-        
 
-		final long now = System.currentTimeMillis();
-            alarmManager.setInexactRepeating(AlarmManager.RTC_WAKEUP, now + alarmInterval, alarmInterval, alarmIntent);
+		alarmManager.setInexactRepeating(AlarmManager.RTC_WAKEUP, now + alarmInterval, alarmInterval, alarmIntent);
 	}
 }
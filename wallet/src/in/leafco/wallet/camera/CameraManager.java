@@ -28,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import android.annotation.SuppressLint;
+import android.graphics.ImageFormat;
 import android.graphics.Rect;
 import android.hardware.Camera;
 import android.hardware.Camera.CameraInfo;
@@ -45,9 +46,13 @@ public final class CameraManager
 	private static final int MAX_FRAME_SIZE = 600;
 	private static final int MIN_PREVIEW_PIXELS = 470 * 320; // normal screen
 	private static final int MAX_PREVIEW_PIXELS = 1280 * 720;
+	private static final float MAX_ASPECT_RATIO_DIFF = 0.15f;
+	/** Enough for QR codes up to version 16 at 4 pixels per module, or 2 pixels at half resolution. */
+	private static final int MIN_FRAME_PREVIEW_SIZE = 81 * 4;
 
 	private Camera camera;
 	private Camera.Size cameraResolution;
+	private int previewBufferSize;
 	private Rect frame;
 	private Rect framePreview;
 
@@ -63,6 +68,11 @@ public final class CameraManager
 		return framePreview;
 	}
 
+	public Camera.Size getCameraResolution()
+	{
+		return cameraResolution;
+	}
+
 	public Camera open(final SurfaceHolder holder, final boolean continuousAutoFocus) throws IOException
 	{
 		// try back-facing camera
@@ -91,14 +101,14 @@ public final class CameraManager
 		final Camera.Parameters parameters = camera.getParameters();
 
 		final Rect surfaceFrame = holder.getSurfaceFrame();
-		cameraResolution = findBestPreviewSizeValue(parameters, surfaceFrame);
-
 		final int surfaceWidth = surfaceFrame.width();
 		final int surfaceHeight = surfaceFrame.height();
 
 		final int rawSize = Math.min(surfaceWidth * 2 / 3, surfaceHeight * 2 / 3);
 		final int frameSize = Math.max(MIN_FRAME_SIZE, Math.min(MAX_FRAME_SIZE, rawSize));
 
+		cameraResolution = findBestPreviewSizeValue(parameters, surfaceFrame, frameSize);
+
 		final int leftOffset = (surfaceWidth - frameSize) / 2;
 		final int topOffset = (surfaceHeight - frameSize) / 2;
 		frame = new Rect(leftOffset, topOffset, leftOffset + frameSize, topOffset + frameSize);
@@ -129,12 +139,17 @@ public final class CameraManager
 			}
 		}
 
+		final Camera.Parameters actualParameters = camera.getParameters();
+		final int bitsPerPixel = ImageFormat.getBitsPerPixel(actualParameters.getPreviewFormat());
+		final Camera.Size previewSize = actualParameters.getPreviewSize();
+		previewBufferSize = previewSize.width * previewSize.height * (bitsPerPixel > 0 ? bitsPerPixel : 12) / 8;
+
 		camera.startPreview();
 
 		return camera;
 	}
 
-	public void close()
+	public synchronized void close()
 	{
 		if (camera != null)
 		{
@@ -148,6 +163,8 @@ public final class CameraManager
             {
                 //Swallow. We tried to release after release. We don't want to crash, eh?
             }
+
+			camera = null;
 		}
 	}
 
@@ -160,15 +177,19 @@ public final class CameraManager
 			final int pixels2 = size2.height * size2.width;
 
 			if (pixels1 < pixels2)
-				return 1;
-			else if (pixels1 > pixels2)
 				return -1;
+			else if (pixels1 > pixels2)
+				return 1;
 			else
 				return 0;
 		}
 	};
 
-	private static Camera.Size findBestPreviewSizeValue(final Camera.Parameters parameters, Rect surfaceResolution)
+	/**
+	 * Picks the smallest preview size that still resolves the framed area finely enough for dense codes, as long as its aspect ratio
+	 * is close to the surface's. Smaller previews are cheaper to decode.
+	 */
+	private static Camera.Size findBestPreviewSizeValue(final Camera.Parameters parameters, Rect surfaceResolution, final int frameSize)
 	{
 		if (surfaceResolution.height() > surfaceResolution.width())
 			surfaceResolution = new Rect(0, 0, surfaceResolution.height(), surfaceResolution.width());
@@ -179,12 +200,13 @@ public final class CameraManager
 		if (rawSupportedSizes == null)
 			return parameters.getPreviewSize();
 
-		// sort by size, descending
+		// sort by size, ascending
 		final List<Camera.Size> supportedPreviewSizes = new ArrayList<Camera.Size>(rawSupportedSizes);
 		Collections.sort(supportedPreviewSizes, numPixelComparator);
 
-		Camera.Size bestSize = null;
-		float diff = Float.POSITIVE_INFINITY;
+		Camera.Size largestMatchingSize = null;
+		Camera.Size bestAspectRatioSize = null;
+		float bestAspectRatioDiff = Float.POSITIVE_INFINITY;
 
 		for (final Camera.Size supportedPreviewSize : supportedPreviewSizes)
 		{
@@ -197,20 +219,29 @@ public final class CameraManager
 			final boolean isCandidatePortrait = realWidth < realHeight;
 			final int maybeFlippedWidth = isCandidatePortrait ? realHeight : realWidth;
 			final int maybeFlippedHeight = isCandidatePortrait ? realWidth : realHeight;
-			if (maybeFlippedWidth == surfaceResolution.width() && maybeFlippedHeight == surfaceResolution.height())
-				return supportedPreviewSize;
 
 			final float aspectRatio = (float) maybeFlippedWidth / (float) maybeFlippedHeight;
-			final float newDiff = Math.abs(aspectRatio - screenAspectRatio);
-			if (newDiff < diff)
+			final float aspectRatioDiff = Math.abs(aspectRatio - screenAspectRatio);
+			if (aspectRatioDiff < bestAspectRatioDiff)
 			{
-				bestSize = supportedPreviewSize;
-				diff = newDiff;
+				bestAspectRatioSize = supportedPreviewSize;
+				bestAspectRatioDiff = aspectRatioDiff;
 			}
+			if (aspectRatioDiff > MAX_ASPECT_RATIO_DIFF)
+				continue;
+
+			final int framePreviewSize = Math.min(frameSize * maybeFlippedWidth / surfaceResolution.width(), frameSize * maybeFlippedHeight
+					/ surfaceResolution.height());
+			if (framePreviewSize >= MIN_FRAME_PREVIEW_SIZE)
+				return supportedPreviewSize;
+
+			largestMatchingSize = supportedPreviewSize;
 		}
 
-		if (bestSize != null)
-			return bestSize;
+		if (largestMatchingSize != null)
+			return largestMatchingSize;
+		else if (bestAspectRatioSize != null)
+			return bestAspectRatioSize;
 		else
 			return parameters.getPreviewSize();
 	}
@@ -234,9 +265,33 @@ public final class CameraManager
 		camera.setParameters(parameters);
 	}
 
-	public void requestPreviewFrame(final PreviewCallback callback)
+	/**
+	 * Delivers preview frames continuously into a small pool of preallocated buffers, so the next frame can be captured while
+	 * previous ones are still being processed. Each buffer must be handed back using {@link #returnBuffer(byte[])} once done with it,
+	 * otherwise the camera runs out of buffers and skips frames.
+	 */
+	public synchronized void startPreviewCallback(final PreviewCallback callback, final int numBuffers)
+	{
+		for (int i = 0; i < numBuffers; i++)
+			camera.addCallbackBuffer(new byte[previewBufferSize]);
+
+		camera.setPreviewCallbackWithBuffer(callback);
+	}
+
+	public synchronized void stopPreviewCallback()
+	{
+		if (camera != null)
+			camera.setPreviewCallbackWithBuffer(null);
+	}
+
+	/**
+	 * Can be called from any thread.
+	 */
+	public synchronized void returnBuffer(final byte[] buffer)
 	{
-		camera.setOneShotPreviewCallback(callback);
+		// frames can still arrive after close
+		if (camera != null)
+			camera.addCallbackBuffer(buffer);
 	}
 
 	public PlanarYUVLuminanceSource buildLuminanceSource(final byte[] data)
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2009 ZXing authors
+ * Copyright 2014 the original author or authors.
+ *
+ * Derived from com.google.zxing.common.HybridBinarizer of the ZXing project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.leafco.wallet.camera;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * Derived from ZXing's {@link HybridBinarizer}: same local thresholding, but the bit matrix and block statistics are kept and reused for the
+ * next frame. Each call to {@link #getBlackMatrix()} recomputes the matrix from the current content of the luminance source, so
+ * the returned matrix is only valid until the next call.
+ *
+ * @author Andreas Schildbach
+ */
+public final class FrameBinarizer extends Binarizer
+{
+	private static final int BLOCK_SIZE_POWER = 3;
+	private static final int BLOCK_SIZE = 1 << BLOCK_SIZE_POWER;
+	private static final int MINIMUM_DIMENSION = BLOCK_SIZE * 5;
+	private static final int MIN_DYNAMIC_RANGE = 24;
+
+	private final int subWidth, subHeight;
+	private final int[] blackPoints;
+	private final BitMatrix matrix;
+
+	public FrameBinarizer(final LuminanceSource source)
+	{
+		super(source);
+
+		final int width = source.getWidth();
+		final int height = source.getHeight();
+		subWidth = (width + BLOCK_SIZE - 1) >> BLOCK_SIZE_POWER;
+		subHeight = (height + BLOCK_SIZE - 1) >> BLOCK_SIZE_POWER;
+		blackPoints = new int[subWidth * subHeight];
+		matrix = new BitMatrix(width, height);
+	}
+
+	@Override
+	public BitMatrix getBlackMatrix() throws NotFoundException
+	{
+		final LuminanceSource source = getLuminanceSource();
+		final int width = source.getWidth();
+		final int height = source.getHeight();
+
+		// too small for local thresholding
+		if (width < MINIMUM_DIMENSION || height < MINIMUM_DIMENSION)
+			return new HybridBinarizer(source).getBlackMatrix();
+
+		final byte[] luminances = source.getMatrix();
+		calculateBlackPoints(luminances, width, height);
+		matrix.clear();
+		calculateThresholds(luminances, width, height);
+
+		return matrix;
+	}
+
+	@Override
+	public BitArray getBlackRow(final int y, final BitArray row) throws NotFoundException
+	{
+		// only used by 1D readers
+		return new HybridBinarizer(getLuminanceSource()).getBlackRow(y, row);
+	}
+
+	@Override
+	public Binarizer createBinarizer(final LuminanceSource source)
+	{
+		return new FrameBinarizer(source);
+	}
+
+	private void calculateBlackPoints(final byte[] luminances, final int width, final int height)
+	{
+		for (int y = 0; y < subHeight; y++)
+		{
+			final int yoffset = Math.min(y << BLOCK_SIZE_POWER, height - BLOCK_SIZE);
+			for (int x = 0; x < subWidth; x++)
+			{
+				final int xoffset = Math.min(x << BLOCK_SIZE_POWER, width - BLOCK_SIZE);
+
+				int sum = 0;
+				int min = 0xff;
+				int max = 0;
+				for (int yy = 0, offset = yoffset * width + xoffset; yy < BLOCK_SIZE; yy++, offset += width)
+				{
+					for (int xx = 0; xx < BLOCK_SIZE; xx++)
+					{
+						final int pixel = luminances[offset + xx] & 0xff;
+						sum += pixel;
+						if (pixel < min)
+							min = pixel;
+						if (pixel > max)
+							max = pixel;
+					}
+				}
+
+				int average = sum >> (BLOCK_SIZE_POWER * 2);
+				if (max - min <= MIN_DYNAMIC_RANGE)
+				{
+					// low contrast block, assume it's background unless its neighbours say otherwise
+					average = min >> 1;
+					if (y > 0 && x > 0)
+					{
+						final int row = y * subWidth;
+						final int previousRow = row - subWidth;
+						final int averageNeighborBlackPoint = (blackPoints[previousRow + x] + 2 * blackPoints[row + x - 1] + blackPoints[previousRow
+								+ x - 1]) >> 2;
+						if (min < averageNeighborBlackPoint)
+							average = averageNeighborBlackPoint;
+					}
+				}
+
+				blackPoints[y * subWidth + x] = average;
+			}
+		}
+	}
+
+	private void calculateThresholds(final byte[] luminances, final int width, final int height)
+	{
+		for (int y = 0; y < subHeight; y++)
+		{
+			final int yoffset = Math.min(y << BLOCK_SIZE_POWER, height - BLOCK_SIZE);
+			final int top = cap(y, 2, subHeight - 3);
+			for (int x = 0; x < subWidth; x++)
+			{
+				final int xoffset = Math.min(x << BLOCK_SIZE_POWER, width - BLOCK_SIZE);
+				final int left = cap(x, 2, subWidth - 3);
+
+				// average of the surrounding 5x5 blocks
+				int sum = 0;
+				for (int z = -2; z <= 2; z++)
+				{
+					final int offset = (top + z) * subWidth + left;
+					sum += blackPoints[offset - 2] + blackPoints[offset - 1] + blackPoints[offset] + blackPoints[offset + 1]
+							+ blackPoints[offset + 2];
+				}
+				final int threshold = sum / 25;
+
+				for (int yy = 0, offset = yoffset * width + xoffset; yy < BLOCK_SIZE; yy++, offset += width)
+					for (int xx = 0; xx < BLOCK_SIZE; xx++)
+						if ((luminances[offset + xx] & 0xff) <= threshold)
+							matrix.set(xoffset + xx, yoffset + yy);
+			}
+		}
+	}
+
+	private static int cap(final int value, final int min, final int max)
+	{
+		return value < min ? min : (value > max ? max : value);
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.camera;
+
+import java.util.ArrayDeque;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Decodes preview frames on a pool of worker threads, each with its own state such as a {@link FrameDecoder}. Frames are handed
+ * over through a bounded queue; if the workers can't keep up, the oldest waiting frame is dropped in favor of the newest.
+ *
+ * @author Andreas Schildbach
+ */
+public final class FrameDecodePool<W>
+{
+	private static final int MAX_THREADS = 4;
+
+	public interface Callback<W>
+	{
+		/**
+		 * Called once on each worker thread, to create the state it keeps across frames.
+		 */
+		@Nonnull
+		W createWorker();
+
+		/**
+		 * Called on a worker thread for each frame.
+		 *
+		 * @return true to stop decoding further frames
+		 */
+		boolean onFrame(@Nonnull W worker, @Nonnull byte[] frame);
+
+		/**
+		 * Called when a frame won't be decoded, either because a newer frame has replaced it or because the pool has been stopped. Also
+		 * called after {@link #onFrame(Object, byte[])}, so buffers can be recycled in one place.
+		 */
+		void onFrameDone(@Nonnull byte[] frame);
+	}
+
+	private final Callback<W> callback;
+	private final int queueCapacity;
+	private final ArrayDeque<byte[]> queue;
+	private final Thread[] workers;
+	private boolean stopped = false;
+
+	public FrameDecodePool(final int numThreads, final int queueCapacity, @Nonnull final Callback<W> callback)
+	{
+		this.callback = callback;
+		this.queueCapacity = queueCapacity;
+		this.queue = new ArrayDeque<byte[]>(queueCapacity);
+		this.workers = new Thread[numThreads];
+
+		for (int i = 0; i < numThreads; i++)
+		{
+			workers[i] = new Thread("decodeThread-" + i)
+			{
+				@Override
+				public void run()
+				{
+					work();
+				}
+			};
+			workers[i].setDaemon(true);
+			workers[i].setPriority(Thread.NORM_PRIORITY - 1); // background priority on Android
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * @return number of decoding threads for this device: one core is left to the camera and UI
+	 */
+	public static int defaultNumThreads()
+	{
+		return Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+	}
+
+	public int getNumThreads()
+	{
+		return workers.length;
+	}
+
+	/**
+	 * Queues a frame for decoding. Doesn't block.
+	 */
+	public void submit(@Nonnull final byte[] frame)
+	{
+		final byte[] dropped;
+
+		synchronized (queue)
+		{
+			if (stopped)
+			{
+				dropped = frame;
+			}
+			else
+			{
+				dropped = queue.size() >= queueCapacity ? queue.pollFirst() : null;
+				queue.addLast(frame);
+				queue.notify();
+			}
+		}
+
+		if (dropped != null)
+			callback.onFrameDone(dropped);
+	}
+
+	/**
+	 * Stops decoding. Frames still waiting are dropped, frames being decoded are finished.
+	 */
+	public void stop()
+	{
+		final byte[][] dropped;
+
+		synchronized (queue)
+		{
+			if (stopped)
+				return;
+
+			stopped = true;
+			dropped = queue.toArray(new byte[queue.size()][]);
+			queue.clear();
+			queue.notifyAll();
+		}
+
+		for (final byte[] frame : dropped)
+			callback.onFrameDone(frame);
+	}
+
+	public boolean isStopped()
+	{
+		synchronized (queue)
+		{
+			return stopped;
+		}
+	}
+
+	private void work()
+	{
+		final W worker = callback.createWorker();
+
+		while (true)
+		{
+			final byte[] frame;
+
+			synchronized (queue)
+			{
+				while (!stopped && queue.isEmpty())
+				{
+					try
+					{
+						queue.wait();
+					}
+					catch (final InterruptedException x)
+					{
+						return;
+					}
+				}
+
+				if (stopped)
+					return;
+
+				frame = queue.pollFirst();
+			}
+
+			final boolean done = callback.onFrame(worker, frame);
+			callback.onFrameDone(frame);
+
+			if (done)
+				stop();
+		}
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.camera;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+import com.google.zxing.common.DetectorResult;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.detector.Detector;
+
+/**
+ * Decodes QR codes from consecutive camera preview frames. Luminance and binarizer buffers are reused as long as the size of the
+ * decoded region stays the same, and each frame is decoded only once: whether to read it inverted (light code on dark background) is
+ * guessed from the brightness of the region's border versus its center. If the guess is unclear, consecutive frames alternate
+ * between normal and inverted. While no code is found, every few frames go against the guess in case it's wrong.
+ *
+ * Large regions are first searched for a code at half resolution. Only if one is found, the part of the region it covers is decoded
+ * at full resolution, so frames without a code are cheap.
+ *
+ * Not thread safe, use one instance per decoding thread.
+ *
+ * @author Andreas Schildbach
+ */
+public final class FrameDecoder
+{
+	private static final int SAMPLE_STEP = 4;
+	private static final int MIN_CONTRAST = 8;
+	private static final int CONTRARY_INTERVAL = 4;
+
+	/** Regions smaller than this are decoded directly. */
+	public static final int MIN_DETECT_SIZE = 200;
+	/** Modules around the finder pattern centers to include: half a finder pattern plus the quiet zone. */
+	private static final int DETECT_MARGIN_MODULES = 8;
+	/** Located regions are rounded up to a multiple of this, so their buffers can mostly be reused. */
+	private static final int DETECT_REGION_STEP = 32;
+
+	private final QRCodeReader reader = new QRCodeReader();
+	private final Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+	private final TranslatingResultPointCallback resultPointCallback;
+
+	private Plane full = null, half = null, located = null;
+	private boolean lastInverted = true;
+	private int misses = 0;
+
+	public FrameDecoder(@Nullable final ResultPointCallback resultPointCallback)
+	{
+		if (resultPointCallback != null)
+		{
+			this.resultPointCallback = new TranslatingResultPointCallback(resultPointCallback);
+			hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, this.resultPointCallback);
+		}
+		else
+		{
+			this.resultPointCallback = null;
+		}
+	}
+
+	/**
+	 * @param data
+	 *            frame in a planar YUV format, only the leading Y plane is used
+	 * @param dataWidth
+	 *            width of the frame
+	 * @return decoded result with result points relative to the region, or null if no QR code could be read from the region
+	 */
+	@CheckForNull
+	public Result decode(@Nonnull final byte[] data, final int dataWidth, final int left, final int top, final int width, final int height)
+	{
+		boolean invert = guessInverted(data, dataWidth, left, top, width, height);
+		if (misses % CONTRARY_INTERVAL == CONTRARY_INTERVAL - 1)
+			invert = !invert;
+
+		final Result result;
+		if (width >= MIN_DETECT_SIZE && height >= MIN_DETECT_SIZE)
+			result = detectAndDecode(data, dataWidth, left, top, width, height, invert);
+		else
+			result = decodeDirectly(data, dataWidth, left, top, width, height, invert);
+
+		if (result != null)
+			misses = 0;
+		else
+			misses++;
+
+		return result;
+	}
+
+	private Result decodeDirectly(final byte[] data, final int dataWidth, final int left, final int top, final int width, final int height,
+			final boolean invert)
+	{
+		full = Plane.ensure(full, width, height);
+		full.source.load(data, dataWidth, left, top, invert);
+
+		return decode(full, 0, 0);
+	}
+
+	private Result detectAndDecode(final byte[] data, final int dataWidth, final int left, final int top, final int width, final int height,
+			final boolean invert)
+	{
+		half = Plane.ensure(half, width / 2, height / 2);
+		half.source.loadDownsampled(data, dataWidth, left, top, invert);
+
+		final ResultPoint[] points;
+		final int dimension;
+		try
+		{
+			if (resultPointCallback != null)
+				resultPointCallback.set(0, 0, 2);
+			final DetectorResult detected = new Detector(half.binarizer.getBlackMatrix()).detect(hints);
+			points = detected.getPoints();
+			dimension = detected.getBits().getWidth();
+		}
+		catch (final ReaderException x)
+		{
+			return null;
+		}
+
+		// bottom left, top left, top right finder pattern, in full resolution
+		final float blX = points[0].getX() * 2, blY = points[0].getY() * 2;
+		final float tlX = points[1].getX() * 2, tlY = points[1].getY() * 2;
+		final float trX = points[2].getX() * 2, trY = points[2].getY() * 2;
+		final float brX = trX + blX - tlX, brY = trY + blY - tlY;
+		final float moduleSize = (distance(tlX, tlY, trX, trY) + distance(tlX, tlY, blX, blY)) / 2 / (dimension - 7);
+		final float margin = moduleSize * DETECT_MARGIN_MODULES;
+
+		final float minX = Math.min(Math.min(blX, tlX), Math.min(trX, brX)) - margin;
+		final float maxX = Math.max(Math.max(blX, tlX), Math.max(trX, brX)) + margin;
+		final float minY = Math.min(Math.min(blY, tlY), Math.min(trY, brY)) - margin;
+		final float maxY = Math.max(Math.max(blY, tlY), Math.max(trY, brY)) + margin;
+
+		final int regionWidth = regionSize(maxX - minX, width);
+		final int regionHeight = regionSize(maxY - minY, height);
+		final int regionLeft = regionStart((minX + maxX) / 2, regionWidth, width);
+		final int regionTop = regionStart((minY + maxY) / 2, regionHeight, height);
+
+		located = Plane.ensure(located, regionWidth, regionHeight);
+		located.source.load(data, dataWidth, left + regionLeft, top + regionTop, invert);
+
+		return decode(located, regionLeft, regionTop);
+	}
+
+	private Result decode(final Plane plane, final int offsetX, final int offsetY)
+	{
+		if (resultPointCallback != null)
+			resultPointCallback.set(offsetX, offsetY, 1);
+
+		try
+		{
+			// binary bitmaps cache their matrix, so a fresh one is needed per frame
+			final Result result = reader.decode(new BinaryBitmap(plane.binarizer), hints);
+			if (offsetX == 0 && offsetY == 0)
+				return result;
+
+			final ResultPoint[] points = result.getResultPoints();
+			final ResultPoint[] translatedPoints = new ResultPoint[points.length];
+			for (int i = 0; i < points.length; i++)
+				translatedPoints[i] = new ResultPoint(points[i].getX() + offsetX, points[i].getY() + offsetY);
+
+			final Result translatedResult = new Result(result.getText(), result.getRawBytes(), translatedPoints, result.getBarcodeFormat(),
+					result.getTimestamp());
+			if (result.getResultMetadata() != null)
+				translatedResult.putAllMetadata(result.getResultMetadata());
+			return translatedResult;
+		}
+		catch (final ReaderException x)
+		{
+			return null;
+		}
+		finally
+		{
+			reader.reset();
+		}
+	}
+
+	private static int regionSize(final float size, final int max)
+	{
+		final int roundedSize = ((int) Math.ceil(size) + DETECT_REGION_STEP - 1) / DETECT_REGION_STEP * DETECT_REGION_STEP;
+		return Math.min(roundedSize, max);
+	}
+
+	private static int regionStart(final float center, final int size, final int max)
+	{
+		final int start = Math.round(center - size / 2f);
+		return Math.max(0, Math.min(start, max - size));
+	}
+
+	private static float distance(final float x1, final float y1, final float x2, final float y2)
+	{
+		final float dx = x2 - x1, dy = y2 - y1;
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+
+	private boolean guessInverted(final byte[] data, final int dataWidth, final int left, final int top, final int width, final int height)
+	{
+		// the outer eighth on each side is the border, the inner half the center
+		final int borderX = width / 8;
+		final int borderY = height / 8;
+		final int centerLeft = width / 4, centerRight = width - width / 4;
+		final int centerTop = height / 4, centerBottom = height - height / 4;
+
+		long borderSum = 0, centerSum = 0;
+		int borderCount = 0, centerCount = 0;
+
+		for (int y = 0; y < height; y += SAMPLE_STEP)
+		{
+			final int offset = (top + y) * dataWidth + left;
+			final boolean borderRow = y < borderY || y >= height - borderY;
+			final boolean centerRow = y >= centerTop && y < centerBottom;
+
+			for (int x = 0; x < width; x += SAMPLE_STEP)
+			{
+				if (borderRow || x < borderX || x >= width - borderX)
+				{
+					borderSum += data[offset + x] & 0xff;
+					borderCount++;
+				}
+				else if (centerRow && x >= centerLeft && x < centerRight)
+				{
+					centerSum += data[offset + x] & 0xff;
+					centerCount++;
+				}
+			}
+		}
+
+		if (borderCount > 0 && centerCount > 0)
+		{
+			// a code normally sits on a light background, modules make the center darker
+			final long difference = centerSum / centerCount - borderSum / borderCount;
+			if (difference <= -MIN_CONTRAST)
+				return lastInverted = false;
+			else if (difference >= MIN_CONTRAST)
+				return lastInverted = true;
+		}
+
+		return lastInverted = !lastInverted;
+	}
+
+	private static final class Plane
+	{
+		public final FrameLuminanceSource source;
+		public final FrameBinarizer binarizer;
+
+		private Plane(final int width, final int height)
+		{
+			source = new FrameLuminanceSource(width, height);
+			binarizer = new FrameBinarizer(source);
+		}
+
+		public static Plane ensure(@Nullable final Plane plane, final int width, final int height)
+		{
+			if (plane != null && plane.source.getWidth() == width && plane.source.getHeight() == height)
+				return plane;
+			else
+				return new Plane(width, height);
+		}
+	}
+
+	/**
+	 * Maps points found in a downsampled or partial plane back to the coordinates of the whole region.
+	 */
+	private static final class TranslatingResultPointCallback implements ResultPointCallback
+	{
+		private final ResultPointCallback target;
+		private int offsetX, offsetY, scale;
+
+		public TranslatingResultPointCallback(final ResultPointCallback target)
+		{
+			this.target = target;
+		}
+
+		public void set(final int offsetX, final int offsetY, final int scale)
+		{
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.scale = scale;
+		}
+
+		@Override
+		public void foundPossibleResultPoint(final ResultPoint point)
+		{
+			if (scale == 1 && offsetX == 0 && offsetY == 0)
+				target.foundPossibleResultPoint(point);
+			else
+				target.foundPossibleResultPoint(new ResultPoint(point.getX() * scale + offsetX, point.getY() * scale + offsetY));
+		}
+	}
+}
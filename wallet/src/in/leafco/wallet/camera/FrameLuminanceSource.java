@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.camera;
+
+import javax.annotation.Nonnull;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * Luminance of a region of a camera preview frame, copied into a buffer that is reused for subsequent frames of the same region
+ * size.
+ *
+ * @author Andreas Schildbach
+ */
+public final class FrameLuminanceSource extends LuminanceSource
+{
+	private final byte[] luminances;
+
+	public FrameLuminanceSource(final int width, final int height)
+	{
+		super(width, height);
+
+		this.luminances = new byte[width * height];
+	}
+
+	/**
+	 * Copies the region from the Y plane of a YUV frame, optionally inverting it on the way.
+	 */
+	public void load(@Nonnull final byte[] yuvData, final int dataWidth, final int left, final int top, final boolean invert)
+	{
+		final int width = getWidth();
+		final int height = getHeight();
+
+		for (int y = 0; y < height; y++)
+		{
+			final int inputOffset = (top + y) * dataWidth + left;
+			final int outputOffset = y * width;
+
+			if (invert)
+			{
+				for (int x = 0; x < width; x++)
+					luminances[outputOffset + x] = (byte) ~yuvData[inputOffset + x];
+			}
+			else
+			{
+				System.arraycopy(yuvData, inputOffset, luminances, outputOffset, width);
+			}
+		}
+	}
+
+	/**
+	 * Like {@link #load(byte[], int, int, int, boolean)}, but averages each 2x2 block of the frame into one pixel. The region in the
+	 * frame is twice the width and height of this source.
+	 */
+	public void loadDownsampled(@Nonnull final byte[] yuvData, final int dataWidth, final int left, final int top, final boolean invert)
+	{
+		final int width = getWidth();
+		final int height = getHeight();
+
+		for (int y = 0; y < height; y++)
+		{
+			int inputOffset = (top + y * 2) * dataWidth + left;
+			final int outputOffset = y * width;
+
+			for (int x = 0; x < width; x++, inputOffset += 2)
+			{
+				final int sum = (yuvData[inputOffset] & 0xff) + (yuvData[inputOffset + 1] & 0xff) + (yuvData[inputOffset + dataWidth] & 0xff)
+						+ (yuvData[inputOffset + dataWidth + 1] & 0xff);
+				final int luminance = (sum + 2) >> 2;
+				luminances[outputOffset + x] = (byte) (invert ? 0xff - luminance : luminance);
+			}
+		}
+	}
+
+	@Override
+	public byte[] getRow(final int y, byte[] row)
+	{
+		final int width = getWidth();
+		if (row == null || row.length < width)
+			row = new byte[width];
+
+		System.arraycopy(luminances, y * width, row, 0, width);
+
+		return row;
+	}
+
+	@Override
+	public byte[] getMatrix()
+	{
+		return luminances;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.camera;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the scanning pipeline, updated from the camera and decoding threads and read from the UI thread.
+ *
+ * @author Andreas Schildbach
+ */
+public final class FrameStats
+{
+	private final AtomicInteger framesCaptured = new AtomicInteger();
+	private final AtomicInteger framesDecoded = new AtomicInteger();
+	private final AtomicLong decodeNanos = new AtomicLong();
+
+	public void frameCaptured()
+	{
+		framesCaptured.incrementAndGet();
+	}
+
+	public void frameDecoded(final long nanos)
+	{
+		framesDecoded.incrementAndGet();
+		decodeNanos.addAndGet(nanos);
+	}
+
+	public int getFramesCaptured()
+	{
+		return framesCaptured.get();
+	}
+
+	public int getFramesDecoded()
+	{
+		return framesDecoded.get();
+	}
+
+	/**
+	 * @return average time spent decoding a frame, in milliseconds
+	 */
+	public float getDecodeMs()
+	{
+		final int decoded = framesDecoded.get();
+		return decoded > 0 ? decodeNanos.get() / 1000000f / decoded : 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "captured " + getFramesCaptured() + ", decoded " + getFramesDecoded() + ", " + String.format(Locale.US, "%.1f", getDecodeMs()) + " ms/frame";
+	}
+}
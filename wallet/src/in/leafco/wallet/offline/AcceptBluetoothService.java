@@ -17,6 +17,9 @@
 
 package in.leafco.wallet.offline;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,12 +53,18 @@ public final class AcceptBluetoothService extends Service
 	private WakeLock wakeLock;
 	private AcceptBluetoothThread classicThread;
 	private AcceptBluetoothThread paymentProtocolThread;
+	private ConnectionExecutor connectionExecutor;
+	private final PaymentServerStats stats = new PaymentServerStats();
+	private final Object receiveLock = new Object();
 
 	private long serviceCreatedAt;
 
 	private final Handler handler = new Handler();
 
 	private static final long TIMEOUT_MS = 5 * DateUtils.MINUTE_IN_MILLIS;
+	private static final int CONNECTION_THREADS = 4;
+	private static final int CONNECTION_QUEUE_CAPACITY = 8;
+	private static final long CONNECTION_TIMEOUT_MS = 30 * DateUtils.SECOND_IN_MILLIS;
 
 	private static final Logger log = LoggerFactory.getLogger(AcceptBluetoothService.class);
 
@@ -93,59 +102,90 @@ public final class AcceptBluetoothService extends Service
 
 		registerReceiver(bluetoothStateChangeReceiver, new IntentFilter(BluetoothAdapter.ACTION_STATE_CHANGED));
 
-		classicThread = new AcceptBluetoothThread.ClassicBluetoothThread(bluetoothAdapter)
+		connectionExecutor = new ConnectionExecutor("bluetoothConnection", CONNECTION_THREADS, CONNECTION_QUEUE_CAPACITY, CONNECTION_TIMEOUT_MS);
+
+		classicThread = new AcceptBluetoothThread.ClassicBluetoothThread(bluetoothAdapter, connectionExecutor, stats)
 		{
 			@Override
-			public boolean handleTx(final Transaction tx)
+			public boolean handleTxs(final List<Transaction> txs)
 			{
-				return AcceptBluetoothService.this.handleTx(tx);
+				return AcceptBluetoothService.this.handleTxs(txs);
 			}
 		};
 		classicThread.start();
 
-		paymentProtocolThread = new AcceptBluetoothThread.PaymentProtocolThread(bluetoothAdapter)
+		paymentProtocolThread = new AcceptBluetoothThread.PaymentProtocolThread(bluetoothAdapter, connectionExecutor, stats)
 		{
 			@Override
-			public boolean handleTx(final Transaction tx)
+			public boolean handleTxs(final List<Transaction> txs)
 			{
-				return AcceptBluetoothService.this.handleTx(tx);
+				return AcceptBluetoothService.this.handleTxs(txs);
 			}
 		};
 		paymentProtocolThread.start();
 	}
 
-	private boolean handleTx(final Transaction tx)
+	private boolean handleTxs(final List<Transaction> txs)
 	{
-		log.info("tx " + tx.getHashAsString() + " arrived via blueooth");
+		final List<Transaction> relevantTxs = new ArrayList<Transaction>(txs.size());
+		final List<Transaction> receivedTxs = new ArrayList<Transaction>(txs.size());
+		boolean accepted = true;
 
-		try
+		// connections are handled concurrently, but each payment is accepted in one go
+		synchronized (receiveLock)
 		{
-			if (wallet.isTransactionRelevant(tx))
+			try
 			{
-				wallet.receivePending(tx, null);
-
-				handler.post(new Runnable()
+				for (final Transaction tx : txs)
 				{
-					@Override
-					public void run()
-					{
-						application.broadcastTransaction(tx);
-					}
-				});
+					log.info("tx " + tx.getHashAsString() + " arrived via blueooth");
+
+					// verify all of the payment before putting any of it into the wallet
+					tx.verify();
+
+					if (wallet.isTransactionRelevant(tx))
+						relevantTxs.add(tx);
+					else
+						log.info("tx " + tx.getHashAsString() + " irrelevant");
+				}
 			}
-			else
+			catch (final VerificationException x)
 			{
-				log.info("tx " + tx.getHashAsString() + " irrelevant");
+				log.info("cannot verify txns received via bluetooth", x);
+
+				return false;
 			}
 
-			return true;
+			try
+			{
+				for (final Transaction tx : relevantTxs)
+				{
+					wallet.receivePending(tx, null);
+					receivedTxs.add(tx);
+				}
+			}
+			catch (final VerificationException x)
+			{
+				// txns already in the wallet still need to be broadcast, but don't ack an incomplete payment
+				log.warn("wallet rejected txn received via bluetooth, " + receivedTxs.size() + " of " + relevantTxs.size() + " received", x);
+
+				accepted = false;
+			}
 		}
-		catch (final VerificationException x)
+
+		if (!receivedTxs.isEmpty())
 		{
-			log.info("cannot verify tx " + tx.getHashAsString() + " received via bluetooth", x);
+			handler.post(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					application.broadcastTransactions(receivedTxs);
+				}
+			});
 		}
 
-		return false;
+		return accepted;
 	}
 
 	@Override
@@ -153,6 +193,7 @@ public final class AcceptBluetoothService extends Service
 	{
 		paymentProtocolThread.stopAccepting();
 		classicThread.stopAccepting();
+		connectionExecutor.shutdown();
 
 		unregisterReceiver(bluetoothStateChangeReceiver);
 
@@ -162,7 +203,7 @@ public final class AcceptBluetoothService extends Service
 
 		super.onDestroy();
 
-		log.info("service was up for " + ((System.currentTimeMillis() - serviceCreatedAt) / 1000 / 60) + " minutes");
+		log.info("service was up for " + ((System.currentTimeMillis() - serviceCreatedAt) / 1000 / 60) + " minutes, " + stats);
 	}
 
 	private final BroadcastReceiver bluetoothStateChangeReceiver = new BroadcastReceiver()
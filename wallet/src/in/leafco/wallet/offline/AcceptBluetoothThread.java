@@ -20,6 +20,8 @@ package in.leafco.wallet.offline;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -31,218 +33,192 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothServerSocket;
-import android.bluetooth.BluetoothSocket;
 
 import com.google.leafcoin.core.ProtocolException;
 import com.google.leafcoin.core.Transaction;
 
 import in.leafco.wallet.Constants;
+import in.leafco.wallet.offline.PaymentTransport.Connection;
 import in.leafco.wallet.util.Bluetooth;
 import in.leafco.wallet.util.PaymentProtocol;
 
 /**
+ * Accepts connections and hands them to a {@link ConnectionExecutor}, so that several customers can be served at the same time.
+ *
  * @author Shahar Livne
  * @author Andreas Schildbach
  */
 public abstract class AcceptBluetoothThread extends Thread
 {
-	protected final BluetoothServerSocket listeningSocket;
+	protected final PaymentTransport transport;
+	private final ConnectionExecutor executor;
+	protected final PaymentServerStats stats;
 	protected final AtomicBoolean running = new AtomicBoolean(true);
 
+	private static final int MAX_PAYMENT_SIZE = 1000000;
+	private static final int MAX_TRANSACTIONS = 100;
+
+	/** Buffers are kept by the connection handling threads, from one connection to the next. */
+	private static final ThreadLocal<PaymentMessageParser> PARSER = new ThreadLocal<PaymentMessageParser>()
+	{
+		@Override
+		protected PaymentMessageParser initialValue()
+		{
+			return new PaymentMessageParser(MAX_PAYMENT_SIZE, Constants.MAX_TRANSACTION_SIZE, MAX_TRANSACTIONS);
+		}
+	};
+
 	protected static final Logger log = LoggerFactory.getLogger(AcceptBluetoothThread.class);
 
-	private AcceptBluetoothThread(final BluetoothServerSocket listeningSocket)
+	private AcceptBluetoothThread(@Nonnull final PaymentTransport transport, @Nonnull final ConnectionExecutor executor,
+			@Nonnull final PaymentServerStats stats)
 	{
-		this.listeningSocket = listeningSocket;
+		this.transport = transport;
+		this.executor = executor;
+		this.stats = stats;
 	}
 
-	public static abstract class ClassicBluetoothThread extends AcceptBluetoothThread
+	@Override
+	public void run()
 	{
-		public ClassicBluetoothThread(@Nonnull final BluetoothAdapter adapter)
+		while (running.get())
 		{
-			super(listen(adapter, Bluetooth.BLUETOOTH_UUID_CLASSIC));
-		}
+			final Connection connection;
 
-		@Override
-		public void run()
-		{
-			while (running.get())
+			try
+			{
+				// start a blocking call, and return only on success or exception
+				connection = transport.accept();
+			}
+			catch (final IOException x)
 			{
-				BluetoothSocket socket = null;
-				DataInputStream is = null;
-				DataOutputStream os = null;
+				if (running.get())
+					log.info("exception in bluetooth accept loop", x);
 
-				try
+				continue;
+			}
+
+			stats.connectionAccepted();
+			final long acceptedAt = System.currentTimeMillis();
+
+			final boolean accepted = executor.execute(connection, new ConnectionExecutor.Task()
+			{
+				@Override
+				public void run(final Connection connection) throws IOException
 				{
-					// start a blocking call, and return only on success or exception
-					socket = listeningSocket.accept();
+					handleConnection(connection, acceptedAt);
+				}
+			});
+
+			if (!accepted)
+			{
+				log.info("too many bluetooth connections, rejected one");
+				stats.connectionRejected();
+				connection.close();
+			}
+		}
+	}
 
-					log.info("accepted classic bluetooth connection");
+	protected abstract void handleConnection(@Nonnull Connection connection, long acceptedAt) throws IOException;
 
-					is = new DataInputStream(socket.getInputStream());
-					os = new DataOutputStream(socket.getOutputStream());
+	public static abstract class ClassicBluetoothThread extends AcceptBluetoothThread
+	{
+		public ClassicBluetoothThread(@Nonnull final BluetoothAdapter adapter, @Nonnull final ConnectionExecutor executor,
+				@Nonnull final PaymentServerStats stats)
+		{
+			this(listen(adapter, Bluetooth.BLUETOOTH_UUID_CLASSIC), executor, stats);
+		}
 
-					boolean ack = true;
+		public ClassicBluetoothThread(@Nonnull final PaymentTransport transport, @Nonnull final ConnectionExecutor executor,
+				@Nonnull final PaymentServerStats stats)
+		{
+			super(transport, executor, stats);
+		}
 
-					final int numMessages = is.readInt();
+		@Override
+		protected void handleConnection(final Connection connection, final long acceptedAt) throws IOException
+		{
+			log.info("accepted classic bluetooth connection");
 
-					for (int i = 0; i < numMessages; i++)
-					{
-						final int msgLength = is.readInt();
-						final byte[] msg = new byte[msgLength];
-						is.readFully(msg);
+			final DataInputStream is = new DataInputStream(connection.getInputStream());
+			final DataOutputStream os = new DataOutputStream(connection.getOutputStream());
 
-						try
-						{
-							final Transaction tx = new Transaction(Constants.NETWORK_PARAMETERS, msg);
+			boolean ack = true;
 
-							if (!handleTx(tx))
-								ack = false;
-						}
-						catch (final ProtocolException x)
-						{
-							log.info("cannot decode message received via bluetooth", x);
-							ack = false;
-						}
-					}
+			final PaymentMessageParser parser = PARSER.get();
+			final int numMessages = parser.checkTransactionCount(is.readInt());
+			final List<Transaction> txs = new ArrayList<Transaction>(numMessages);
 
-					os.writeBoolean(ack);
-				}
-				catch (final IOException x)
+			for (int i = 0; i < numMessages; i++)
+			{
+				try
 				{
-					log.info("exception in bluetooth accept loop", x);
+					txs.add(parser.readTransaction(is));
+					stats.transactionReceived();
 				}
-				finally
+				catch (final ProtocolException x)
 				{
-					if (os != null)
-					{
-						try
-						{
-							os.close();
-						}
-						catch (final IOException x)
-						{
-							// swallow
-						}
-					}
-
-					if (is != null)
-					{
-						try
-						{
-							is.close();
-						}
-						catch (final IOException x)
-						{
-							// swallow
-						}
-					}
-
-					if (socket != null)
-					{
-						try
-						{
-							socket.close();
-						}
-						catch (final IOException x)
-						{
-							// swallow
-						}
-					}
+					log.info("cannot decode message received via bluetooth", x);
+					ack = false;
 				}
 			}
+
+			if (!txs.isEmpty() && !handleTxs(txs))
+				ack = false;
+
+			os.writeBoolean(ack);
+			os.flush();
+			stats.ackSent(System.currentTimeMillis() - acceptedAt);
 		}
 	}
 
 	public static abstract class PaymentProtocolThread extends AcceptBluetoothThread
 	{
-		public PaymentProtocolThread(@Nonnull final BluetoothAdapter adapter)
+		public PaymentProtocolThread(@Nonnull final BluetoothAdapter adapter, @Nonnull final ConnectionExecutor executor,
+				@Nonnull final PaymentServerStats stats)
 		{
-			super(listen(adapter, Bluetooth.BLUETOOTH_UUID_PAYMENT_PROTOCOL));
+			this(listen(adapter, Bluetooth.BLUETOOTH_UUID_PAYMENT_PROTOCOL), executor, stats);
 		}
 
-		@Override
-		public void run()
+		public PaymentProtocolThread(@Nonnull final PaymentTransport transport, @Nonnull final ConnectionExecutor executor,
+				@Nonnull final PaymentServerStats stats)
 		{
-			while (running.get())
-			{
-				BluetoothSocket socket = null;
-				DataInputStream is = null;
-				DataOutputStream os = null;
-
-				try
-				{
-					// start a blocking call, and return only on success or exception
-					socket = listeningSocket.accept();
+			super(transport, executor, stats);
+		}
 
-					log.info("accepted payment protocol bluetooth connection");
+		@Override
+		protected void handleConnection(final Connection connection, final long acceptedAt) throws IOException
+		{
+			log.info("accepted payment protocol bluetooth connection");
 
-					is = new DataInputStream(socket.getInputStream());
-					os = new DataOutputStream(socket.getOutputStream());
+			boolean ack = true;
 
-					boolean ack = true;
+			final PaymentMessageParser parser = PARSER.get();
+			final Protos.Payment payment = parser.readDelimitedPayment(connection.getInputStream());
 
-					final Protos.Payment payment = Protos.Payment.parseDelimitedFrom(is);
+			log.debug("got payment message");
 
-					log.debug("got payment message");
+			try
+			{
+				final List<Transaction> txs = parser.parseTransactions(payment);
+				stats.transactionsReceived(txs.size());
 
-					for (final Transaction tx : PaymentProtocol.parsePaymentMessage(payment))
-					{
-						if (!handleTx(tx))
-							ack = false;
-					}
+				if (!txs.isEmpty() && !handleTxs(txs))
+					ack = false;
+			}
+			catch (final ProtocolException x)
+			{
+				log.info("cannot decode payment message received via bluetooth", x);
+				ack = false;
+			}
 
-					final String memo = ack ? "ack" : "nack";
+			final String memo = ack ? "ack" : "nack";
 
-					log.info("sending {} via bluetooth", memo);
+			log.info("sending {} via bluetooth", memo);
 
-					final PaymentACK paymentAck = PaymentProtocol.createPaymentAck(payment, memo);
-					paymentAck.writeDelimitedTo(os);
-				}
-				catch (final IOException x)
-				{
-					log.info("exception in bluetooth accept loop", x);
-				}
-				finally
-				{
-					if (os != null)
-					{
-						try
-						{
-							os.close();
-						}
-						catch (final IOException x)
-						{
-							// swallow
-						}
-					}
-
-					if (is != null)
-					{
-						try
-						{
-							is.close();
-						}
-						catch (final IOException x)
-						{
-							// swallow
-						}
-					}
-
-					if (socket != null)
-					{
-						try
-						{
-							socket.close();
-						}
-						catch (final IOException x)
-						{
-							// swallow
-						}
-					}
-				}
-			}
+			final PaymentACK paymentAck = PaymentProtocol.createPaymentAck(payment, memo);
+			paymentAck.writeDelimitedTo(connection.getOutputStream());
+			stats.ackSent(System.currentTimeMillis() - acceptedAt);
 		}
 	}
 
@@ -250,21 +226,14 @@ public abstract class AcceptBluetoothThread extends Thread
 	{
 		running.set(false);
 
-		try
-		{
-			listeningSocket.close();
-		}
-		catch (final IOException x)
-		{
-			// swallow
-		}
+		transport.close();
 	}
 
-	protected static BluetoothServerSocket listen(final BluetoothAdapter adapter, final UUID uuid)
+	protected static PaymentTransport listen(final BluetoothAdapter adapter, final UUID uuid)
 	{
 		try
 		{
-			return adapter.listenUsingInsecureRfcommWithServiceRecord("Bitcoin Transaction Submission", uuid);
+			return new BluetoothPaymentTransport(adapter, uuid);
 		}
 		catch (final IOException x)
 		{
@@ -272,5 +241,10 @@ public abstract class AcceptBluetoothThread extends Thread
 		}
 	}
 
-	protected abstract boolean handleTx(@Nonnull Transaction tx);
+	/**
+	 * Validates and accepts all transactions of one payment together.
+	 *
+	 * @return true if all transactions were accepted
+	 */
+	protected abstract boolean handleTxs(@Nonnull List<Transaction> txs);
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.offline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothServerSocket;
+import android.bluetooth.BluetoothSocket;
+
+/**
+ * @author Andreas Schildbach
+ */
+public final class BluetoothPaymentTransport implements PaymentTransport
+{
+	private final BluetoothServerSocket listeningSocket;
+
+	public BluetoothPaymentTransport(@Nonnull final BluetoothAdapter adapter, @Nonnull final UUID uuid) throws IOException
+	{
+		this.listeningSocket = adapter.listenUsingInsecureRfcommWithServiceRecord("Bitcoin Transaction Submission", uuid);
+	}
+
+	@Override
+	public Connection accept() throws IOException
+	{
+		final BluetoothSocket socket = listeningSocket.accept();
+
+		return new Connection()
+		{
+			@Override
+			public InputStream getInputStream() throws IOException
+			{
+				return socket.getInputStream();
+			}
+
+			@Override
+			public OutputStream getOutputStream() throws IOException
+			{
+				return socket.getOutputStream();
+			}
+
+			@Override
+			public void close()
+			{
+				try
+				{
+					socket.close();
+				}
+				catch (final IOException x)
+				{
+					// swallow
+				}
+			}
+		};
+	}
+
+	@Override
+	public void close()
+	{
+		try
+		{
+			listeningSocket.close();
+		}
+		catch (final IOException x)
+		{
+			// swallow
+		}
+	}
+}
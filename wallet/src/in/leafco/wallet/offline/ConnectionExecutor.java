@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.offline;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import in.leafco.wallet.offline.PaymentTransport.Connection;
+
+/**
+ * Handles accepted connections concurrently on a bounded pool of threads. Connections that don't fit into the pool and its queue
+ * are refused, and connections that take longer than the timeout, including time spent waiting in the queue, are closed by a
+ * watchdog.
+ *
+ * @author Andreas Schildbach
+ */
+public final class ConnectionExecutor
+{
+	public interface Task
+	{
+		void run(@Nonnull Connection connection) throws IOException;
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final ScheduledExecutorService timeoutExecutor;
+	private final long timeoutMs;
+	private final Set<Connection> openConnections = new HashSet<Connection>();
+
+	private static final Logger log = LoggerFactory.getLogger(ConnectionExecutor.class);
+
+	public ConnectionExecutor(@Nonnull final String name, final int numThreads, final int queueCapacity, final long timeoutMs)
+	{
+		this.executor = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity),
+				threadFactory(name));
+		this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory(name + "Timeout"));
+		this.timeoutMs = timeoutMs;
+	}
+
+	/**
+	 * @return false if there is no capacity left or the executor has been shut down, the caller should close the connection then
+	 */
+	public boolean execute(@Nonnull final Connection connection, @Nonnull final Task task)
+	{
+		synchronized (openConnections)
+		{
+			openConnections.add(connection);
+		}
+
+		final ScheduledFuture<?> timeout;
+		try
+		{
+			timeout = timeoutExecutor.schedule(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					log.info("connection timed out, closing");
+					connection.close();
+				}
+			}, timeoutMs, TimeUnit.MILLISECONDS);
+		}
+		catch (final RejectedExecutionException x)
+		{
+			// shut down
+			forget(connection);
+
+			return false;
+		}
+
+		try
+		{
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						task.run(connection);
+					}
+					catch (final IOException x)
+					{
+						log.info("exception while handling connection", x);
+					}
+					finally
+					{
+						timeout.cancel(false);
+						close(connection);
+					}
+				}
+			});
+
+			return true;
+		}
+		catch (final RejectedExecutionException x)
+		{
+			timeout.cancel(false);
+			forget(connection);
+
+			return false;
+		}
+	}
+
+	/**
+	 * Stops handling connections, closing those still open.
+	 */
+	public void shutdown()
+	{
+		executor.shutdownNow();
+		timeoutExecutor.shutdownNow();
+
+		final Connection[] connections;
+		synchronized (openConnections)
+		{
+			connections = openConnections.toArray(new Connection[openConnections.size()]);
+		}
+
+		for (final Connection connection : connections)
+			close(connection);
+	}
+
+	private void close(final Connection connection)
+	{
+		connection.close();
+		forget(connection);
+	}
+
+	private void forget(final Connection connection)
+	{
+		synchronized (openConnections)
+		{
+			openConnections.remove(connection);
+		}
+	}
+
+	private static ThreadFactory threadFactory(final String name)
+	{
+		return new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable r)
+			{
+				final Thread thread = new Thread(r, name + "-" + count.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+}
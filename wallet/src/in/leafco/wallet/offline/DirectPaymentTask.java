@@ -20,14 +20,9 @@ package in.leafco.wallet.offline;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
 
-import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 
 import org.bitcoin.protocols.payments.Protos;
 import org.bitcoin.protocols.payments.Protos.Payment;
@@ -76,16 +71,15 @@ public abstract class DirectPaymentTask
 	public final static class HttpPaymentTask extends DirectPaymentTask
 	{
 		private final String url;
-		@CheckForNull
-		private final String userAgent;
+		private final PaymentProtocolClient client;
 
 		public HttpPaymentTask(@Nonnull final Handler backgroundHandler, @Nonnull final ResultCallback resultCallback, @Nonnull final String url,
-				@Nullable final String userAgent)
+				@Nonnull final PaymentProtocolClient client)
 		{
 			super(backgroundHandler, resultCallback);
 
 			this.url = url;
-			this.userAgent = userAgent;
+			this.client = client;
 		}
 
 		@Override
@@ -101,40 +95,16 @@ public abstract class DirectPaymentTask
 
 					log.info("trying to send tx to {}", url);
 
-					HttpURLConnection connection = null;
-					OutputStream os = null;
-					InputStream is = null;
-
 					try
 					{
-						connection = (HttpURLConnection) new URL(url).openConnection();
-
-						connection.setConnectTimeout(Constants.HTTP_TIMEOUT_MS);
-						connection.setReadTimeout(Constants.HTTP_TIMEOUT_MS);
-						connection.setUseCaches(false);
-						connection.setDoInput(true);
-						connection.setDoOutput(true);
-
-						connection.setRequestMethod("POST");
-						connection.setRequestProperty("Content-Type", Constants.MIMETYPE_PAYMENT);
-						connection.setRequestProperty("Accept", Constants.MIMETYPE_PAYMENTACK);
-						connection.setRequestProperty("Content-Length", Integer.toString(payment.getSerializedSize()));
-						if (userAgent != null)
-							connection.addRequestProperty("User-Agent", userAgent);
-						connection.connect();
-
-						os = connection.getOutputStream();
-						payment.writeTo(os);
-						os.flush();
+						final PaymentProtocolClient.Response response = client.post(url, Constants.MIMETYPE_PAYMENT, payment.toByteArray(),
+								Constants.MIMETYPE_PAYMENTACK);
 
 						log.info("tx sent via http");
 
-						final int responseCode = connection.getResponseCode();
-						if (responseCode == HttpURLConnection.HTTP_OK)
+						if (response.code == HttpURLConnection.HTTP_OK)
 						{
-							is = connection.getInputStream();
-
-							final Protos.PaymentACK paymentAck = Protos.PaymentACK.parseFrom(is);
+							final Protos.PaymentACK paymentAck = Protos.PaymentACK.parseFrom(response.body);
 
 							final boolean ack = !"nack".equals(PaymentProtocol.parsePaymentAck(paymentAck));
 
@@ -144,11 +114,9 @@ public abstract class DirectPaymentTask
 						}
 						else
 						{
-							final String responseMessage = connection.getResponseMessage();
+							log.info("got http error {}: {}", response.code, response.message);
 
-							log.info("got http error {}: {}", responseCode, responseMessage);
-
-							onFail(R.string.error_http, responseCode, responseMessage);
+							onFail(R.string.error_http, response.code, response.message);
 						}
 					}
 					catch (final IOException x)
@@ -157,35 +125,6 @@ public abstract class DirectPaymentTask
 
 						onFail(R.string.error_io, x.getMessage());
 					}
-					finally
-					{
-						if (os != null)
-						{
-							try
-							{
-								os.close();
-							}
-							catch (final IOException x)
-							{
-								// swallow
-							}
-						}
-
-						if (is != null)
-						{
-							try
-							{
-								is.close();
-							}
-							catch (final IOException x)
-							{
-								// swallow
-							}
-						}
-
-						if (connection != null)
-							connection.disconnect();
-					}
 				}
 			});
 		}
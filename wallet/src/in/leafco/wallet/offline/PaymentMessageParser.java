@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.offline;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.bitcoin.protocols.payments.Protos;
+
+import com.google.leafcoin.core.ProtocolException;
+import com.google.leafcoin.core.Transaction;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+
+import in.leafco.wallet.Constants;
+
+/**
+ * Reads payment messages and transactions received from peers. Sizes and counts announced by the peer are checked against limits
+ * before anything is allocated, and messages are read into buffers that are kept from one connection to the next. Transactions are
+ * parsed right out of these buffers.
+ *
+ * Not thread safe, use one instance per connection handling thread.
+ *
+ * @author Andreas Schildbach
+ */
+public final class PaymentMessageParser
+{
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+
+	private final int maxPaymentSize;
+	private final int maxTransactionSize;
+	private final int maxTransactions;
+
+	private byte[] paymentBuffer = new byte[INITIAL_BUFFER_SIZE];
+	private byte[] txBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+	public PaymentMessageParser(final int maxPaymentSize, final int maxTransactionSize, final int maxTransactions)
+	{
+		this.maxPaymentSize = maxPaymentSize;
+		this.maxTransactionSize = maxTransactionSize;
+		this.maxTransactions = maxTransactions;
+	}
+
+	/**
+	 * Reads a length delimited payment message, like {@link Protos.Payment#parseDelimitedFrom(InputStream)} does.
+	 */
+	public Protos.Payment readDelimitedPayment(@Nonnull final InputStream is) throws IOException
+	{
+		final int firstByte = is.read();
+		if (firstByte == -1)
+			throw new EOFException("no payment message");
+
+		final int size = checkLimit("payment size", CodedInputStream.readRawVarint32(firstByte, is), maxPaymentSize);
+		paymentBuffer = ensureCapacity(paymentBuffer, size);
+		new DataInputStream(is).readFully(paymentBuffer, 0, size);
+
+		return Protos.Payment.newBuilder().mergeFrom(paymentBuffer, 0, size).build();
+	}
+
+	public List<Transaction> parseTransactions(@Nonnull final Protos.Payment payment) throws IOException, ProtocolException
+	{
+		final int numTransactions = checkTransactionCount(payment.getTransactionsCount());
+		final List<Transaction> transactions = new ArrayList<Transaction>(numTransactions);
+
+		for (final ByteString serializedTx : payment.getTransactionsList())
+		{
+			final int size = checkLimit("transaction size", serializedTx.size(), maxTransactionSize);
+			txBuffer = ensureCapacity(txBuffer, size);
+			serializedTx.copyTo(txBuffer, 0);
+			transactions.add(parseTransaction(txBuffer, size));
+		}
+
+		return transactions;
+	}
+
+	/**
+	 * Reads a transaction prefixed by its length as a 32 bit integer. The transaction is consumed from the stream even if it cannot be
+	 * parsed.
+	 */
+	public Transaction readTransaction(@Nonnull final DataInputStream is) throws IOException, ProtocolException
+	{
+		final int size = checkLimit("transaction size", is.readInt(), maxTransactionSize);
+		txBuffer = ensureCapacity(txBuffer, size);
+		is.readFully(txBuffer, 0, size);
+
+		return parseTransaction(txBuffer, size);
+	}
+
+	public int checkTransactionCount(final int numTransactions) throws IOException
+	{
+		return checkLimit("number of transactions", numTransactions, maxTransactions);
+	}
+
+	private static Transaction parseTransaction(final byte[] buffer, final int size) throws ProtocolException
+	{
+		// parsed transactions don't keep a reference to the buffer
+		final Transaction tx = new Transaction(Constants.NETWORK_PARAMETERS, buffer, 0);
+
+		// the buffer may hold more than this transaction, make sure it didn't end early or read beyond
+		if (tx.getMessageSize() != size)
+			throw new ProtocolException("transaction size mismatch: " + tx.getMessageSize() + " instead of " + size);
+
+		return tx;
+	}
+
+	private static int checkLimit(final String what, final int value, final int limit) throws IOException
+	{
+		if (value < 0 || value > limit)
+			throw new IOException(what + " out of range: " + value + " (limit " + limit + ")");
+
+		return value;
+	}
+
+	private static byte[] ensureCapacity(final byte[] buffer, final int size)
+	{
+		if (buffer.length >= size)
+			return buffer;
+
+		int capacity = buffer.length;
+		while (capacity < size)
+			capacity *= 2;
+		return new byte[capacity];
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.offline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import in.leafco.wallet.util.Io;
+
+/**
+ * Talks HTTP to payment protocol merchants. Responses are always read to the end and successful connections aren't torn down, so the
+ * payment can go out over the connection the payment request came in on. Timings of the last exchange are kept per merchant host.
+ *
+ * @author Andreas Schildbach
+ */
+public final class PaymentProtocolClient
+{
+	public static final int MAX_RESPONSE_SIZE = 50000;
+
+	@CheckForNull
+	private final String userAgent;
+	private final int timeoutMs;
+	private final Map<String, Timings> timingsByHost = new HashMap<String, Timings>();
+
+	private static final Logger log = LoggerFactory.getLogger(PaymentProtocolClient.class);
+
+	public PaymentProtocolClient(@Nullable final String userAgent, final int timeoutMs)
+	{
+		this.userAgent = userAgent;
+		this.timeoutMs = timeoutMs;
+	}
+
+	public static final class Response
+	{
+		public final int code;
+		public final String message;
+		@CheckForNull
+		public final String contentType;
+		/** Body of a successful response, null otherwise. */
+		@CheckForNull
+		public final byte[] body;
+
+		private Response(final int code, final String message, @Nullable final String contentType, @Nullable final byte[] body)
+		{
+			this.code = code;
+			this.message = message;
+			this.contentType = contentType;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * Durations of the phases of one exchange, in milliseconds. Connecting includes the TLS handshake, and is close to zero if a kept
+	 * alive connection was reused.
+	 */
+	public static final class Timings
+	{
+		public final String host;
+		public final long dnsMs, connectMs, responseMs, readMs;
+
+		private Timings(final String host, final long dnsMs, final long connectMs, final long responseMs, final long readMs)
+		{
+			this.host = host;
+			this.dnsMs = dnsMs;
+			this.connectMs = connectMs;
+			this.responseMs = responseMs;
+			this.readMs = readMs;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(Locale.US, "%s: dns %dms, connect %dms, response %dms, read %dms", host, dnsMs, connectMs, responseMs, readMs);
+		}
+	}
+
+	public Response get(@Nonnull final String url, @Nonnull final String accept) throws IOException
+	{
+		return exchange(url, "GET", accept, null, null);
+	}
+
+	public Response post(@Nonnull final String url, @Nonnull final String contentType, @Nonnull final byte[] body, @Nonnull final String accept)
+			throws IOException
+	{
+		return exchange(url, "POST", accept, contentType, body);
+	}
+
+	/**
+	 * Resolves the host of the given URL ahead of a request, so the lookup is cached by then.
+	 */
+	public void prefetch(@Nonnull final String url)
+	{
+		try
+		{
+			InetAddress.getAllByName(new URL(url).getHost());
+		}
+		catch (final IOException x)
+		{
+			log.info("cannot prefetch " + url, x);
+		}
+	}
+
+	@CheckForNull
+	public Timings getTimings(@Nonnull final String host)
+	{
+		synchronized (timingsByHost)
+		{
+			return timingsByHost.get(host);
+		}
+	}
+
+	private Response exchange(final String url, final String method, final String accept, @Nullable final String contentType,
+			@Nullable final byte[] body) throws IOException
+	{
+		final URL parsedUrl = new URL(url);
+		final String host = parsedUrl.getHost();
+
+		final long startedAt = System.nanoTime();
+		InetAddress.getAllByName(host);
+		final long resolvedAt = System.nanoTime();
+
+		final HttpURLConnection connection = (HttpURLConnection) parsedUrl.openConnection();
+		boolean reusable = false;
+
+		try
+		{
+			connection.setConnectTimeout(timeoutMs);
+			connection.setReadTimeout(timeoutMs);
+			connection.setUseCaches(false);
+			connection.setDoInput(true);
+			connection.setRequestMethod(method);
+			connection.setRequestProperty("Accept", accept);
+			if (userAgent != null)
+				connection.addRequestProperty("User-Agent", userAgent);
+
+			if (body != null)
+			{
+				connection.setDoOutput(true);
+				connection.setRequestProperty("Content-Type", contentType);
+				connection.setFixedLengthStreamingMode(body.length);
+			}
+
+			connection.connect();
+			final long connectedAt = System.nanoTime();
+
+			if (body != null)
+			{
+				final OutputStream os = connection.getOutputStream();
+				os.write(body);
+				os.close();
+			}
+
+			final int code = connection.getResponseCode();
+			final long respondedAt = System.nanoTime();
+
+			final byte[] responseBody;
+			if (code == HttpURLConnection.HTTP_OK)
+			{
+				// don't even start reading a response that announces itself too large
+				final int contentLength = connection.getContentLength();
+				if (contentLength > MAX_RESPONSE_SIZE)
+					throw new IOException("response announced " + contentLength + " bytes, exceeds " + MAX_RESPONSE_SIZE);
+
+				responseBody = readFully(connection.getInputStream());
+			}
+			else
+			{
+				// consume the error, so the connection can be kept
+				final InputStream errorStream = connection.getErrorStream();
+				if (errorStream != null)
+					readFully(errorStream);
+				responseBody = null;
+			}
+			final long readAt = System.nanoTime();
+
+			final Timings timings = new Timings(host, toMs(resolvedAt - startedAt), toMs(connectedAt - resolvedAt),
+					toMs(respondedAt - connectedAt), toMs(readAt - respondedAt));
+			synchronized (timingsByHost)
+			{
+				timingsByHost.put(host, timings);
+			}
+			log.info("{} {}: {}", new Object[] { method, timings, code });
+
+			reusable = true;
+			return new Response(code, connection.getResponseMessage(), connection.getContentType(), responseBody);
+		}
+		finally
+		{
+			if (!reusable)
+				connection.disconnect();
+		}
+	}
+
+	private static byte[] readFully(final InputStream is) throws IOException
+	{
+		try
+		{
+			return Io.readFully(is, MAX_RESPONSE_SIZE);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	private static long toMs(final long nanos)
+	{
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+}
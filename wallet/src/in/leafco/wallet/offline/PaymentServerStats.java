@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.offline;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a payment server, updated from the connection handling threads.
+ *
+ * @author Andreas Schildbach
+ */
+public final class PaymentServerStats
+{
+	private final long createdAt = System.currentTimeMillis();
+	private final AtomicInteger connections = new AtomicInteger();
+	private final AtomicInteger rejectedConnections = new AtomicInteger();
+	private final AtomicInteger transactions = new AtomicInteger();
+	private final AtomicInteger acks = new AtomicInteger();
+	private final AtomicLong ackLatencyMs = new AtomicLong();
+
+	public void connectionAccepted()
+	{
+		connections.incrementAndGet();
+	}
+
+	public void connectionRejected()
+	{
+		rejectedConnections.incrementAndGet();
+	}
+
+	public void transactionReceived()
+	{
+		transactions.incrementAndGet();
+	}
+
+	public void transactionsReceived(final int count)
+	{
+		transactions.addAndGet(count);
+	}
+
+	/**
+	 * @param latencyMs
+	 *            time from accepting the connection to sending the acknowledgement
+	 */
+	public void ackSent(final long latencyMs)
+	{
+		acks.incrementAndGet();
+		ackLatencyMs.addAndGet(latencyMs);
+	}
+
+	public int getConnections()
+	{
+		return connections.get();
+	}
+
+	public int getRejectedConnections()
+	{
+		return rejectedConnections.get();
+	}
+
+	public int getTransactions()
+	{
+		return transactions.get();
+	}
+
+	public int getAcks()
+	{
+		return acks.get();
+	}
+
+	public float getTransactionsPerSecond()
+	{
+		final long elapsedMs = Math.max(1, System.currentTimeMillis() - createdAt);
+		return transactions.get() * 1000f / elapsedMs;
+	}
+
+	public long getAverageAckLatencyMs()
+	{
+		final int numAcks = acks.get();
+		return numAcks > 0 ? ackLatencyMs.get() / numAcks : 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(Locale.US, "%d connections (%d rejected), %d transactions (%.2f/s), %d acks (%d ms average latency)",
+				getConnections(), getRejectedConnections(), getTransactions(), getTransactionsPerSecond(), getAcks(), getAverageAckLatencyMs());
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.offline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Server side of a stream transport that payments are received over, such as Bluetooth RFCOMM.
+ *
+ * @author Andreas Schildbach
+ */
+public interface PaymentTransport
+{
+	/**
+	 * Blocks until a client connects.
+	 */
+	@Nonnull
+	Connection accept() throws IOException;
+
+	/**
+	 * Stops listening, making a blocked {@link #accept()} fail.
+	 */
+	void close();
+
+	public interface Connection
+	{
+		@Nonnull
+		InputStream getInputStream() throws IOException;
+
+		@Nonnull
+		OutputStream getOutputStream() throws IOException;
+
+		/**
+		 * Closes the connection, making blocked reads and writes fail. Can be called more than once and from any thread.
+		 */
+		void close();
+	}
+}
@@ -21,7 +21,6 @@ import android.content.*;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.wifi.WifiManager;
-import android.os.BatteryManager;
 import in.leafco.wallet.WalletApplication;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -79,15 +78,7 @@ public class AutosyncReceiver extends BroadcastReceiver
 
         // determine power connected state
         boolean powerDontSync = false;
-        int batteryStatus;
-        final Intent batteryChanged = context.getApplicationContext().registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
-        if (batteryChanged != null)
-            batteryStatus = batteryChanged.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
-        else
-            //If we didn't receive an Intent from this, we assume the device is not charging. Will prevent false positives.
-            batteryStatus = BatteryManager.BATTERY_STATUS_DISCHARGING;
-
-        boolean isPowerConnected = batteryStatus == BatteryManager.BATTERY_STATUS_CHARGING || batteryStatus == BatteryManager.BATTERY_STATUS_FULL;
+        boolean isPowerConnected = WalletApplication.isPowerConnected(context);
         if ((!isPowerConnected && prefsAutosyncCharge) || !prefsAutosyncCharge)
             powerDontSync = true;
 
@@ -97,31 +88,31 @@ public class AutosyncReceiver extends BroadcastReceiver
         if (!prefsAutosyncSwitch) //Case 1: Never AutoSync. We will check anyway later. Maybe the user changed their mind.
         {
             maybeStopService(context);
-            WalletApplication.scheduleStartBlockchainService(context);
+            WalletApplication.scheduleStartBlockchainService(context, false);
             return;
         }
         if (bootDontSync) //Case 2: We just booted, no need to sync yet. Check back later.
         {
-            WalletApplication.scheduleStartBlockchainService(context);
+            WalletApplication.scheduleStartBlockchainService(context, false);
             return;
         }
         if (wifiDontSync) //Case 3: We have no WiFi and the user doesn't want to sync. Check back later.
         {
             maybeStopService(context);
-            WalletApplication.scheduleStartBlockchainService(context);
+            WalletApplication.scheduleStartBlockchainService(context, false);
             return;
         }
         if (powerDontSync) //Case 4: No power and user wants only to sync on power. Check pack later.
         {
             maybeStopService(context);
-            WalletApplication.scheduleStartBlockchainService(context);
+            WalletApplication.scheduleStartBlockchainService(context, false);
             return;
         }
 
         // All other cases: We can sync now.
         final Intent serviceIntent = new Intent(context, BlockchainServiceImpl.class);
         context.startService(serviceIntent);
-        WalletApplication.scheduleStartBlockchainService(context);
+        WalletApplication.scheduleStartBlockchainService(context, true);
 	}
 
     private void maybeStopService(Context context)
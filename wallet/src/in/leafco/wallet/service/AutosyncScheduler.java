@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.service;
+
+import javax.annotation.Nonnull;
+
+import com.google.leafcoin.core.NetworkParameters;
+
+import android.app.AlarmManager;
+import android.text.format.DateUtils;
+import in.leafco.wallet.Constants;
+
+/**
+ * Computes when to wake up for the next autosync, from how recently the app was used, how previous syncs went and how fast they
+ * downloaded.
+ *
+ * @author Andreas Schildbach
+ */
+public final class AutosyncScheduler
+{
+	public enum Failure
+	{
+		NONE, NETWORK_PROBLEM, STORAGE_PROBLEM, NO_PROGRESS,
+
+		/** sync didn't get a chance to run, e.g. no connectivity or stopped before it could finish */
+		SKIPPED
+	}
+
+	public static final class SyncResult
+	{
+		public final int blocksGained;
+		public final long durationMs;
+		public final Failure failure;
+		public final boolean pendingIncoming;
+
+		public SyncResult(final int blocksGained, final long durationMs, @Nonnull final Failure failure, final boolean pendingIncoming)
+		{
+			this.blocksGained = blocksGained;
+			this.durationMs = durationMs;
+			this.failure = failure;
+			this.pendingIncoming = pendingIncoming;
+		}
+
+		@Override
+		public String toString()
+		{
+			return blocksGained + " blocks in " + durationMs / DateUtils.SECOND_IN_MILLIS + "s, failure: " + failure
+					+ (pendingIncoming ? ", pending incoming" : "");
+		}
+	}
+
+	public static final long INTERVAL_PENDING_INCOMING_MS = AlarmManager.INTERVAL_FIFTEEN_MINUTES;
+	public static final long INTERVAL_RETRY_MIN_MS = 5 * DateUtils.MINUTE_IN_MILLIS;
+	/** don't let more blocks pile up between autosyncs than previous syncs could download in this time */
+	public static final long MAX_CATCH_UP_MS = 10 * DateUtils.MINUTE_IN_MILLIS;
+	private static final long BLOCK_SPACING_MS = NetworkParameters.TARGET_SPACING * DateUtils.SECOND_IN_MILLIS;
+	private static final int MAX_BACKOFF_SHIFT = 10;
+
+	private AutosyncScheduler()
+	{
+	}
+
+	public static int consecutiveFailures(final int previousFailures, @Nonnull final SyncResult result)
+	{
+		if (result.failure == Failure.SKIPPED)
+			return previousFailures;
+		else if (result.failure != Failure.NONE)
+			return previousFailures + 1;
+		else
+			return 0;
+	}
+
+	/**
+	 * @param lastUsedAt
+	 *            time the app was last used in the foreground
+	 * @param consecutiveFailures
+	 *            number of syncs that failed in a row, 0 if the last sync succeeded
+	 * @param pendingIncoming
+	 *            if incoming transactions were still unconfirmed at the end of the last sync
+	 * @param syncBlocksPerSecond
+	 *            download rate of previous syncs, 0 if unknown
+	 * @param willSync
+	 *            if a sync is running or about to run; if not, the alarm only rechecks the autosync conditions and there is
+	 *            nothing to retry early
+	 */
+	public static long nextIntervalMs(final long now, final long lastUsedAt, final int consecutiveFailures, final boolean pendingIncoming,
+			final float syncBlocksPerSecond, final boolean willSync)
+	{
+		final long lastUsedAgo = now - lastUsedAt;
+
+		long interval;
+		if (lastUsedAgo < Constants.LAST_USAGE_THRESHOLD_JUST_MS)
+			interval = AlarmManager.INTERVAL_FIFTEEN_MINUTES;
+		else if (lastUsedAgo < Constants.LAST_USAGE_THRESHOLD_RECENTLY_MS)
+			interval = AlarmManager.INTERVAL_HALF_DAY;
+		else
+			interval = AlarmManager.INTERVAL_DAY;
+
+		// on slow devices, sync more often so each sync can finish in reasonable time
+		if (syncBlocksPerSecond > 0)
+		{
+			final double catchUpBlocks = syncBlocksPerSecond * MAX_CATCH_UP_MS / DateUtils.SECOND_IN_MILLIS;
+			final long catchUpInterval = Math.max((long) (catchUpBlocks * BLOCK_SPACING_MS), AlarmManager.INTERVAL_FIFTEEN_MINUTES);
+			interval = Math.min(interval, catchUpInterval);
+		}
+
+		if (!willSync)
+			return interval;
+
+		// the user is waiting for a confirmation
+		if (pendingIncoming)
+			interval = Math.min(interval, INTERVAL_PENDING_INCOMING_MS);
+
+		// retry early, but back off exponentially while syncs keep failing
+		if (consecutiveFailures > 0)
+		{
+			final int shift = Math.min(consecutiveFailures - 1, MAX_BACKOFF_SHIFT);
+			interval = Math.min(interval, INTERVAL_RETRY_MIN_MS << shift);
+		}
+
+		return interval;
+	}
+}
@@ -39,6 +39,8 @@ public interface BlockchainService
 	public static final String ACTION_BLOCKCHAIN_STATE_BEST_CHAIN_HEIGHT = "best_chain_height";
 	public static final String ACTION_BLOCKCHAIN_STATE_REPLAYING = "replaying";
 	public static final String ACTION_BLOCKCHAIN_STATE_DOWNLOAD = "download";
+	public static final String ACTION_BLOCKCHAIN_STATE_PROGRESS_PERCENT = "progress_percent";
+	public static final String ACTION_BLOCKCHAIN_STATE_PROGRESS_ETA_MS = "progress_eta_ms";
 	public static final int ACTION_BLOCKCHAIN_STATE_DOWNLOAD_OK = 0;
 	public static final int ACTION_BLOCKCHAIN_STATE_DOWNLOAD_STORAGE_PROBLEM = 1;
 	public static final int ACTION_BLOCKCHAIN_STATE_DOWNLOAD_NETWORK_PROBLEM = 2;
@@ -47,6 +49,8 @@ public interface BlockchainService
 	public static final String ACTION_RESET_BLOCKCHAIN = R.class.getPackage().getName() + ".reset_blockchain";
 	public static final String ACTION_BROADCAST_TRANSACTION = R.class.getPackage().getName() + ".broadcast_transaction";
 	public static final String ACTION_BROADCAST_TRANSACTION_HASH = "hash";
+	public static final String ACTION_BROADCAST_TRANSACTIONS = R.class.getPackage().getName() + ".broadcast_transactions";
+	public static final String ACTION_BROADCAST_TRANSACTIONS_HASHES = "hashes";
 
 	@CheckForNull
 	List<Peer> getConnectedPeers();
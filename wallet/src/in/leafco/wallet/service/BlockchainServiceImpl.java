@@ -18,8 +18,11 @@
 package in.leafco.wallet.service;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.net.InetSocketAddress;
 import java.util.*;
@@ -66,10 +69,12 @@ import com.google.leafcoin.core.CheckpointManager;
 import com.google.leafcoin.core.Peer;
 import com.google.leafcoin.core.PeerEventListener;
 import com.google.leafcoin.core.PeerGroup;
+import com.google.leafcoin.core.ProtocolException;
 import com.google.leafcoin.core.ScriptException;
 import com.google.leafcoin.core.Sha256Hash;
 import com.google.leafcoin.core.StoredBlock;
 import com.google.leafcoin.core.Transaction;
+import com.google.leafcoin.core.TransactionConfidence;
 import com.google.leafcoin.core.TransactionConfidence.ConfidenceType;
 import com.google.leafcoin.core.Wallet;
 import com.google.leafcoin.core.Wallet.BalanceType;
@@ -118,14 +123,29 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 	private final List<Address> notificationAddresses = new LinkedList<Address>();
 	private AtomicInteger transactionsReceived = new AtomicInteger();
 	private int bestChainHeightEver;
+	private BlockchainSyncProgress syncProgress;
+	private PeerConnectionPolicy connectionPolicy;
+	private final BlockchainStallDetector stallDetector = new BlockchainStallDetector(Constants.BLOCKCHAIN_STALL_WINDOW_MS,
+			Constants.BLOCKCHAIN_STALL_MIN_BLOCKS);
+	private final BroadcastQueue broadcastQueue = new BroadcastQueue(BROADCAST_INITIAL_BACKOFF_MS, BROADCAST_MAX_BACKOFF_MS,
+			BROADCAST_MAX_AGE_MS);
+	private File broadcastQueueFile;
 	private long serviceCreatedAt;
+	private int chainHeightAtStart;
+	private int lastDownload = ACTION_BLOCKCHAIN_STATE_DOWNLOAD_OK;
 	private boolean resetBlockchainOnShutdown = false;
+	private boolean stoppedOnIdle = false;
 
 	private static final int MIN_COLLECT_HISTORY = 2;
 	private static final int IDLE_BLOCK_TIMEOUT_MIN = 2;
 	private static final int IDLE_TRANSACTION_TIMEOUT_MIN = 9;
 	private static final int MAX_HISTORY_SIZE = Math.max(IDLE_TRANSACTION_TIMEOUT_MIN, IDLE_BLOCK_TIMEOUT_MIN);
 	private static final long APPWIDGET_THROTTLE_MS = DateUtils.SECOND_IN_MILLIS;
+	private static final long STALL_CHECK_INTERVAL_MS = 10 * DateUtils.SECOND_IN_MILLIS;
+	private static final long BROADCAST_INITIAL_BACKOFF_MS = 15 * DateUtils.SECOND_IN_MILLIS;
+	private static final long BROADCAST_MAX_BACKOFF_MS = 30 * DateUtils.MINUTE_IN_MILLIS;
+	private static final long BROADCAST_MAX_AGE_MS = 3 * DateUtils.DAY_IN_MILLIS;
+	private static final int BROADCAST_MIN_PEERS = 2;
 
 	private static final Logger log = LoggerFactory.getLogger(BlockchainServiceImpl.class);
 
@@ -250,6 +270,9 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 		{
 			this.peerCount = peerCount;
 			changed(peerCount);
+
+			// new peer, maybe it will take what the others didn't
+			handler.post(broadcastRunnable);
 		}
 
 		@Override
@@ -309,12 +332,15 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 		@Override
 		public void onBlocksDownloaded(final Peer peer, final Block block, final int blocksLeft)
 		{
-			bestChainHeightEver = Math.max(bestChainHeightEver, blockChain.getChainHead().getHeight());
+			final int chainHeight = blockChain.getChainHead().getHeight();
+			bestChainHeightEver = Math.max(bestChainHeightEver, chainHeight);
 
 			delayHandler.removeCallbacksAndMessages(null);
 
 			final long now = System.currentTimeMillis();
 
+			syncProgress.onBlocksDownloaded(chainHeight, blocksLeft, now);
+
 			if (now - lastMessageTime.get() > Constants.BLOCKCHAIN_STATE_BROADCAST_THROTTLE_MS)
 				delayHandler.post(runnable);
 			else
@@ -333,6 +359,227 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 		};
 	};
 
+	private final PeerEventListener peerUsefulnessListener = new AbstractPeerEventListener()
+	{
+		@Override
+		public void onTransaction(final Peer peer, final Transaction tx)
+		{
+			connectionPolicy.onPeerUseful(peer);
+		}
+
+		@Override
+		public void onBlocksDownloaded(final Peer peer, final Block block, final int blocksLeft)
+		{
+			connectionPolicy.onPeerUseful(peer);
+		}
+
+		@Override
+		public void onPeerDisconnected(final Peer peer, final int peerCount)
+		{
+			final int maxConnections = connectionPolicy.onPeerDisconnected(peer);
+
+			// the picked peers are gone, now the peergroup won't drop any others
+			final PeerGroup peerGroup = BlockchainServiceImpl.this.peerGroup;
+			if (maxConnections > 0 && peerGroup != null)
+				peerGroup.setMaxConnections(maxConnections);
+		}
+	};
+
+	private void adjustMaxConnections()
+	{
+		if (peerGroup == null || (config.getTrustedPeerOnly() && !config.getTrustedPeerHost().isEmpty()))
+			return;
+
+		final boolean catchingUp = blockChain.getBestChainHeight() < peerGroup.getMostCommonChainHeight();
+		final boolean powerConnected = WalletApplication.isPowerConnected(this);
+		final int maxConnections = connectionPolicy.maxConnections(catchingUp, powerConnected);
+
+		final int currentMaxConnections = peerGroup.getMaxConnections();
+
+		if (maxConnections >= currentMaxConnections)
+		{
+			connectionPolicy.cancelDrop();
+
+			if (maxConnections > currentMaxConnections)
+			{
+				log.info("raising max connections to " + maxConnections + " (" + describe(catchingUp, powerConnected) + ")");
+				peerGroup.setMaxConnections(maxConnections);
+			}
+		}
+		else if (maxConnections != connectionPolicy.getPendingMaxConnections())
+		{
+			log.info("lowering max connections to " + maxConnections + " (" + describe(catchingUp, powerConnected) + ")");
+
+			final List<Peer> drop = connectionPolicy.peersToDrop(peerGroup.getConnectedPeers(), peerGroup.getDownloadPeer(), maxConnections);
+			// if peers need to go, the limit is applied once they have disconnected
+			if (connectionPolicy.getPendingMaxConnections() == 0)
+				peerGroup.setMaxConnections(maxConnections);
+
+			for (final Peer peer : drop)
+			{
+				log.info("dropping least useful peer " + peer);
+				peer.close();
+			}
+		}
+	}
+
+	private static String describe(final boolean catchingUp, final boolean powerConnected)
+	{
+		return (catchingUp ? "catching up" : "at tip") + ", " + (powerConnected ? "charging" : "on battery");
+	}
+
+	private final Runnable stallCheckRunnable = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			if (peerGroup == null)
+				return;
+
+			final int chainHeight = blockChain.getBestChainHeight();
+			final int peersHeight = peerGroup.getMostCommonChainHeight();
+
+			if (stallDetector.check(chainHeight, peersHeight, System.currentTimeMillis()))
+			{
+				final Peer downloadPeer = peerGroup.getDownloadPeer();
+
+				// peergroup will pick the next best peer and restart the download from there
+				if (downloadPeer != null && peerGroup.numConnectedPeers() > 1)
+				{
+					log.info("download peer " + downloadPeer + " stalled at " + chainHeight + "/" + peersHeight + ", disconnecting");
+					downloadPeer.close();
+				}
+			}
+
+			handler.postDelayed(this, STALL_CHECK_INTERVAL_MS);
+		}
+	};
+
+	private final Runnable broadcastRunnable = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			handler.removeCallbacks(this);
+
+			if (broadcastQueue.isEmpty())
+				return;
+
+			final Wallet wallet = application.getWallet();
+			boolean changed = false;
+
+			for (final BroadcastQueue.Entry entry : broadcastQueue.entries())
+			{
+				final Transaction tx = wallet.getTransaction(new Sha256Hash(entry.hash));
+				if (tx == null)
+					continue;
+
+				final TransactionConfidence confidence = tx.getConfidence();
+				final ConfidenceType confidenceType = confidence.getConfidenceType();
+				final int numBroadcastPeers = confidence.numBroadcastPeers();
+
+				if (confidenceType == ConfidenceType.BUILDING || confidenceType == ConfidenceType.DEAD
+						|| numBroadcastPeers >= BROADCAST_MIN_PEERS)
+				{
+					log.info("transaction " + entry.hash + " is " + confidenceType + " and seen by " + numBroadcastPeers
+							+ " peers, stopping broadcast after " + entry.getAttempts() + " attempts");
+					broadcastQueue.remove(entry.hash);
+					changed = true;
+				}
+			}
+
+			// without peers, wait for the next one to connect
+			if (peerGroup == null || peerGroup.numConnectedPeers() == 0)
+			{
+				if (changed)
+					saveBroadcastQueue();
+				return;
+			}
+
+			final long now = System.currentTimeMillis();
+			final int sizeBefore = broadcastQueue.size();
+			final List<BroadcastQueue.Entry> due = broadcastQueue.takeDue(now);
+
+			for (final BroadcastQueue.Entry entry : due)
+			{
+				try
+				{
+					final Transaction walletTx = wallet.getTransaction(new Sha256Hash(entry.hash));
+					final Transaction tx = walletTx != null ? walletTx : new Transaction(Constants.NETWORK_PARAMETERS, entry.tx);
+
+					log.info("broadcasting transaction " + entry.hash + ", attempt " + entry.getAttempts());
+					peerGroup.broadcastTransaction(tx);
+				}
+				catch (final ProtocolException x)
+				{
+					log.warn("cannot decode transaction " + entry.hash + " to broadcast", x);
+					broadcastQueue.remove(entry.hash);
+				}
+			}
+
+			if (changed || !due.isEmpty() || broadcastQueue.size() != sizeBefore)
+				saveBroadcastQueue();
+
+			if (!broadcastQueue.isEmpty())
+				handler.postDelayed(this, Math.max(broadcastQueue.nextAttemptAt() - now, DateUtils.SECOND_IN_MILLIS));
+		}
+	};
+
+	private void queueBroadcast(@Nonnull final Transaction tx)
+	{
+		broadcastQueue.add(tx.getHashAsString(), tx.unsafeBitcoinSerialize(), System.currentTimeMillis());
+	}
+
+	private void loadBroadcastQueue()
+	{
+		if (!broadcastQueueFile.exists())
+			return;
+
+		try
+		{
+			final InputStream is = new FileInputStream(broadcastQueueFile);
+			try
+			{
+				broadcastQueue.read(is, System.currentTimeMillis());
+			}
+			finally
+			{
+				is.close();
+			}
+
+			log.info("loaded " + broadcastQueue.size() + " transactions to broadcast");
+		}
+		catch (final IOException x)
+		{
+			log.warn("problem loading broadcast queue, discarding", x);
+		}
+	}
+
+	private void saveBroadcastQueue()
+	{
+		final File tempFile = new File(broadcastQueueFile.getAbsolutePath() + ".tmp");
+
+		try
+		{
+			final OutputStream os = new FileOutputStream(tempFile);
+			try
+			{
+				broadcastQueue.write(os);
+			}
+			finally
+			{
+				os.close();
+			}
+
+			if (!tempFile.renameTo(broadcastQueueFile))
+				throw new IOException("cannot rename " + tempFile + " to " + broadcastQueueFile);
+		}
+		catch (final IOException x)
+		{
+			log.warn("problem saving broadcast queue", x);
+		}
+	}
+
 	private final BroadcastReceiver connectivityReceiver = new BroadcastReceiver()
 	{
 		private boolean hasConnectivity;
@@ -392,6 +639,7 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 				peerGroup.addWallet(wallet);
 				peerGroup.setUserAgent(Constants.USER_AGENT, application.packageInfo().versionName);
 				peerGroup.addEventListener(peerConnectivityListener);
+				peerGroup.addEventListener(peerUsefulnessListener);
 
 				final int maxConnectedPeers = application.maxConnectedPeers();
 
@@ -476,10 +724,15 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 				// start peergroup
 				peerGroup.start();
 				peerGroup.startBlockChainDownload(blockchainDownloadListener);
+
+				stallDetector.reset(blockChain.getBestChainHeight(), System.currentTimeMillis());
+				handler.postDelayed(stallCheckRunnable, STALL_CHECK_INTERVAL_MS);
 			}
 			else if (!hasEverything && peerGroup != null)
 			{
 				log.info("stopping peergroup");
+				handler.removeCallbacks(stallCheckRunnable);
+				peerGroup.removeEventListener(peerUsefulnessListener);
 				peerGroup.removeEventListener(peerConnectivityListener);
 				peerGroup.removeWallet(wallet);
 				peerGroup.stop();
@@ -569,11 +822,14 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 				if (isIdle)
 				{
 					log.info("idling detected, stopping service");
+					stoppedOnIdle = true;
 					stopSelf();
 				}
 			}
 
 			lastChainHeight = chainHeight;
+
+			adjustMaxConnections();
 		}
 	};
 
@@ -623,6 +879,8 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 		final Wallet wallet = application.getWallet();
 
 		bestChainHeightEver = config.getBestChainHeightEver();
+		syncProgress = new BlockchainSyncProgress(config.getSyncBlocksPerSecond());
+		connectionPolicy = new PeerConnectionPolicy(application.maxConnectedPeers());
 
 		peerConnectivityListener = new PeerConnectivityListener();
 
@@ -686,10 +944,15 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 			throw new Error("blockchain cannot be created", x);
 		}
 
+		chainHeightAtStart = blockChain.getBestChainHeight();
+
 		application.getWallet().addEventListener(walletEventListener, Threading.SAME_THREAD);
 
 		registerReceiver(tickReceiver, new IntentFilter(Intent.ACTION_TIME_TICK));
 
+		broadcastQueueFile = new File(getDir("blockstore", Context.MODE_PRIVATE), Constants.BROADCAST_QUEUE_FILENAME);
+		loadBroadcastQueue();
+
 		maybeRotateKeys();
 	}
 
@@ -721,16 +984,35 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 			final Sha256Hash hash = new Sha256Hash(intent.getByteArrayExtra(BlockchainService.ACTION_BROADCAST_TRANSACTION_HASH));
 			final Transaction tx = application.getWallet().getTransaction(hash);
 
-			if (peerGroup != null)
+			if (tx != null)
 			{
-				log.info("broadcasting transaction " + tx.getHashAsString());
-				peerGroup.broadcastTransaction(tx);
+				queueBroadcast(tx);
+				saveBroadcastQueue();
+				handler.post(broadcastRunnable);
 			}
 			else
 			{
-				log.info("peergroup not available, not broadcasting transaction " + tx.getHashAsString());
+				log.info("transaction " + hash + " not in wallet, not broadcasting");
 			}
 		}
+		else if (BlockchainService.ACTION_BROADCAST_TRANSACTIONS.equals(action))
+		{
+			final byte[][] hashes = (byte[][]) intent.getSerializableExtra(BlockchainService.ACTION_BROADCAST_TRANSACTIONS_HASHES);
+
+			for (final byte[] hashBytes : hashes)
+			{
+				final Sha256Hash hash = new Sha256Hash(hashBytes);
+				final Transaction tx = application.getWallet().getTransaction(hash);
+
+				if (tx != null)
+					queueBroadcast(tx);
+				else
+					log.info("transaction " + hash + " not in wallet, not broadcasting");
+			}
+
+			saveBroadcastQueue();
+			handler.post(broadcastRunnable);
+		}
 
 		return START_NOT_STICKY;
 	}
@@ -740,14 +1022,19 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 	{
 		log.debug(".onDestroy()");
 
-		WalletApplication.scheduleStartBlockchainService(this);
+		config.recordSyncResult(syncResult());
+		WalletApplication.scheduleStartBlockchainService(this, true);
 
 		unregisterReceiver(tickReceiver);
 
 		application.getWallet().removeEventListener(walletEventListener);
 
+		handler.removeCallbacks(stallCheckRunnable);
+		handler.removeCallbacks(broadcastRunnable);
+
 		if (peerGroup != null)
 		{
+			peerGroup.removeEventListener(peerUsefulnessListener);
 			peerGroup.removeEventListener(peerConnectivityListener);
 			peerGroup.removeWallet(application.getWallet());
 			peerGroup.stopAndWait();
@@ -764,6 +1051,10 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 
 		config.setBestChainHeightEver(bestChainHeightEver);
 
+		final float syncBlocksPerSecond = syncProgress.getAverageBlocksPerSecond();
+		if (syncBlocksPerSecond > 0)
+			config.updateSyncBlocksPerSecond(syncBlocksPerSecond);
+
 		delayHandler.removeCallbacksAndMessages(null);
 
 		try
@@ -794,6 +1085,48 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 		log.info("service was up for " + ((System.currentTimeMillis() - serviceCreatedAt) / 1000 / 60) + " minutes");
 	}
 
+	private AutosyncScheduler.SyncResult syncResult()
+	{
+		final int chainHeight = blockChain.getBestChainHeight();
+		final int blocksGained = chainHeight - chainHeightAtStart;
+		final long duration = System.currentTimeMillis() - serviceCreatedAt;
+
+		final AutosyncScheduler.Failure failure;
+		if ((lastDownload & ACTION_BLOCKCHAIN_STATE_DOWNLOAD_STORAGE_PROBLEM) != 0)
+			failure = AutosyncScheduler.Failure.STORAGE_PROBLEM;
+		else if ((lastDownload & ACTION_BLOCKCHAIN_STATE_DOWNLOAD_NETWORK_PROBLEM) != 0 || peerGroup == null)
+			failure = AutosyncScheduler.Failure.SKIPPED; // no connectivity, nothing was tried
+		else if (!stoppedOnIdle && blocksGained == 0)
+			failure = AutosyncScheduler.Failure.SKIPPED; // stopped by the user or the system before it could finish
+		else if (peerGroup.numConnectedPeers() == 0 && blocksGained == 0)
+			failure = AutosyncScheduler.Failure.NETWORK_PROBLEM;
+		else if (blocksGained == 0 && chainHeight < peerGroup.getMostCommonChainHeight())
+			failure = AutosyncScheduler.Failure.NO_PROGRESS;
+		else
+			failure = AutosyncScheduler.Failure.NONE;
+
+		final Wallet wallet = application.getWallet();
+		boolean pendingIncoming = false;
+		for (final Transaction tx : wallet.getPendingTransactions())
+		{
+			try
+			{
+				if (tx.getValue(wallet).signum() > 0)
+				{
+					pendingIncoming = true;
+					break;
+				}
+			}
+			catch (final ScriptException x)
+			{
+				// only used for scheduling, don't take down onDestroy over it
+				log.warn("cannot determine value of pending transaction " + tx.getHash() + ", not counting it as incoming", x);
+			}
+		}
+
+		return new AutosyncScheduler.SyncResult(blocksGained, duration, failure, pendingIncoming);
+	}
+
 	@Override
 	public void onLowMemory()
 	{
@@ -852,6 +1185,8 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 
 	private void sendBroadcastBlockchainState(final int download)
 	{
+		lastDownload = download;
+
 		final StoredBlock chainHead = blockChain.getChainHead();
 
 		final Intent broadcast = new Intent(ACTION_BLOCKCHAIN_STATE);
@@ -860,6 +1195,8 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 		broadcast.putExtra(ACTION_BLOCKCHAIN_STATE_BEST_CHAIN_HEIGHT, chainHead.getHeight());
 		broadcast.putExtra(ACTION_BLOCKCHAIN_STATE_REPLAYING, chainHead.getHeight() < bestChainHeightEver);
 		broadcast.putExtra(ACTION_BLOCKCHAIN_STATE_DOWNLOAD, download);
+		broadcast.putExtra(ACTION_BLOCKCHAIN_STATE_PROGRESS_PERCENT, syncProgress.getPercent());
+		broadcast.putExtra(ACTION_BLOCKCHAIN_STATE_PROGRESS_ETA_MS, syncProgress.getEtaMs());
 
 		sendStickyBroadcast(broadcast);
 	}
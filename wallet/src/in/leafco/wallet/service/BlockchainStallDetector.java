@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.service;
+
+/**
+ * Decides if the blockchain download peer is stalling, by comparing the blocks gained within a window against the chain height
+ * advertised by the connected peers.
+ *
+ * @author Andreas Schildbach
+ */
+public final class BlockchainStallDetector
+{
+	private final long windowMs;
+	private final int minBlocksPerWindow;
+
+	private long windowStartedAt = -1;
+	private int windowStartHeight;
+
+	public BlockchainStallDetector(final long windowMs, final int minBlocksPerWindow)
+	{
+		if (windowMs <= 0 || minBlocksPerWindow <= 0)
+			throw new IllegalArgumentException("bad window: " + windowMs + "ms/" + minBlocksPerWindow + " blocks");
+
+		this.windowMs = windowMs;
+		this.minBlocksPerWindow = minBlocksPerWindow;
+	}
+
+	/**
+	 * Start a new window, e.g. because a new download peer has been selected.
+	 */
+	public synchronized void reset(final int chainHeight, final long now)
+	{
+		windowStartedAt = now;
+		windowStartHeight = chainHeight;
+	}
+
+	/**
+	 * @param chainHeight
+	 *            height of our own chain head
+	 * @param peersHeight
+	 *            height advertised by the connected peers, or 0 if unknown
+	 * @return true if the download peer underperformed during the last window and should be replaced
+	 */
+	public synchronized boolean check(final int chainHeight, final int peersHeight, final long now)
+	{
+		if (windowStartedAt == -1 || chainHeight >= peersHeight || chainHeight < windowStartHeight)
+		{
+			// not downloading or reorganized, nothing to judge
+			reset(chainHeight, now);
+			return false;
+		}
+
+		if (now - windowStartedAt < windowMs)
+			return false;
+
+		final int blocksGained = chainHeight - windowStartHeight;
+		final int blocksMissing = peersHeight - windowStartHeight;
+		reset(chainHeight, now);
+
+		return blocksGained < Math.min(minBlocksPerWindow, blocksMissing);
+	}
+}
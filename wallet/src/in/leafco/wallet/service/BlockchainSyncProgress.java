@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.service;
+
+/**
+ * Estimates blockchain download progress and remaining time from the blocksLeft reported by the download peer. The download
+ * rate is smoothed with an exponentially weighted moving average, seeded from the rate of previous syncs if known.
+ *
+ * @author Andreas Schildbach
+ */
+public final class BlockchainSyncProgress
+{
+	private static final long SAMPLE_INTERVAL_MS = 1000;
+	private static final double EWMA_ALPHA = 0.2;
+
+	private int startHeight = -1;
+	private int chainHeight;
+	private int blocksLeft = -1;
+
+	private long sampleStartedAt;
+	private int sampleBlocks;
+	private double blocksPerMs;
+
+	private int syncedBlocks;
+	private long syncedMs;
+
+	public BlockchainSyncProgress(final float historicalBlocksPerSecond)
+	{
+		this.blocksPerMs = historicalBlocksPerSecond / 1000d;
+	}
+
+	public synchronized void onBlocksDownloaded(final int chainHeight, final int blocksLeft, final long now)
+	{
+		if (startHeight == -1)
+		{
+			startHeight = chainHeight;
+			sampleStartedAt = now;
+		}
+		else
+		{
+			final int delta = chainHeight - this.chainHeight;
+			if (delta > 0)
+				sampleBlocks += delta;
+		}
+
+		this.chainHeight = chainHeight;
+		this.blocksLeft = Math.max(blocksLeft, 0);
+
+		final long sampleMs = now - sampleStartedAt;
+		if (sampleMs >= SAMPLE_INTERVAL_MS)
+		{
+			final double sample = (double) sampleBlocks / sampleMs;
+			blocksPerMs = blocksPerMs > 0 ? EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * blocksPerMs : sample;
+
+			// only account for time spent actually downloading
+			if (sampleBlocks > 0)
+			{
+				syncedBlocks += sampleBlocks;
+				syncedMs += sampleMs;
+			}
+
+			sampleBlocks = 0;
+			sampleStartedAt = now;
+		}
+	}
+
+	/**
+	 * @return percent of blocks downloaded since the download started, or -1 if unknown
+	 */
+	public synchronized int getPercent()
+	{
+		if (blocksLeft < 0)
+			return -1;
+
+		final int total = chainHeight - startHeight + blocksLeft;
+		if (total <= 0)
+			return 100;
+
+		return (int) (100L * (chainHeight - startHeight) / total);
+	}
+
+	/**
+	 * @return estimated time to download the remaining blocks, or -1 if unknown
+	 */
+	public synchronized long getEtaMs()
+	{
+		if (blocksLeft < 0)
+			return -1;
+
+		return estimateMs(blocksLeft, blocksPerMs);
+	}
+
+	/**
+	 * @return average rate over the time spent downloading in this session, or 0 if not enough data has been collected
+	 */
+	public synchronized float getAverageBlocksPerSecond()
+	{
+		if (syncedMs < SAMPLE_INTERVAL_MS)
+			return 0;
+
+		return (float) (syncedBlocks * 1000d / syncedMs);
+	}
+
+	private static long estimateMs(final int numBlocks, final double blocksPerMs)
+	{
+		if (numBlocks == 0)
+			return 0;
+		if (blocksPerMs <= 0)
+			return -1;
+
+		return (long) (numBlocks / blocksPerMs);
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Outbound transactions waiting to be seen by the network. Each entry is broadcast again with exponential backoff until it is removed,
+ * which is up to the caller, or until it expires. The queue can be written to and read from a stream, so it survives restarts of the
+ * service.
+ *
+ * @author Andreas Schildbach
+ */
+public final class BroadcastQueue
+{
+	private static final int VERSION = 1;
+	private static final int MAX_TX_SIZE = 100000;
+
+	public static final class Entry
+	{
+		public final String hash;
+		public final byte[] tx;
+		public final long queuedAt;
+		private int attempts;
+		private long nextAttemptAt;
+
+		private Entry(@Nonnull final String hash, @Nonnull final byte[] tx, final long queuedAt, final int attempts, final long nextAttemptAt)
+		{
+			this.hash = hash;
+			this.tx = tx;
+			this.queuedAt = queuedAt;
+			this.attempts = attempts;
+			this.nextAttemptAt = nextAttemptAt;
+		}
+
+		public int getAttempts()
+		{
+			return attempts;
+		}
+	}
+
+	private final long initialBackoffMs;
+	private final long maxBackoffMs;
+	private final long maxAgeMs;
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+	public BroadcastQueue(final long initialBackoffMs, final long maxBackoffMs, final long maxAgeMs)
+	{
+		if (initialBackoffMs <= 0 || maxBackoffMs < initialBackoffMs || maxAgeMs <= 0)
+			throw new IllegalArgumentException("bad backoff: " + initialBackoffMs + "ms/" + maxBackoffMs + "ms/" + maxAgeMs + "ms");
+
+		this.initialBackoffMs = initialBackoffMs;
+		this.maxBackoffMs = maxBackoffMs;
+		this.maxAgeMs = maxAgeMs;
+	}
+
+	/**
+	 * Queues a transaction to be broadcast right away. If it is queued already, its next attempt is brought forward.
+	 *
+	 * @return true if the transaction wasn't queued before
+	 */
+	public synchronized boolean add(@Nonnull final String hash, @Nonnull final byte[] tx, final long now)
+	{
+		final Entry entry = entries.get(hash);
+
+		if (entry != null)
+		{
+			entry.nextAttemptAt = Math.min(entry.nextAttemptAt, now);
+			return false;
+		}
+
+		entries.put(hash, new Entry(hash, tx, now, 0, now));
+		return true;
+	}
+
+	public synchronized boolean remove(@Nonnull final String hash)
+	{
+		return entries.remove(hash) != null;
+	}
+
+	/**
+	 * Returns the entries whose next attempt is due, and schedules the attempt after that one. Entries past their maximum age are
+	 * dropped.
+	 */
+	public synchronized List<Entry> takeDue(final long now)
+	{
+		final List<Entry> due = new ArrayList<Entry>();
+
+		for (final Iterator<Entry> i = entries.values().iterator(); i.hasNext();)
+		{
+			final Entry entry = i.next();
+
+			if (now - entry.queuedAt > maxAgeMs)
+			{
+				i.remove();
+			}
+			else if (entry.nextAttemptAt <= now)
+			{
+				entry.nextAttemptAt = now + backoff(entry.attempts);
+				entry.attempts++;
+				due.add(entry);
+			}
+		}
+
+		return due;
+	}
+
+	/**
+	 * @return time of the earliest next attempt, or {@link Long#MAX_VALUE} if the queue is empty
+	 */
+	public synchronized long nextAttemptAt()
+	{
+		long nextAttemptAt = Long.MAX_VALUE;
+		for (final Entry entry : entries.values())
+			nextAttemptAt = Math.min(nextAttemptAt, entry.nextAttemptAt);
+		return nextAttemptAt;
+	}
+
+	public synchronized List<Entry> entries()
+	{
+		return new ArrayList<Entry>(entries.values());
+	}
+
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	public synchronized boolean isEmpty()
+	{
+		return entries.isEmpty();
+	}
+
+	private long backoff(final int attempts)
+	{
+		// shift only as far as needed, to not overflow
+		long backoff = initialBackoffMs;
+		for (int i = 0; i < attempts && backoff < maxBackoffMs; i++)
+			backoff *= 2;
+		return Math.min(backoff, maxBackoffMs);
+	}
+
+	public synchronized void write(@Nonnull final OutputStream os) throws IOException
+	{
+		final DataOutputStream dos = new DataOutputStream(os);
+
+		dos.writeInt(VERSION);
+		dos.writeInt(entries.size());
+
+		for (final Entry entry : entries.values())
+		{
+			dos.writeUTF(entry.hash);
+			dos.writeLong(entry.queuedAt);
+			dos.writeInt(entry.attempts);
+			dos.writeInt(entry.tx.length);
+			dos.write(entry.tx);
+		}
+
+		dos.flush();
+	}
+
+	/**
+	 * Reads entries written by {@link #write(OutputStream)}. They are due right away, as the peers are likely different ones than
+	 * before.
+	 */
+	public synchronized void read(@Nonnull final InputStream is, final long now) throws IOException
+	{
+		final DataInputStream dis = new DataInputStream(is);
+
+		final int version = dis.readInt();
+		if (version != VERSION)
+			throw new IOException("unknown version: " + version);
+
+		final int numEntries = dis.readInt();
+		for (int i = 0; i < numEntries; i++)
+		{
+			final String hash = dis.readUTF();
+			final long queuedAt = dis.readLong();
+			final int attempts = dis.readInt();
+			final int txLength = dis.readInt();
+			if (txLength < 0 || txLength > MAX_TX_SIZE)
+				throw new IOException("bad transaction length: " + txLength);
+			final byte[] tx = new byte[txLength];
+			dis.readFully(tx);
+
+			if (!entries.containsKey(hash))
+				entries.put(hash, new Entry(hash, tx, queuedAt, attempts, now));
+		}
+	}
+}
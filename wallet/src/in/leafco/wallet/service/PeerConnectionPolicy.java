@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.leafcoin.core.Peer;
+
+/**
+ * Decides how many peers to stay connected to, depending on sync phase, charging state and how useful the connected peers have
+ * been recently.
+ *
+ * @author Andreas Schildbach
+ */
+public final class PeerConnectionPolicy
+{
+	private static final int MIN_CONNECTIONS = 2;
+	private static final int CATCH_UP_EXTRA_CONNECTIONS = 2;
+
+	private final int baseConnections;
+	private final Map<Peer, Integer> peerUsefulness = new HashMap<Peer, Integer>();
+	private final Set<Peer> droppingPeers = new HashSet<Peer>();
+	private int pendingMaxConnections = 0;
+
+	/**
+	 * @param baseConnections
+	 *            connections appropriate for the device when at chain tip and charging
+	 */
+	public PeerConnectionPolicy(final int baseConnections)
+	{
+		this.baseConnections = baseConnections;
+	}
+
+	public synchronized void onPeerUseful(@Nonnull final Peer peer)
+	{
+		final Integer usefulness = peerUsefulness.get(peer);
+		peerUsefulness.put(peer, usefulness != null ? usefulness + 1 : 1);
+	}
+
+	/**
+	 * @return the lowered limit to apply to the peer group, once the last of the peers picked by
+	 *         {@link #peersToDrop(List, Peer, int)} has disconnected, or 0
+	 */
+	public synchronized int onPeerDisconnected(@Nonnull final Peer peer)
+	{
+		peerUsefulness.remove(peer);
+
+		if (droppingPeers.remove(peer) && droppingPeers.isEmpty())
+		{
+			final int maxConnections = pendingMaxConnections;
+			pendingMaxConnections = 0;
+			return maxConnections;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * @return the lowered limit still waiting for picked peers to disconnect, or 0
+	 */
+	public synchronized int getPendingMaxConnections()
+	{
+		return pendingMaxConnections;
+	}
+
+	/**
+	 * Forgets about a lowered limit still waiting for picked peers to disconnect, because the limit went up again.
+	 */
+	public synchronized void cancelDrop()
+	{
+		droppingPeers.clear();
+		pendingMaxConnections = 0;
+	}
+
+	public int maxConnections(final boolean catchingUp, final boolean powerConnected)
+	{
+		if (catchingUp)
+			return baseConnections + CATCH_UP_EXTRA_CONNECTIONS; // more redundancy for filtered transaction relay
+		else if (powerConnected)
+			return baseConnections;
+		else
+			return Math.max(MIN_CONNECTIONS, baseConnections / 2);
+	}
+
+	/**
+	 * Picks the least useful peers to disconnect in order to get down to the given number of connections. The peer group's limit
+	 * should only be lowered once they are gone, see {@link #onPeerDisconnected(Peer)}, or else it would drop peers of its own choosing
+	 * as well. Usefulness counters are reset afterwards, so each decision is based on the period since the previous one.
+	 */
+	public synchronized List<Peer> peersToDrop(@Nonnull final List<Peer> connectedPeers, @Nullable final Peer downloadPeer,
+			final int maxConnections)
+	{
+		final List<Peer> candidates = new ArrayList<Peer>(connectedPeers);
+		candidates.remove(downloadPeer);
+		candidates.removeAll(droppingPeers);
+
+		Collections.sort(candidates, new Comparator<Peer>()
+		{
+			@Override
+			public int compare(final Peer lhs, final Peer rhs)
+			{
+				return usefulness(lhs) - usefulness(rhs);
+			}
+		});
+
+		final int numRemaining = connectedPeers.size() - droppingPeers.size();
+		final int numDrop = Math.min(candidates.size(), numRemaining - maxConnections);
+		final List<Peer> drop = numDrop > 0 ? new ArrayList<Peer>(candidates.subList(0, numDrop)) : Collections.<Peer> emptyList();
+
+		droppingPeers.addAll(drop);
+		pendingMaxConnections = droppingPeers.isEmpty() ? 0 : maxConnections;
+		peerUsefulness.clear();
+
+		return drop;
+	}
+
+	private int usefulness(final Peer peer)
+	{
+		final Integer usefulness = peerUsefulness.get(peer);
+		return usefulness != null ? usefulness : 0;
+	}
+}
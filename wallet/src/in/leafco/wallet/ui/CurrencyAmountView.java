@@ -17,7 +17,6 @@
 
 package in.leafco.wallet.ui;
 
-import java.math.BigInteger;
 import java.util.Currency;
 
 import javax.annotation.CheckForNull;
@@ -45,6 +44,7 @@ import android.widget.TextView;
 import com.google.leafcoin.core.Transaction;
 
 import in.leafco.wallet.Constants;
+import in.leafco.wallet.util.Amount;
 import in.leafco.wallet.util.GenericUtils;
 import in.leafco.wallet.util.WalletUtils;
 import in.leafco.wallet.R;
@@ -61,6 +61,8 @@ public final class CurrencyAmountView extends FrameLayout
 		void focusChanged(final boolean hasFocus);
 	}
 
+	private static final long MIN_NONDUST_OUTPUT = Transaction.MIN_NONDUST_OUTPUT.longValue();
+
 	private int significantColor, lessSignificantColor, errorColor;
 	private Drawable deleteButtonDrawable, contextButtonDrawable;
 	private Drawable currencySymbolDrawable;
@@ -199,22 +201,22 @@ public final class CurrencyAmountView extends FrameLayout
 	}
 
 	@CheckForNull
-	public BigInteger getAmount()
+	public Amount getAmount()
 	{
 		if (isValidAmount(false))
-			return GenericUtils.toNanoCoins(textView.getText().toString().trim(), shift);
+			return GenericUtils.toAmount(textView.getText().toString().trim(), shift);
 		else
 			return null;
 	}
 
-	public void setAmount(@Nullable final BigInteger amount, final boolean fireListener)
+	public void setAmount(@Nullable final Amount amount, final boolean fireListener)
 	{
 		if (!fireListener)
 			textViewListener.setFire(false);
 
 		if (amount != null)
-			textView.setText(amountSigned ? GenericUtils.formatValue(amount, Constants.CURRENCY_PLUS_SIGN, Constants.CURRENCY_MINUS_SIGN,
-					inputPrecision, shift) : GenericUtils.formatValue(amount, inputPrecision, shift));
+			textView.setText(amountSigned ? GenericUtils.formatValue(amount.longValue(), Constants.CURRENCY_PLUS_SIGN,
+					Constants.CURRENCY_MINUS_SIGN, inputPrecision, shift) : GenericUtils.formatValue(amount.longValue(), inputPrecision, shift));
 		else
 			textView.setText(null);
 
@@ -222,11 +224,11 @@ public final class CurrencyAmountView extends FrameLayout
 			textViewListener.setFire(true);
 	}
 
-	public void setHint(@Nullable final BigInteger amount)
+	public void setHint(@Nullable final Amount amount)
 	{
 		final SpannableStringBuilder hint;
 		if (amount != null)
-			hint = new SpannableStringBuilder(GenericUtils.formatValue(amount, hintPrecision, shift));
+			hint = new SpannableStringBuilder(GenericUtils.formatValue(amount.longValue(), hintPrecision, shift));
 		else
 			hint = new SpannableStringBuilder("0.00");
 
@@ -278,14 +280,14 @@ public final class CurrencyAmountView extends FrameLayout
 		{
 			if (!amount.isEmpty())
 			{
-				final BigInteger nanoCoins = GenericUtils.toNanoCoins(amount, shift);
+				final long nanoCoins = GenericUtils.toAmount(amount, shift).longValue();
 
 				// exactly zero
-				if (zeroIsValid && nanoCoins.signum() == 0)
+				if (zeroIsValid && nanoCoins == 0)
 					return true;
 
 				// too small
-				if (nanoCoins.compareTo(Transaction.MIN_NONDUST_OUTPUT) < 0)
+				if (nanoCoins < MIN_NONDUST_OUTPUT)
 					return false;
 
 				return true;
@@ -355,7 +357,7 @@ public final class CurrencyAmountView extends FrameLayout
 			final Bundle bundle = (Bundle) state;
 			super.onRestoreInstanceState(bundle.getParcelable("super_state"));
 			textView.onRestoreInstanceState(bundle.getParcelable("child_textview"));
-			setAmount((BigInteger) bundle.getSerializable("amount"), false);
+			setAmount((Amount) bundle.getSerializable("amount"), false);
 		}
 		else
 		{
@@ -407,7 +409,7 @@ public final class CurrencyAmountView extends FrameLayout
 		{
 			if (!hasFocus)
 			{
-				final BigInteger amount = getAmount();
+				final Amount amount = getAmount();
 				if (amount != null)
 					setAmount(amount, false);
 			}
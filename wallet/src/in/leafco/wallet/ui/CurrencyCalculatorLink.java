@@ -17,8 +17,6 @@
 
 package in.leafco.wallet.ui;
 
-import java.math.BigInteger;
-
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -26,6 +24,7 @@ import javax.annotation.Nullable;
 import android.view.View;
 import in.leafco.wallet.ExchangeRatesProvider.ExchangeRate;
 import in.leafco.wallet.ui.CurrencyAmountView.Listener;
+import in.leafco.wallet.util.Amount;
 import in.leafco.wallet.util.WalletUtils;
 
 /**
@@ -116,7 +115,7 @@ public final class CurrencyCalculatorLink
 	}
 
 	@CheckForNull
-	public BigInteger getAmount()
+	public Amount getAmount()
 	{
 		if (exchangeDirection)
 		{
@@ -124,7 +123,7 @@ public final class CurrencyCalculatorLink
 		}
 		else if (exchangeRate != null)
 		{
-			final BigInteger localAmount = localAmountView.getAmount();
+			final Amount localAmount = localAmountView.getAmount();
 			return localAmount != null ? WalletUtils.btcValue(localAmount, exchangeRate.rate) : null;
 		}
 		else
@@ -144,7 +143,7 @@ public final class CurrencyCalculatorLink
 
 			if (exchangeDirection)
 			{
-				final BigInteger btcAmount = btcAmountView.getAmount();
+				final Amount btcAmount = btcAmountView.getAmount();
 				if (btcAmount != null)
 				{
 					localAmountView.setAmount(null, false);
@@ -154,7 +153,7 @@ public final class CurrencyCalculatorLink
 			}
 			else
 			{
-				final BigInteger localAmount = localAmountView.getAmount();
+				final Amount localAmount = localAmountView.getAmount();
 				if (localAmount != null)
 				{
 					btcAmountView.setAmount(null, false);
@@ -194,7 +193,7 @@ public final class CurrencyCalculatorLink
 		activeTextView().requestFocus();
 	}
 
-	public void setBtcAmount(@Nonnull final BigInteger amount)
+	public void setBtcAmount(@Nonnull final Amount amount)
 	{
 		btcAmountView.setAmount(amount, true);
 	}
@@ -20,6 +20,7 @@ package in.leafco.wallet.ui;
 import java.math.BigInteger;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import android.content.Context;
 import android.graphics.Paint;
@@ -31,6 +32,7 @@ import android.text.style.RelativeSizeSpan;
 import android.util.AttributeSet;
 import android.widget.TextView;
 import in.leafco.wallet.Constants;
+import in.leafco.wallet.util.Amount;
 import in.leafco.wallet.util.GenericUtils;
 import in.leafco.wallet.util.WalletUtils;
 import in.leafco.wallet.R;
@@ -42,12 +44,14 @@ public final class CurrencyTextView extends TextView
 {
 	private String prefix = null;
 	private ForegroundColorSpan prefixColorSpan = null;
-	private BigInteger amount = null;
+	private Amount amount = null;
+	private BigInteger bigAmount = null;
 	private int precision = 0;
 	private int shift = 0;
 	private boolean alwaysSigned = false;
 	private RelativeSizeSpan prefixRelativeSizeSpan = null;
 	private RelativeSizeSpan insignificantRelativeSizeSpan = null;
+	private final StringBuilder formatBuilder = new StringBuilder();
 
 	public CurrencyTextView(final Context context)
 	{
@@ -71,9 +75,28 @@ public final class CurrencyTextView extends TextView
 		updateView();
 	}
 
-	public void setAmount(@Nonnull final BigInteger amount)
+	public void setAmount(@Nullable final Amount amount)
 	{
 		this.amount = amount;
+		this.bigAmount = null;
+		updateView();
+	}
+
+	/**
+	 * For values straight from the wallet, which can be too large for an {@link Amount}. These are formatted via BigInteger.
+	 */
+	public void setAmount(@Nonnull final BigInteger amount)
+	{
+		if (amount.bitLength() < 64)
+		{
+			this.amount = Amount.valueOf(amount);
+			this.bigAmount = null;
+		}
+		else
+		{
+			this.amount = null;
+			this.bigAmount = amount;
+		}
 		updateView();
 	}
 
@@ -126,15 +149,18 @@ public final class CurrencyTextView extends TextView
 	{
 		final Editable text;
 
-		if (amount != null)
+		if (amount != null || bigAmount != null)
 		{
-			final String s;
-			if (alwaysSigned)
-				s = GenericUtils.formatValue(amount, Constants.CURRENCY_PLUS_SIGN, Constants.CURRENCY_MINUS_SIGN, precision, shift);
+			final String plusSign = alwaysSigned ? Constants.CURRENCY_PLUS_SIGN : "";
+			final String minusSign = alwaysSigned ? Constants.CURRENCY_MINUS_SIGN : "-";
+
+			formatBuilder.setLength(0);
+			if (amount != null)
+				GenericUtils.formatValue(formatBuilder, amount.longValue(), plusSign, minusSign, precision, shift);
 			else
-				s = GenericUtils.formatValue(amount, precision, shift);
+				formatBuilder.append(GenericUtils.formatValue(bigAmount, plusSign, minusSign, precision, shift));
 
-			text = new SpannableStringBuilder(s);
+			text = new SpannableStringBuilder(formatBuilder);
 			WalletUtils.formatSignificant(text, insignificantRelativeSizeSpan);
 
 			if (prefix != null)
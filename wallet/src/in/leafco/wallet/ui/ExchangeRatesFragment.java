@@ -53,6 +53,7 @@ import in.leafco.wallet.ExchangeRatesProvider;
 import in.leafco.wallet.ExchangeRatesProvider.ExchangeRate;
 import in.leafco.wallet.WalletApplication;
 import in.leafco.wallet.service.BlockchainService;
+import in.leafco.wallet.util.Amount;
 import in.leafco.wallet.util.GenericUtils;
 import in.leafco.wallet.util.WalletUtils;
 import in.leafco.wallet.R;
@@ -218,7 +219,7 @@ public final class ExchangeRatesFragment extends SherlockListFragment implements
 		{
 			final int btcShift = config.getBtcShift();
 
-			final BigInteger base = btcShift == 0 ? GenericUtils.ONE_BTC : GenericUtils.ONE_MBTC;
+			final Amount base = Amount.valueOf(btcShift == 0 ? GenericUtils.ONE_BTC : GenericUtils.ONE_MBTC);
 
 			adapter.setRateBase(base);
 		}
@@ -302,14 +303,14 @@ public final class ExchangeRatesFragment extends SherlockListFragment implements
 
 	private final class ExchangeRatesAdapter extends ResourceCursorAdapter
 	{
-		private BigInteger rateBase = GenericUtils.ONE_BTC;
+		private Amount rateBase = Amount.valueOf(GenericUtils.ONE_BTC);
 
 		private ExchangeRatesAdapter(final Context context)
 		{
 			super(context, R.layout.exchange_rate_row, null, true);
 		}
 
-		public void setRateBase(final BigInteger rateBase)
+		public void setRateBase(final Amount rateBase)
 		{
 			this.rateBase = rateBase;
 
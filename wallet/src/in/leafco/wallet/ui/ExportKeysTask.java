@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package in.leafco.wallet.ui;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.leafcoin.core.ECKey;
+
+import in.leafco.wallet.Constants;
+import in.leafco.wallet.util.Crypto;
+import in.leafco.wallet.util.WalletUtils;
+
+/**
+ * Writes private keys to an encrypted file in the background. Keys are encrypted as they are written, so the plain text never exists
+ * as a whole.
+ *
+ * @author Andreas Schildbach
+ */
+public abstract class ExportKeysTask
+{
+	private final Handler backgroundHandler;
+	private final Handler callbackHandler;
+	private boolean cancelled = false;
+
+	public ExportKeysTask(@Nonnull final Handler backgroundHandler)
+	{
+		this.backgroundHandler = backgroundHandler;
+		this.callbackHandler = new Handler(Looper.myLooper());
+	}
+
+	public final void exportKeys(@Nonnull final List<ECKey> keys, @Nonnull final File file, @Nonnull final String password)
+	{
+		backgroundHandler.post(new Runnable()
+		{
+			private int lastPercent = -1;
+
+			@Override
+			public void run()
+			{
+				try
+				{
+					final Writer plainOut = new OutputStreamWriter(Crypto.encrypt(new FileOutputStream(file), password.toCharArray()),
+							Constants.UTF_8);
+
+					try
+					{
+						WalletUtils.writeKeys(plainOut, keys, new WalletUtils.ProgressListener()
+						{
+							@Override
+							public void onProgress(final int numKeysDone, final int numKeysTotal)
+							{
+								final int percent = numKeysDone * 100 / numKeysTotal;
+								if (percent != lastPercent)
+								{
+									lastPercent = percent;
+									postProgress(percent);
+								}
+							}
+						});
+					}
+					finally
+					{
+						plainOut.close();
+					}
+
+					postCallback(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							onSuccess(file, keys.size());
+						}
+					});
+				}
+				catch (final IOException x)
+				{
+					postCallback(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							onFailure(x);
+						}
+					});
+				}
+			}
+		});
+	}
+
+	private void postProgress(final int percent)
+	{
+		postCallback(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				onProgress(percent);
+			}
+		});
+	}
+
+	/**
+	 * Stops delivering callbacks, e.g. because the activity is going away. Work already under way still completes. Must be called on
+	 * the thread that created the task.
+	 */
+	public final void cancel()
+	{
+		cancelled = true;
+		callbackHandler.removeCallbacksAndMessages(null);
+	}
+
+	private void postCallback(final Runnable callback)
+	{
+		callbackHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (!cancelled)
+					callback.run();
+			}
+		});
+	}
+
+	protected abstract void onProgress(int percent);
+
+	protected abstract void onSuccess(@Nonnull File file, int numKeys);
+
+	protected abstract void onFailure(@Nonnull IOException x);
+}
@@ -17,33 +17,30 @@
 
 package in.leafco.wallet.ui;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StringReader;
-import java.util.List;
+
+import javax.annotation.Nonnull;
 
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.app.ProgressDialog;
 import android.content.ContentResolver;
 import android.content.DialogInterface;
 import android.content.DialogInterface.OnCancelListener;
 import android.content.DialogInterface.OnClickListener;
+import android.content.res.AssetFileDescriptor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.view.View;
 import android.widget.CheckBox;
 import android.widget.EditText;
 
-import com.google.leafcoin.core.ECKey;
 import com.google.leafcoin.core.Wallet;
 
-import in.leafco.wallet.Constants;
-import in.leafco.wallet.util.Crypto;
-import in.leafco.wallet.util.WalletUtils;
 import in.leafco.wallet.R;
 
 /**
@@ -56,6 +53,11 @@ public final class ImportKeysActivity extends AbstractWalletActivity
 	private Wallet wallet;
 	private ContentResolver contentResolver;
 
+	private HandlerThread backgroundThread;
+	private Handler backgroundHandler;
+	private ImportKeysTask importKeysTask = null;
+	private ProgressDialog keysProgressDialog = null;
+
 	private Uri backupFileUri;
 
 	@Override
@@ -66,11 +68,29 @@ public final class ImportKeysActivity extends AbstractWalletActivity
 		wallet = getWalletApplication().getWallet();
 		contentResolver = getContentResolver();
 
+		backgroundThread = new HandlerThread("backgroundThread", Process.THREAD_PRIORITY_BACKGROUND);
+		backgroundThread.start();
+		backgroundHandler = new Handler(backgroundThread.getLooper());
+
 		backupFileUri = getIntent().getData();
 
 		showDialog(DIALOG_IMPORT_KEYS);
 	}
 
+	@Override
+	protected void onDestroy()
+	{
+		// results would arrive after the window is gone
+		if (importKeysTask != null)
+			importKeysTask.cancel();
+		if (keysProgressDialog != null)
+			keysProgressDialog.dismiss();
+
+		backgroundThread.getLooper().quit();
+
+		super.onDestroy();
+	}
+
 	@Override
 	protected Dialog onCreateDialog(final int id)
 	{
@@ -105,13 +125,12 @@ public final class ImportKeysActivity extends AbstractWalletActivity
 
 				try
 				{
-					final InputStream is = contentResolver.openInputStream(backupFileUri);
-					importPrivateKeys(is, password);
+					final AssetFileDescriptor fd = contentResolver.openAssetFileDescriptor(backupFileUri, "r");
+					importPrivateKeys(fd.createInputStream(), fd.getLength(), password);
 				}
-				catch (final FileNotFoundException x)
+				catch (final IOException x)
 				{
-					// should not happen
-					throw new RuntimeException(x);
+					handleImportPrivateKeysFailure(x);
 				}
 			}
 		});
@@ -158,88 +177,102 @@ public final class ImportKeysActivity extends AbstractWalletActivity
 		showView.setOnCheckedChangeListener(new ShowPasswordCheckListener(new EditText[]{passwordView}));
 	}
 
-	private void importPrivateKeys(final InputStream is, final String password)
+	private void importPrivateKeys(@Nonnull final InputStream is, final long length, @Nonnull final String password)
 	{
-		try
+		final ProgressDialog progressDialog = new ProgressDialog(this);
+		progressDialog.setMessage(getString(R.string.import_keys_dialog_progress));
+		progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+		progressDialog.setIndeterminate(length <= 0);
+		progressDialog.setMax(100);
+		progressDialog.setCancelable(false);
+		progressDialog.show();
+		keysProgressDialog = progressDialog;
+
+		importKeysTask = new ImportKeysTask(wallet, backgroundHandler)
 		{
-			final BufferedReader cipherIn = new BufferedReader(new InputStreamReader(is, Constants.UTF_8));
-			final StringBuilder cipherText = new StringBuilder();
-			while (true)
+			@Override
+			protected void onProgress(final int percent)
 			{
-				final String line = cipherIn.readLine();
-				if (line == null)
-					break;
-
-				cipherText.append(line);
+				progressDialog.setProgress(percent);
 			}
-			cipherIn.close();
-
-			final String plainText = Crypto.decrypt(cipherText.toString(), password.toCharArray());
-			final Reader plainReader = new StringReader(plainText);
 
-			final BufferedReader keyReader = new BufferedReader(plainReader);
-			final List<ECKey> importedKeys = WalletUtils.readKeys(keyReader);
-			keyReader.close();
-
-			final int numKeysToImport = importedKeys.size();
-			final int numKeysImported = wallet.addKeys(importedKeys);
-
-			final DialogBuilder dialog = new DialogBuilder(this);
-			final StringBuilder message = new StringBuilder();
-			if (numKeysImported > 0)
-				message.append(getString(R.string.import_keys_dialog_success_imported, numKeysImported));
-			if (numKeysImported < numKeysToImport)
-			{
-				if (message.length() > 0)
-					message.append('\n');
-				message.append(getString(R.string.import_keys_dialog_success_existing, numKeysToImport - numKeysImported));
-			}
-			if (numKeysImported > 0)
-			{
-				if (message.length() > 0)
-					message.append("\n\n");
-				message.append(getString(R.string.import_keys_dialog_success_reset));
-			}
-			dialog.setMessage(message);
-			if (numKeysImported > 0)
+			@Override
+			protected void onSuccess(final int numKeysToImport, final int numKeysImported)
 			{
-				dialog.setPositiveButton(R.string.import_keys_dialog_button_reset_blockchain, new DialogInterface.OnClickListener()
-				{
-					@Override
-					public void onClick(final DialogInterface dialog, final int id)
-					{
-						getWalletApplication().resetBlockchain();
-						finish();
-					}
-				});
-				dialog.setNegativeButton(R.string.button_dismiss, finishListener);
+				progressDialog.dismiss();
+
+				handleImportPrivateKeysSuccess(numKeysToImport, numKeysImported);
 			}
-			else
+
+			@Override
+			protected void onFailure(final IOException x)
 			{
-				dialog.singleDismissButton(finishListener);
+				progressDialog.dismiss();
+
+				handleImportPrivateKeysFailure(x);
 			}
-			dialog.setOnCancelListener(finishListener);
-			dialog.show();
+		};
+		importKeysTask.importKeys(is, length, password);
+	}
 
-			log.info("imported " + numKeysImported + " of " + numKeysToImport + " private keys");
+	private void handleImportPrivateKeysSuccess(final int numKeysToImport, final int numKeysImported)
+	{
+		final DialogBuilder dialog = new DialogBuilder(this);
+		final StringBuilder message = new StringBuilder();
+		if (numKeysImported > 0)
+			message.append(getString(R.string.import_keys_dialog_success_imported, numKeysImported));
+		if (numKeysImported < numKeysToImport)
+		{
+			if (message.length() > 0)
+				message.append('\n');
+			message.append(getString(R.string.import_keys_dialog_success_existing, numKeysToImport - numKeysImported));
 		}
-		catch (final IOException x)
+		if (numKeysImported > 0)
 		{
-			final DialogBuilder dialog = DialogBuilder.warn(this, R.string.import_export_keys_dialog_failure_title);
-			dialog.setMessage(getString(R.string.import_keys_dialog_failure, x.getMessage()));
-			dialog.setPositiveButton(R.string.button_dismiss, finishListener).setOnCancelListener(finishListener);
-			dialog.setNegativeButton(R.string.button_retry, new DialogInterface.OnClickListener()
+			if (message.length() > 0)
+				message.append("\n\n");
+			message.append(getString(R.string.import_keys_dialog_success_reset));
+		}
+		dialog.setMessage(message);
+		if (numKeysImported > 0)
+		{
+			dialog.setPositiveButton(R.string.import_keys_dialog_button_reset_blockchain, new DialogInterface.OnClickListener()
 			{
 				@Override
 				public void onClick(final DialogInterface dialog, final int id)
 				{
-					showDialog(DIALOG_IMPORT_KEYS);
+					getWalletApplication().resetBlockchain();
+					finish();
 				}
 			});
-			dialog.show();
-
-			log.info("problem reading private keys", x);
+			dialog.setNegativeButton(R.string.button_dismiss, finishListener);
+		}
+		else
+		{
+			dialog.singleDismissButton(finishListener);
 		}
+		dialog.setOnCancelListener(finishListener);
+		dialog.show();
+
+		log.info("imported " + numKeysImported + " of " + numKeysToImport + " private keys");
+	}
+
+	private void handleImportPrivateKeysFailure(@Nonnull final IOException x)
+	{
+		final DialogBuilder dialog = DialogBuilder.warn(this, R.string.import_export_keys_dialog_failure_title);
+		dialog.setMessage(getString(R.string.import_keys_dialog_failure, x.getMessage()));
+		dialog.setPositiveButton(R.string.button_dismiss, finishListener).setOnCancelListener(finishListener);
+		dialog.setNegativeButton(R.string.button_retry, new DialogInterface.OnClickListener()
+		{
+			@Override
+			public void onClick(final DialogInterface dialog, final int id)
+			{
+				showDialog(DIALOG_IMPORT_KEYS);
+			}
+		});
+		dialog.show();
+
+		log.info("problem reading private keys", x);
 	}
 
 	private class FinishListener implements DialogInterface.OnClickListener, DialogInterface.OnCancelListener
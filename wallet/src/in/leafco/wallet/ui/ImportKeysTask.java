@@ -0,0 +1,215 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package in.leafco.wallet.ui;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.leafcoin.core.ECKey;
+import com.google.leafcoin.core.Wallet;
+
+import in.leafco.wallet.Constants;
+import in.leafco.wallet.util.Crypto;
+import in.leafco.wallet.util.WalletUtils;
+
+/**
+ * Reads private keys from a possibly encrypted stream in the background and adds them to the wallet. The stream is decrypted as the
+ * keys are read, so neither cipher text nor plain text exist as a whole.
+ *
+ * @author Andreas Schildbach
+ */
+public abstract class ImportKeysTask
+{
+	private final Wallet wallet;
+	private final Handler backgroundHandler;
+	private final Handler callbackHandler;
+	private boolean cancelled = false;
+
+	private static final Logger log = LoggerFactory.getLogger(ImportKeysTask.class);
+
+	public ImportKeysTask(@Nonnull final Wallet wallet, @Nonnull final Handler backgroundHandler)
+	{
+		this.wallet = wallet;
+		this.backgroundHandler = backgroundHandler;
+		this.callbackHandler = new Handler(Looper.myLooper());
+	}
+
+	/**
+	 * @param length
+	 *            length of the stream in bytes, or -1 if unknown in which case no progress is reported
+	 * @param password
+	 *            password if the stream is encrypted, null otherwise
+	 */
+	public final void importKeys(@Nonnull final InputStream is, final long length, @Nullable final String password)
+	{
+		backgroundHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					final InputStream cipherIn = length > 0 ? new ProgressInputStream(is, length) : is;
+					final InputStream plainIn = password != null ? Crypto.decrypt(cipherIn, password.toCharArray()) : cipherIn;
+
+					final List<ECKey> importedKeys = WalletUtils.readKeys(new BufferedReader(new InputStreamReader(plainIn, Constants.UTF_8)));
+
+					final int numKeysToImport = importedKeys.size();
+					final int numKeysImported = wallet.addKeys(importedKeys); // can take long
+
+					postCallback(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							onSuccess(numKeysToImport, numKeysImported);
+						}
+					});
+				}
+				catch (final IOException x)
+				{
+					postCallback(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							onFailure(x);
+						}
+					});
+				}
+				finally
+				{
+					try
+					{
+						is.close();
+					}
+					catch (final IOException x)
+					{
+						log.info("problem closing key stream", x);
+					}
+				}
+			}
+		});
+	}
+
+	private final class ProgressInputStream extends FilterInputStream
+	{
+		private final long length;
+		private long position = 0;
+		private int lastPercent = -1;
+
+		public ProgressInputStream(@Nonnull final InputStream in, final long length)
+		{
+			super(in);
+
+			this.length = length;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			final int b = super.read();
+			if (b != -1)
+				advance(1);
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int count) throws IOException
+		{
+			final int n = super.read(buffer, offset, count);
+			if (n > 0)
+				advance(n);
+			return n;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException
+		{
+			final long skipped = super.skip(n);
+			advance(skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+
+		private void advance(final long n)
+		{
+			position += n;
+
+			final int percent = (int) (Math.min(position, length) * 100 / length);
+			if (percent != lastPercent)
+			{
+				lastPercent = percent;
+				postCallback(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						onProgress(percent);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Stops delivering callbacks, e.g. because the activity is going away. Work already under way still completes. Must be called on
+	 * the thread that created the task.
+	 */
+	public final void cancel()
+	{
+		cancelled = true;
+		callbackHandler.removeCallbacksAndMessages(null);
+	}
+
+	private void postCallback(final Runnable callback)
+	{
+		callbackHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (!cancelled)
+					callback.run();
+			}
+		});
+	}
+
+	protected abstract void onProgress(int percent);
+
+	protected abstract void onSuccess(int numKeysToImport, int numKeysImported);
+
+	protected abstract void onFailure(@Nonnull IOException x);
+}
@@ -17,7 +17,6 @@
 
 package in.leafco.wallet.ui;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.regex.Pattern;
@@ -199,6 +198,9 @@ public abstract class InputParser
 			{
 				try
 				{
+					if (input.length > Constants.MAX_TRANSACTION_SIZE)
+						throw new ProtocolException("transaction too large: " + input.length + " bytes");
+
 					final Transaction tx = new Transaction(Constants.NETWORK_PARAMETERS, input);
 
 					handleDirectTransaction(tx);
@@ -236,6 +238,9 @@ public abstract class InputParser
 		}
 	}
 
+	/**
+	 * Reads the stream only as far as the limit for its input type allows, so oversized input is rejected without being buffered.
+	 */
 	public abstract static class StreamInputParser extends InputParser
 	{
 		private final String inputType;
@@ -250,59 +255,69 @@ public abstract class InputParser
 		@Override
 		public void parse()
 		{
-			if (Constants.MIMETYPE_PAYMENTREQUEST.equals(inputType))
+			try
 			{
-				ByteArrayOutputStream baos = null;
-
-				try
-				{
-					baos = new ByteArrayOutputStream();
-					Io.copy(is, baos);
-					parseAndHandlePaymentRequest(baos.toByteArray());
-				}
-				catch (final IOException x)
+				if (Constants.MIMETYPE_TRANSACTION.equals(inputType))
 				{
-					log.info("i/o error while fetching payment request", x);
+					try
+					{
+						final Transaction tx = new Transaction(Constants.NETWORK_PARAMETERS, Io.readFully(is, Constants.MAX_TRANSACTION_SIZE));
 
-					error(R.string.input_parser_io_error, x.getMessage());
-				}
-				catch (final PkiVerificationException x)
-				{
-					log.info("got unverifyable payment request", x);
+						handleDirectTransaction(tx);
+					}
+					catch (final IOException x)
+					{
+						log.info("i/o error while fetching transaction", x);
 
-					error(R.string.input_parser_unverifyable_paymentrequest, x.getMessage());
-				}
-				catch (final PaymentRequestException x)
-				{
-					log.info("got invalid payment request", x);
+						error(R.string.input_parser_invalid_transaction, x.getMessage());
+					}
+					catch (final ProtocolException x)
+					{
+						log.info("got invalid transaction", x);
 
-					error(R.string.input_parser_invalid_paymentrequest, x.getMessage());
+						error(R.string.input_parser_invalid_transaction, x.getMessage());
+					}
 				}
-				finally
+				else if (Constants.MIMETYPE_PAYMENTREQUEST.equals(inputType))
 				{
 					try
 					{
-						if (baos != null)
-							baos.close();
+						parseAndHandlePaymentRequest(Io.readFully(is, PaymentProtocol.MAX_PAYMENT_REQUEST_SIZE));
 					}
-					catch (IOException x)
+					catch (final IOException x)
 					{
-						x.printStackTrace();
-					}
+						log.info("i/o error while fetching payment request", x);
 
-					try
+						error(R.string.input_parser_io_error, x.getMessage());
+					}
+					catch (final PkiVerificationException x)
 					{
-						is.close();
+						log.info("got unverifyable payment request", x);
+
+						error(R.string.input_parser_unverifyable_paymentrequest, x.getMessage());
 					}
-					catch (IOException x)
+					catch (final PaymentRequestException x)
 					{
-						x.printStackTrace();
+						log.info("got invalid payment request", x);
+
+						error(R.string.input_parser_invalid_paymentrequest, x.getMessage());
 					}
 				}
+				else
+				{
+					cannotClassify(inputType);
+				}
 			}
-			else
+			finally
 			{
-				cannotClassify(inputType);
+				try
+				{
+					is.close();
+				}
+				catch (IOException x)
+				{
+					x.printStackTrace();
+				}
 			}
 		}
 	}
@@ -75,11 +75,13 @@ import in.leafco.wallet.ExchangeRatesProvider;
 import in.leafco.wallet.ExchangeRatesProvider.ExchangeRate;
 import in.leafco.wallet.WalletApplication;
 import in.leafco.wallet.offline.AcceptBluetoothService;
+import in.leafco.wallet.util.Amount;
 import in.leafco.wallet.util.BitmapFragment;
 import in.leafco.wallet.util.Bluetooth;
 import in.leafco.wallet.util.Nfc;
 import in.leafco.wallet.util.PaymentProtocol;
 import in.leafco.wallet.util.Qr;
+import in.leafco.wallet.util.QrRenderer;
 import in.leafco.wallet.R;
 
 /**
@@ -99,7 +101,9 @@ public final class RequestCoinsFragment extends SherlockFragment
 	private BluetoothAdapter bluetoothAdapter;
 
 	private ImageView qrView;
-	private Bitmap qrCodeBitmap;
+	private QrRenderer qrRenderer;
+	private String qrContent;
+	private int qrSize;
 	private Spinner addressView;
 	private CheckBox acceptBluetoothPaymentView;
 	private TextView initiateRequestView;
@@ -172,9 +176,18 @@ public final class RequestCoinsFragment extends SherlockFragment
 			@Override
 			public void onClick(final View v)
 			{
-				BitmapFragment.show(getFragmentManager(), qrCodeBitmap);
+				if (qrContent != null)
+					BitmapFragment.showQr(getFragmentManager(), qrContent, qrSize);
 			}
 		});
+		qrRenderer = new QrRenderer()
+		{
+			@Override
+			protected void onBitmap(final Bitmap bitmap)
+			{
+				qrView.setImageBitmap(bitmap);
+			}
+		};
 
 		final CurrencyAmountView btcAmountView = (CurrencyAmountView) view.findViewById(R.id.request_coins_amount_btc);
 		btcAmountView.setCurrencySymbol(config.getBtcPrefix());
@@ -318,6 +331,8 @@ public final class RequestCoinsFragment extends SherlockFragment
 
 		addressView.setOnItemSelectedListener(null);
 
+		qrRenderer.cancel();
+
 		super.onPause();
 	}
 
@@ -418,14 +433,12 @@ public final class RequestCoinsFragment extends SherlockFragment
 		final byte[] paymentRequest = determinePaymentRequest(true);
 
 		// update qr-code
-		final int size = (int) (256 * getResources().getDisplayMetrics().density);
-		final String qrContent;
+		qrSize = (int) (256 * getResources().getDisplayMetrics().density);
 		if (config.getQrPaymentRequestEnabled())
 			qrContent = "LEAFCOIN:-" + Qr.encodeBinary(paymentRequest);
 		else
 			qrContent = bitcoinRequest;
-		qrCodeBitmap = Qr.bitmap(qrContent, size);
-		qrView.setImageBitmap(qrCodeBitmap);
+		qrRenderer.render(qrContent, qrSize);
 
 		// update nfc ndef message
 		final boolean nfcSuccess;
@@ -459,7 +472,8 @@ public final class RequestCoinsFragment extends SherlockFragment
 	{
 		final ECKey key = (ECKey) addressView.getSelectedItem();
 		final Address address = key.toAddress(Constants.NETWORK_PARAMETERS);
-		final BigInteger amount = amountCalculatorLink.getAmount();
+		final Amount editedAmount = amountCalculatorLink.getAmount();
+		final BigInteger amount = editedAmount != null ? editedAmount.toBigInteger() : null;
 
 		final StringBuilder uri = new StringBuilder(BitcoinURI.convertToBitcoinURI(address, amount, null, null));
 		if (includeBluetoothMac && bluetoothMac != null)
@@ -475,7 +489,9 @@ public final class RequestCoinsFragment extends SherlockFragment
 		final ECKey key = (ECKey) addressView.getSelectedItem();
 		final Address address = key.toAddress(Constants.NETWORK_PARAMETERS);
 
-		return PaymentProtocol.createPaymentRequest(amountCalculatorLink.getAmount(), address, null,
+		final Amount amount = amountCalculatorLink.getAmount();
+
+		return PaymentProtocol.createPaymentRequest(amount != null ? amount.toBigInteger() : null, address, null,
 				includeBluetoothMac && bluetoothMac != null ? "bt:" + bluetoothMac : null).toByteArray();
 	}
 }
@@ -18,13 +18,9 @@
 package in.leafco.wallet.ui;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
 
-import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +33,7 @@ import com.google.leafcoin.core.Transaction;
 import in.leafco.wallet.Constants;
 import in.leafco.wallet.PaymentIntent;
 import in.leafco.wallet.offline.DirectPaymentTask;
+import in.leafco.wallet.offline.PaymentProtocolClient;
 import in.leafco.wallet.R;
 
 /**
@@ -66,15 +63,14 @@ public abstract class RequestPaymentRequestTask
 
 	public final static class HttpRequestTask extends RequestPaymentRequestTask
 	{
-		@CheckForNull
-		private final String userAgent;
+		private final PaymentProtocolClient client;
 
 		public HttpRequestTask(@Nonnull final Handler backgroundHandler, @Nonnull final ResultCallback resultCallback,
-				@Nullable final String userAgent)
+				@Nonnull final PaymentProtocolClient client)
 		{
 			super(backgroundHandler, resultCallback);
 
-			this.userAgent = userAgent;
+			this.client = client;
 		}
 
 		@Override
@@ -87,37 +83,23 @@ public abstract class RequestPaymentRequestTask
 				{
 					log.info("trying to request payment request from {}", url);
 
-					HttpURLConnection connection = null;
-					InputStream is = null;
-
 					try
 					{
-						connection = (HttpURLConnection) new URL(url).openConnection();
-
-						connection.setConnectTimeout(Constants.HTTP_TIMEOUT_MS);
-						connection.setReadTimeout(Constants.HTTP_TIMEOUT_MS);
-						connection.setUseCaches(false);
-						connection.setDoInput(true);
-						connection.setDoOutput(false);
-
-						connection.setRequestMethod("GET");
-						connection.setRequestProperty("Accept", Constants.MIMETYPE_PAYMENTREQUEST);
-						if (userAgent != null)
-							connection.addRequestProperty("User-Agent", userAgent);
-						connection.connect();
-
-						final int responseCode = connection.getResponseCode();
-						if (responseCode == HttpURLConnection.HTTP_OK)
-						{
-							is = connection.getInputStream();
+						final PaymentProtocolClient.Response response = client.get(url, Constants.MIMETYPE_PAYMENTREQUEST);
 
-							new InputParser.StreamInputParser(connection.getContentType(), is)
+						if (response.code == HttpURLConnection.HTTP_OK)
+						{
+							new InputParser.BinaryInputParser(response.contentType, response.body)
 							{
 								@Override
 								protected void handlePaymentIntent(@Nonnull PaymentIntent paymentIntent)
 								{
 									log.info("received {} via http", paymentIntent);
 
+									// the payment will follow soon, possibly to another host
+									if (paymentIntent.isHttpPaymentUrl())
+										client.prefetch(paymentIntent.paymentUrl);
+
 									onPaymentIntent(paymentIntent);
 								}
 
@@ -137,11 +119,9 @@ public abstract class RequestPaymentRequestTask
 						}
 						else
 						{
-							final String responseMessage = connection.getResponseMessage();
-
-							log.info("got http error {}: {}", responseCode, responseMessage);
+							log.info("got http error {}: {}", response.code, response.message);
 
-							onFail(R.string.error_http, responseCode, responseMessage);
+							onFail(R.string.error_http, response.code, response.message);
 						}
 					}
 					catch (final IOException x)
@@ -150,23 +130,6 @@ public abstract class RequestPaymentRequestTask
 
 						onFail(R.string.error_io, x.getMessage());
 					}
-					finally
-					{
-						if (is != null)
-						{
-							try
-							{
-								is.close();
-							}
-							catch (final IOException x)
-							{
-								// swallow
-							}
-						}
-
-						if (connection != null)
-							connection.disconnect();
-					}
 				}
 			});
 		}
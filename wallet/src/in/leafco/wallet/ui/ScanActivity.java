@@ -18,8 +18,7 @@
 package in.leafco.wallet.ui;
 
 import java.io.IOException;
-import java.util.EnumMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,17 +46,17 @@ import android.view.KeyEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
-import com.google.zxing.BinaryBitmap;
-import com.google.zxing.DecodeHintType;
 import com.google.zxing.PlanarYUVLuminanceSource;
-import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.ResultPointCallback;
-import com.google.zxing.common.HybridBinarizer;
-import com.google.zxing.qrcode.QRCodeReader;
 
+import in.leafco.wallet.Constants;
 import in.leafco.wallet.camera.CameraManager;
+import in.leafco.wallet.camera.FrameDecodePool;
+import in.leafco.wallet.camera.FrameDecoder;
+import in.leafco.wallet.camera.FrameStats;
+import in.leafco.wallet.util.QrParts;
 import in.leafco.wallet.R;
 
 /**
@@ -69,13 +68,17 @@ public final class ScanActivity extends Activity implements SurfaceHolder.Callba
 
 	private static final long VIBRATE_DURATION = 50L;
 	private static final long AUTO_FOCUS_INTERVAL_MS = 2500L;
+	private static final int MAX_DOTS_PER_FRAME = 16;
+	private static final int DECODE_QUEUE_CAPACITY = 1;
 
 	private final CameraManager cameraManager = new CameraManager();
+	private final FrameStats frameStats = new FrameStats();
 	private ScannerView scannerView;
 	private SurfaceHolder surfaceHolder;
 	private Vibrator vibrator;
 	private HandlerThread cameraThread;
 	private Handler cameraHandler;
+	private FrameDecodePool<FrameWorker> decodePool;
 
 	private static final int DIALOG_CAMERA_PROBLEM = 0;
 
@@ -98,6 +101,8 @@ public final class ScanActivity extends Activity implements SurfaceHolder.Callba
 		setContentView(R.layout.scan_activity);
 
 		scannerView = (ScannerView) findViewById(R.id.scan_activity_mask);
+		if (Constants.TEST)
+			scannerView.setFrameStats(frameStats);
 	}
 
 	@Override
@@ -173,7 +178,7 @@ public final class ScanActivity extends Activity implements SurfaceHolder.Callba
 		return super.onKeyDown(keyCode, event);
 	}
 
-	public void handleResult(final Result scanResult, final Bitmap thumbnailImage, final float thumbnailScaleFactor)
+	public void handleResult(final Result scanResult, final String content, final Bitmap thumbnailImage, final float thumbnailScaleFactor)
 	{
 		vibrator.vibrate(VIBRATE_DURATION);
 
@@ -194,7 +199,7 @@ public final class ScanActivity extends Activity implements SurfaceHolder.Callba
 		scannerView.drawResultBitmap(thumbnailImage);
 
 		final Intent result = new Intent();
-		result.putExtra(INTENT_EXTRA_RESULT, scanResult.getText());
+		result.putExtra(INTENT_EXTRA_RESULT, content);
 		setResult(RESULT_OK, result);
 
 		// delayed finish
@@ -236,7 +241,10 @@ public final class ScanActivity extends Activity implements SurfaceHolder.Callba
 				if (nonContinuousAutoFocus)
 					cameraHandler.post(new AutoFocusRunnable(camera));
 
-				cameraHandler.post(fetchAndDecodeRunnable);
+				// enough buffers for one frame per worker, one waiting and one being captured
+				final int numThreads = FrameDecodePool.defaultNumThreads();
+				decodePool = new FrameDecodePool<FrameWorker>(numThreads, DECODE_QUEUE_CAPACITY, decodeCallback);
+				cameraManager.startPreviewCallback(previewCallback, numThreads + DECODE_QUEUE_CAPACITY + 1);
 			}
 			catch (final IOException x)
 			{
@@ -256,6 +264,8 @@ public final class ScanActivity extends Activity implements SurfaceHolder.Callba
 		@Override
 		public void run()
 		{
+			if (decodePool != null)
+				decodePool.stop();
 			cameraManager.close();
 
 			// cancel background thread
@@ -288,81 +298,130 @@ public final class ScanActivity extends Activity implements SurfaceHolder.Callba
 		}
 	}
 
-	private final Runnable fetchAndDecodeRunnable = new Runnable()
+	private final PreviewCallback previewCallback = new PreviewCallback()
 	{
-		private final QRCodeReader reader = new QRCodeReader();
-		private final Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+		@Override
+		public void onPreviewFrame(final byte[] data, final Camera camera)
+		{
+			frameStats.frameCaptured();
+
+			decodePool.submit(data);
+		}
+	};
+
+	/**
+	 * State of a decoding thread.
+	 */
+	private static final class FrameWorker implements ResultPointCallback
+	{
+		public final FrameDecoder decoder = new FrameDecoder(this);
+
+		// possible result points of the current frame, handed to the view in one go
+		public final float[] dots = new float[MAX_DOTS_PER_FRAME * 2];
+		public int dotCount = 0;
 
 		@Override
-		public void run()
+		public void foundPossibleResultPoint(final ResultPoint dot)
 		{
-			cameraManager.requestPreviewFrame(new PreviewCallback()
+			if (dotCount < MAX_DOTS_PER_FRAME)
 			{
-				@Override
-				public void onPreviewFrame(final byte[] data, final Camera camera)
-				{
-					decode(data, false);
-				}
-			});
+				dots[dotCount * 2] = dot.getX();
+				dots[dotCount * 2 + 1] = dot.getY();
+				dotCount++;
+			}
 		}
+	}
 
-		private void decode(final byte[] data, final boolean invert)
+	private final FrameDecodePool.Callback<FrameWorker> decodeCallback = new FrameDecodePool.Callback<FrameWorker>()
+	{
+		private final QrParts.Assembler partsAssembler = new QrParts.Assembler();
+		private final AtomicBoolean complete = new AtomicBoolean(false);
+
+		@Override
+		public FrameWorker createWorker()
 		{
-			final PlanarYUVLuminanceSource source = cameraManager.buildLuminanceSource(data);
+			return new FrameWorker();
+		}
+
+		@Override
+		public void onFrameDone(final byte[] frame)
+		{
+			cameraManager.returnBuffer(frame);
+		}
 
-            final BinaryBitmap bitmap;
-            if (invert)
-			    bitmap = new BinaryBitmap(new HybridBinarizer(source.invert()));
-            else
-                bitmap = new BinaryBitmap(new HybridBinarizer(source));
+		@Override
+		public boolean onFrame(final FrameWorker worker, final byte[] data)
+		{
+			final Rect framePreview = cameraManager.getFramePreview();
+			final long start = System.nanoTime();
+			final Result scanResult = worker.decoder.decode(data, cameraManager.getCameraResolution().width, framePreview.left,
+					framePreview.top, framePreview.width(), framePreview.height());
+			frameStats.frameDecoded(System.nanoTime() - start);
 
-			try
+			if (worker.dotCount > 0)
 			{
-				hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, new ResultPointCallback()
-				{
-					@Override
-					public void foundPossibleResultPoint(final ResultPoint dot)
-					{
-						runOnUiThread(new Runnable()
-						{
-							@Override
-							public void run()
-							{
-								scannerView.addDot(dot);
-							}
-						});
-					}
-				});
-				final Result scanResult = reader.decode(bitmap, hints);
+				scannerView.addDots(worker.dots, worker.dotCount);
+				worker.dotCount = 0;
+			}
 
-				final int thumbnailWidth = source.getThumbnailWidth();
-				final int thumbnailHeight = source.getThumbnailHeight();
-				final float thumbnailScaleFactor = (float) thumbnailWidth / source.getWidth();
+			if (scanResult == null)
+				return false;
 
-				final Bitmap thumbnailImage = Bitmap.createBitmap(thumbnailWidth, thumbnailHeight, Bitmap.Config.ARGB_8888);
-				thumbnailImage.setPixels(source.renderThumbnail(), 0, thumbnailWidth, 0, 0, thumbnailWidth, thumbnailHeight);
+			// keep scanning until all parts of a multi-part code are in
+			final String content;
+			if (QrParts.isPart(scanResult.getText()))
+			{
+				final int received, total;
+				synchronized (partsAssembler)
+				{
+					content = partsAssembler.add(scanResult.getText());
+					received = partsAssembler.getReceived();
+					total = partsAssembler.getTotal();
+				}
 
-				runOnUiThread(new Runnable()
+				if (content == null)
 				{
-					@Override
-					public void run()
+					runOnUiThread(new Runnable()
 					{
-						handleResult(scanResult, thumbnailImage, thumbnailScaleFactor);
-					}
-				});
+						@Override
+						public void run()
+						{
+							scannerView.setProgress(received, total);
+						}
+					});
+
+					return false;
+				}
 			}
-			catch (final ReaderException x)
+			else
 			{
-				// retry inverted, then normal.
-                if (invert)
-				    cameraHandler.post(fetchAndDecodeRunnable);
-                else
-                    decode(data, true);
+				content = scanResult.getText();
 			}
-			finally
+
+			// another thread might have decoded a frame at the same time
+			if (!complete.compareAndSet(false, true))
+				return true;
+
+			cameraManager.stopPreviewCallback();
+
+			final PlanarYUVLuminanceSource source = cameraManager.buildLuminanceSource(data);
+			final int thumbnailWidth = source.getThumbnailWidth();
+			final int thumbnailHeight = source.getThumbnailHeight();
+			final float thumbnailScaleFactor = (float) thumbnailWidth / source.getWidth();
+
+			final Bitmap thumbnailImage = Bitmap.createBitmap(thumbnailWidth, thumbnailHeight, Bitmap.Config.ARGB_8888);
+			thumbnailImage.setPixels(source.renderThumbnail(), 0, thumbnailWidth, 0, 0, thumbnailWidth, thumbnailHeight);
+
+			runOnUiThread(new Runnable()
 			{
-				reader.reset();
-			}
+				@Override
+				public void run()
+				{
+					handleResult(scanResult, content, thumbnailImage, thumbnailScaleFactor);
+				}
+			});
+
+			return true;
 		}
 	};
 
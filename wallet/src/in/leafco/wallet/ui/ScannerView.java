@@ -17,11 +17,8 @@
 
 package in.leafco.wallet.ui;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import android.content.Context;
 import android.content.res.Resources;
@@ -33,8 +30,7 @@ import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.view.View;
 
-import com.google.zxing.ResultPoint;
-
+import in.leafco.wallet.camera.FrameStats;
 import in.leafco.wallet.R;
 
 /**
@@ -46,15 +42,27 @@ public class ScannerView extends View
 	private static final int DOT_OPACITY = 0xa0;
 	private static final int DOT_SIZE = 8;
 	private static final int DOT_TTL_MS = 500;
+	private static final int DOT_CAPACITY = 64;
 
 	private final Paint maskPaint;
 	private final Paint laserPaint;
 	private final Paint dotPaint;
+	private final Paint progressPaint;
+	private final Paint statsPaint;
 	private Bitmap resultBitmap;
 	private final int maskColor;
 	private final int resultColor;
-	private final Map<ResultPoint, Long> dots = new HashMap<ResultPoint, Long>(16);
+
+	// ring of recent dots, oldest first
+	private final float[] dotX = new float[DOT_CAPACITY];
+	private final float[] dotY = new float[DOT_CAPACITY];
+	private final long[] dotTime = new long[DOT_CAPACITY];
+	private int dotStart = 0, dotCount = 0;
+	private boolean invalidatePending = false;
+
 	private Rect frame, framePreview;
+	private int partsReceived = 0, partsTotal = 0;
+	private FrameStats frameStats = null;
 
 	public ScannerView(final Context context, final AttributeSet attrs)
 	{
@@ -80,6 +88,15 @@ public class ScannerView extends View
 		dotPaint.setStyle(Style.STROKE);
 		dotPaint.setStrokeWidth(DOT_SIZE);
 		dotPaint.setAntiAlias(true);
+
+		progressPaint = new Paint();
+		progressPaint.setColor(laserColor);
+		progressPaint.setStyle(Style.FILL);
+
+		statsPaint = new Paint();
+		statsPaint.setColor(laserColor);
+		statsPaint.setTextSize(12 * res.getDisplayMetrics().scaledDensity);
+		statsPaint.setAntiAlias(true);
 	}
 
 	public void setFraming(@Nonnull final Rect frame, @Nonnull final Rect framePreview)
@@ -97,16 +114,72 @@ public class ScannerView extends View
 		invalidate();
 	}
 
-	public void addDot(@Nonnull final ResultPoint dot)
+	/**
+	 * Shows how many parts of a multi-part code have been scanned so far.
+	 */
+	public void setProgress(final int partsReceived, final int partsTotal)
+	{
+		this.partsReceived = partsReceived;
+		this.partsTotal = partsTotal;
+
+		invalidate();
+	}
+
+	/**
+	 * Shows the counters of the scanning pipeline, for debugging.
+	 */
+	public void setFrameStats(@Nullable final FrameStats frameStats)
 	{
-		dots.put(dot, System.currentTimeMillis());
+		this.frameStats = frameStats;
 
 		invalidate();
 	}
 
+	/**
+	 * Adds the possible result points found in one frame, as x/y pairs. Can be called from any thread, redraws are coalesced.
+	 */
+	public void addDots(@Nonnull final float[] points, final int count)
+	{
+		final long now = System.currentTimeMillis();
+
+		synchronized (dotTime)
+		{
+			for (int i = 0; i < count; i++)
+			{
+				final int index;
+				if (dotCount < DOT_CAPACITY)
+				{
+					index = (dotStart + dotCount) % DOT_CAPACITY;
+					dotCount++;
+				}
+				else
+				{
+					// overwrite oldest
+					index = dotStart;
+					dotStart = (dotStart + 1) % DOT_CAPACITY;
+				}
+
+				dotX[index] = points[i * 2];
+				dotY[index] = points[i * 2 + 1];
+				dotTime[index] = now;
+			}
+
+			if (invalidatePending)
+				return;
+			invalidatePending = true;
+		}
+
+		postInvalidate();
+	}
+
 	@Override
 	public void onDraw(final Canvas canvas)
 	{
+		synchronized (dotTime)
+		{
+			invalidatePending = false;
+		}
+
 		if (frame == null)
 			return;
 
@@ -133,26 +206,38 @@ public class ScannerView extends View
 			laserPaint.setAlpha(laserPhase ? 160 : 255);
 			canvas.drawRect(frame, laserPaint);
 
+			// draw progress of multi-part codes below the frame
+			if (partsTotal > 0)
+			{
+				final int progressTop = frame.bottom + DOT_SIZE * 2;
+				canvas.drawRect(frame.left, progressTop, frame.left + frame.width() * partsReceived / partsTotal, progressTop + DOT_SIZE,
+						progressPaint);
+			}
+
+			if (frameStats != null)
+				canvas.drawText(frameStats.toString(), DOT_SIZE, DOT_SIZE - statsPaint.ascent(), statsPaint);
+
 			// draw points
 			final int frameLeft = frame.left;
 			final int frameTop = frame.top;
 			final float scaleX = frame.width() / (float) framePreview.width();
 			final float scaleY = frame.height() / (float) framePreview.height();
 
-			for (final Iterator<Map.Entry<ResultPoint, Long>> i = dots.entrySet().iterator(); i.hasNext();)
+			synchronized (dotTime)
 			{
-				final Map.Entry<ResultPoint, Long> entry = i.next();
-				final long age = now - entry.getValue();
-				if (age < DOT_TTL_MS)
+				// expired dots are all at the start
+				while (dotCount > 0 && now - dotTime[dotStart] >= DOT_TTL_MS)
 				{
-					dotPaint.setAlpha((int) ((DOT_TTL_MS - age) * 256 / DOT_TTL_MS));
-
-					final ResultPoint point = entry.getKey();
-					canvas.drawPoint(frameLeft + (int) (point.getX() * scaleX), frameTop + (int) (point.getY() * scaleY), dotPaint);
+					dotStart = (dotStart + 1) % DOT_CAPACITY;
+					dotCount--;
 				}
-				else
+
+				for (int i = 0; i < dotCount; i++)
 				{
-					i.remove();
+					final int index = (dotStart + i) % DOT_CAPACITY;
+					final long age = now - dotTime[index];
+					dotPaint.setAlpha((int) ((DOT_TTL_MS - age) * 256 / DOT_TTL_MS));
+					canvas.drawPoint(frameLeft + (int) (dotX[index] * scaleX), frameTop + (int) (dotY[index] * scaleY), dotPaint);
 				}
 			}
 
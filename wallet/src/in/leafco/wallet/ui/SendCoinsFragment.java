@@ -26,6 +26,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import in.leafco.wallet.offline.DirectPaymentTask;
+import in.leafco.wallet.offline.PaymentProtocolClient;
 import org.bitcoin.protocols.payments.Protos;
 import org.bitcoin.protocols.payments.Protos.Payment;
 import org.slf4j.Logger;
@@ -101,6 +102,7 @@ import in.leafco.wallet.integration.android.BitcoinIntegration;
 import in.leafco.wallet.ui.InputParser.BinaryInputParser;
 import in.leafco.wallet.ui.InputParser.StreamInputParser;
 import in.leafco.wallet.ui.InputParser.StringInputParser;
+import in.leafco.wallet.util.Amount;
 import in.leafco.wallet.util.GenericUtils;
 import in.leafco.wallet.util.Nfc;
 import in.leafco.wallet.util.WalletUtils;
@@ -123,6 +125,9 @@ public final class SendCoinsFragment extends SherlockFragment
 	private final Handler handler = new Handler();
 	private HandlerThread backgroundThread;
 	private Handler backgroundHandler;
+	private HandlerThread networkThread;
+	private Handler networkHandler;
+	private PaymentProtocolClient paymentProtocolClient;
 
 	private TextView payeeNameView;
 	private TextView payeeOrganizationView;
@@ -393,6 +398,12 @@ public final class SendCoinsFragment extends SherlockFragment
 		backgroundThread = new HandlerThread("backgroundThread", Process.THREAD_PRIORITY_BACKGROUND);
 		backgroundThread.start();
 		backgroundHandler = new Handler(backgroundThread.getLooper());
+
+		// merchants are talked to on their own thread, so a slow one doesn't hold up signing
+		networkThread = new HandlerThread("networkThread", Process.THREAD_PRIORITY_BACKGROUND);
+		networkThread.start();
+		networkHandler = new Handler(networkThread.getLooper());
+		paymentProtocolClient = new PaymentProtocolClient(application.httpUserAgent(), Constants.HTTP_TIMEOUT_MS);
 	}
 
 	@Override
@@ -592,6 +603,7 @@ public final class SendCoinsFragment extends SherlockFragment
 	public void onDestroy()
 	{
 		backgroundThread.getLooper().quit();
+		networkThread.getLooper().quit();
 
 		if (sentTransaction != null)
 			sentTransaction.getConfidence().removeEventListener(sentTransactionConfidenceListener);
@@ -766,9 +778,16 @@ public final class SendCoinsFragment extends SherlockFragment
 
 	private boolean isAmountValid()
 	{
-		final BigInteger amount = paymentIntent.mayEditAmount() ? amountCalculatorLink.getAmount() : paymentIntent.getAmount();
-
-		return amount != null && amount.signum() > 0;
+		if (paymentIntent.mayEditAmount())
+		{
+			final Amount amount = amountCalculatorLink.getAmount();
+			return amount != null && amount.signum() > 0;
+		}
+		else
+		{
+			final BigInteger amount = paymentIntent.getAmount();
+			return amount != null && amount.signum() > 0;
+		}
 	}
 
 	private boolean everythingValid()
@@ -824,7 +843,8 @@ public final class SendCoinsFragment extends SherlockFragment
 		updateView();
 
 		// final payment intent
-		final PaymentIntent finalPaymentIntent = paymentIntent.mergeWithEditedValues(amountCalculatorLink.getAmount(),
+		final Amount editedAmount = amountCalculatorLink.getAmount();
+		final PaymentIntent finalPaymentIntent = paymentIntent.mergeWithEditedValues(editedAmount != null ? editedAmount.toBigInteger() : null,
 				validatedAddress != null ? validatedAddress.address : null);
 		final BigInteger finalAmount = finalPaymentIntent.getAmount();
 
@@ -917,7 +937,7 @@ public final class SendCoinsFragment extends SherlockFragment
 
 					if (paymentIntent.isHttpPaymentUrl())
 					{
-						new DirectPaymentTask.HttpPaymentTask(backgroundHandler, callback, paymentIntent.paymentUrl, application.httpUserAgent())
+						new DirectPaymentTask.HttpPaymentTask(networkHandler, callback, paymentIntent.paymentUrl, paymentProtocolClient)
 								.send(paymentIntent.standard, payment);
 					}
 					else if (paymentIntent.isBluetoothPaymentUrl() && bluetoothAdapter != null && bluetoothAdapter.isEnabled())
@@ -985,7 +1005,8 @@ public final class SendCoinsFragment extends SherlockFragment
 	{
 		final BigInteger available = wallet.getBalance(BalanceType.AVAILABLE);
 
-		amountCalculatorLink.setBtcAmount(available);
+		// the amount field holds no more than a long, so a larger balance is emptied as far as that goes
+		amountCalculatorLink.setBtcAmount(available.bitLength() < 64 ? Amount.valueOf(available) : Amount.valueOf(Long.MAX_VALUE));
 	}
 
 	public class AutoCompleteAddressAdapter extends CursorAdapter
@@ -1285,8 +1306,9 @@ public final class SendCoinsFragment extends SherlockFragment
 
 		this.paymentIntent = paymentIntent;
 
-		if (paymentIntent.hasAmount())
-			amountCalculatorLink.setBtcAmount(paymentIntent.getAmount());
+		// amounts beyond the long range exceed any balance, sending them will fail anyway
+		if (paymentIntent.hasAmount() && paymentIntent.getAmount().bitLength() < 64)
+			amountCalculatorLink.setBtcAmount(Amount.valueOf(paymentIntent.getAmount()));
 
 		if (paymentIntent.isBluetoothPaymentUrl())
 			directPaymentEnableView.setChecked(bluetoothAdapter != null && bluetoothAdapter.isEnabled());
@@ -1309,7 +1331,7 @@ public final class SendCoinsFragment extends SherlockFragment
 		final ProgressDialog progressDialog = ProgressDialog.show(activity, null,
 				getString(R.string.send_coins_fragment_request_payment_request_progress, host), true, true, null);
 
-		new RequestPaymentRequestTask.HttpRequestTask(backgroundHandler, new RequestPaymentRequestTask.ResultCallback()
+		new RequestPaymentRequestTask.HttpRequestTask(networkHandler, new RequestPaymentRequestTask.ResultCallback()
 		{
 			@Override
 			public void onPaymentIntent(final PaymentIntent paymentIntent)
@@ -1347,7 +1369,7 @@ public final class SendCoinsFragment extends SherlockFragment
 				dialog.setNegativeButton(R.string.button_dismiss, null);
 				dialog.show();
 			}
-		}, application.httpUserAgent()).requestPaymentRequest(paymentRequestUrl);
+		}, paymentProtocolClient).requestPaymentRequest(paymentRequestUrl);
 	}
 
 	private static Payment createPaymentMessage(@Nonnull final Transaction transaction, @Nullable final Address refundAddress,
@@ -54,7 +54,6 @@ import in.leafco.wallet.Constants;
 import in.leafco.wallet.PaymentIntent;
 import in.leafco.wallet.ui.InputParser.StringInputParser;
 import in.leafco.wallet.util.BitmapFragment;
-import in.leafco.wallet.util.Qr;
 import in.leafco.wallet.util.WalletUtils;
 import in.leafco.wallet.R;
 
@@ -344,7 +343,7 @@ public final class SendingAddressesFragment extends SherlockListFragment impleme
 	{
 		final String uri = BitcoinURI.convertToBitcoinURI(address, null, null, null);
 		final int size = (int) (256 * getResources().getDisplayMetrics().density);
-		BitmapFragment.show(getFragmentManager(), Qr.bitmap(uri, size));
+		BitmapFragment.showQr(getFragmentManager(), uri, size);
 	}
 
 	private void handleCopyToClipboard(final String address)
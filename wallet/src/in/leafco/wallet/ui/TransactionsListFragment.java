@@ -41,7 +41,6 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.database.ContentObserver;
-import android.graphics.Bitmap;
 import android.graphics.Typeface;
 import android.net.Uri;
 import android.nfc.NfcManager;
@@ -227,7 +226,7 @@ public class TransactionsListFragment extends SherlockListFragment implements Lo
 			private Address address;
 			private byte[] serializedTx;
 
-			private static final int SHOW_QR_THRESHOLD_BYTES = 2500;
+			private static final int SHOW_QR_THRESHOLD_BYTES = 25000; // shown as multi-part code
 
 			@Override
 			public boolean onCreateActionMode(final ActionMode mode, final Menu menu)
@@ -331,8 +330,7 @@ public class TransactionsListFragment extends SherlockListFragment implements Lo
 			private void handleShowQr()
 			{
 				final int size = (int) (384 * getResources().getDisplayMetrics().density);
-				final Bitmap qrCodeBitmap = Qr.bitmap(Qr.encodeCompressBinary(serializedTx), size);
-				BitmapFragment.show(getFragmentManager(), qrCodeBitmap);
+				BitmapFragment.showQr(getFragmentManager(), Qr.encodeCompressBinary(serializedTx), size);
 			}
 		});
 	}
@@ -17,17 +17,10 @@
 
 package in.leafco.wallet.ui;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Reader;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.io.InputStream;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
@@ -44,6 +37,7 @@ import javax.annotation.Nonnull;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.app.ProgressDialog;
 import android.content.DialogInterface;
 import android.content.DialogInterface.OnCancelListener;
 import android.content.DialogInterface.OnClickListener;
@@ -57,6 +51,9 @@ import android.nfc.NdefMessage;
 import android.nfc.NfcAdapter;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.text.format.DateUtils;
@@ -98,6 +95,12 @@ public final class WalletActivity extends AbstractOnDemandServiceActivity
 	private Configuration config;
 	private Wallet wallet;
 
+	private HandlerThread backgroundThread;
+	private ImportKeysTask importKeysTask = null;
+	private ExportKeysTask exportKeysTask = null;
+	private ProgressDialog keysProgressDialog = null;
+	private Handler backgroundHandler;
+
 	private static final int REQUEST_CODE_SCAN = 0;
 
 	private static final int DEFAULT_PRECISION_CHANGE_VERSION_CODE = 152;
@@ -111,6 +114,10 @@ public final class WalletActivity extends AbstractOnDemandServiceActivity
 		config = application.getConfiguration();
 		wallet = application.getWallet();
 
+		backgroundThread = new HandlerThread("backgroundThread", Process.THREAD_PRIORITY_BACKGROUND);
+		backgroundThread.start();
+		backgroundHandler = new Handler(backgroundThread.getLooper());
+
 		setContentView(R.layout.wallet_content);
 
 		if (savedInstanceState == null)
@@ -131,6 +138,22 @@ public final class WalletActivity extends AbstractOnDemandServiceActivity
 		checkLowStorageAlert();
 	}
 
+	@Override
+	protected void onDestroy()
+	{
+		// results would arrive after the window is gone
+		if (importKeysTask != null)
+			importKeysTask.cancel();
+		if (exportKeysTask != null)
+			exportKeysTask.cancel();
+		if (keysProgressDialog != null)
+			keysProgressDialog.dismiss();
+
+		backgroundThread.getLooper().quit();
+
+		super.onDestroy();
+	}
+
 	@Override
 	protected void onNewIntent(final Intent intent)
 	{
@@ -804,149 +827,181 @@ public final class WalletActivity extends AbstractOnDemandServiceActivity
 
 	private void importPrivateKeys(@Nonnull final File file, @Nonnull final String password)
 	{
+		final boolean isEncrypted = Crypto.OPENSSL_FILE_FILTER.accept(file);
+		if (!isEncrypted && !WalletUtils.KEYS_FILE_FILTER.accept(file))
+			throw new IllegalStateException(file.getAbsolutePath());
+
+		final InputStream is;
 		try
 		{
-			final Reader plainReader;
-			if (Crypto.OPENSSL_FILE_FILTER.accept(file))
-			{
-				final BufferedReader cipherIn = new BufferedReader(new InputStreamReader(new FileInputStream(file), Constants.UTF_8));
-				final StringBuilder cipherText = new StringBuilder();
-				while (true)
-				{
-					final String line = cipherIn.readLine();
-					if (line == null)
-						break;
+			is = new FileInputStream(file);
+		}
+		catch (final IOException x)
+		{
+			handleImportPrivateKeysFailure(x);
+			return;
+		}
 
-					cipherText.append(line);
-				}
-				cipherIn.close();
+		final ProgressDialog progressDialog = createProgressDialog(R.string.import_keys_dialog_progress);
+		progressDialog.show();
+		keysProgressDialog = progressDialog;
 
-				final String plainText = Crypto.decrypt(cipherText.toString(), password.toCharArray());
-				plainReader = new StringReader(plainText);
-			}
-			else if (WalletUtils.KEYS_FILE_FILTER.accept(file))
-			{
-				plainReader = new InputStreamReader(new FileInputStream(file), Constants.UTF_8);
-			}
-			else
+		importKeysTask = new ImportKeysTask(wallet, backgroundHandler)
+		{
+			@Override
+			protected void onProgress(final int percent)
 			{
-				throw new IllegalStateException(file.getAbsolutePath());
+				progressDialog.setProgress(percent);
 			}
 
-			final BufferedReader keyReader = new BufferedReader(plainReader);
-			final List<ECKey> importedKeys = WalletUtils.readKeys(keyReader);
-			keyReader.close();
-
-			final int numKeysToImport = importedKeys.size();
-			final int numKeysImported = wallet.addKeys(importedKeys);
-
-			final DialogBuilder dialog = new DialogBuilder(this);
-			final StringBuilder message = new StringBuilder();
-			if (numKeysImported > 0)
-				message.append(getString(R.string.import_keys_dialog_success_imported, numKeysImported));
-			if (numKeysImported < numKeysToImport)
-			{
-				if (message.length() > 0)
-					message.append('\n');
-				message.append(getString(R.string.import_keys_dialog_success_existing, numKeysToImport - numKeysImported));
-			}
-			if (numKeysImported > 0)
-			{
-				if (message.length() > 0)
-					message.append("\n\n");
-				message.append(getString(R.string.import_keys_dialog_success_reset));
-			}
-			dialog.setMessage(message);
-			if (numKeysImported > 0)
+			@Override
+			protected void onSuccess(final int numKeysToImport, final int numKeysImported)
 			{
-				dialog.setPositiveButton(R.string.import_keys_dialog_button_reset_blockchain, new DialogInterface.OnClickListener()
-				{
-					@Override
-					public void onClick(final DialogInterface dialog, final int id)
-					{
-						getWalletApplication().resetBlockchain();
-						finish();
-					}
-				});
-				dialog.setNegativeButton(R.string.button_dismiss, null);
+				progressDialog.dismiss();
+
+				handleImportPrivateKeysSuccess(numKeysToImport, numKeysImported);
 			}
-			else
+
+			@Override
+			protected void onFailure(final IOException x)
 			{
-				dialog.singleDismissButton(null);
+				progressDialog.dismiss();
+
+				handleImportPrivateKeysFailure(x);
 			}
-			dialog.show();
+		};
+		importKeysTask.importKeys(is, file.length(), isEncrypted ? password : null);
+	}
 
-			log.info("imported " + numKeysImported + " of " + numKeysToImport + " private keys");
+	private void handleImportPrivateKeysSuccess(final int numKeysToImport, final int numKeysImported)
+	{
+		final DialogBuilder dialog = new DialogBuilder(this);
+		final StringBuilder message = new StringBuilder();
+		if (numKeysImported > 0)
+			message.append(getString(R.string.import_keys_dialog_success_imported, numKeysImported));
+		if (numKeysImported < numKeysToImport)
+		{
+			if (message.length() > 0)
+				message.append('\n');
+			message.append(getString(R.string.import_keys_dialog_success_existing, numKeysToImport - numKeysImported));
 		}
-		catch (final IOException x)
+		if (numKeysImported > 0)
 		{
-			final DialogBuilder dialog = DialogBuilder.warn(this, R.string.import_export_keys_dialog_failure_title);
-			dialog.setMessage(getString(R.string.import_keys_dialog_failure, x.getMessage()));
-			dialog.setPositiveButton(R.string.button_dismiss, null);
-			dialog.setNegativeButton(R.string.button_retry, new DialogInterface.OnClickListener()
+			if (message.length() > 0)
+				message.append("\n\n");
+			message.append(getString(R.string.import_keys_dialog_success_reset));
+		}
+		dialog.setMessage(message);
+		if (numKeysImported > 0)
+		{
+			dialog.setPositiveButton(R.string.import_keys_dialog_button_reset_blockchain, new DialogInterface.OnClickListener()
 			{
 				@Override
 				public void onClick(final DialogInterface dialog, final int id)
 				{
-					showDialog(DIALOG_IMPORT_KEYS);
+					getWalletApplication().resetBlockchain();
+					finish();
 				}
 			});
-			dialog.show();
-
-			log.info("problem reading private keys", x);
+			dialog.setNegativeButton(R.string.button_dismiss, null);
 		}
+		else
+		{
+			dialog.singleDismissButton(null);
+		}
+		dialog.show();
+
+		log.info("imported " + numKeysImported + " of " + numKeysToImport + " private keys");
 	}
 
-	private void exportPrivateKeys(@Nonnull final String password)
+	private void handleImportPrivateKeysFailure(@Nonnull final IOException x)
 	{
-		try
+		final DialogBuilder dialog = DialogBuilder.warn(this, R.string.import_export_keys_dialog_failure_title);
+		dialog.setMessage(getString(R.string.import_keys_dialog_failure, x.getMessage()));
+		dialog.setPositiveButton(R.string.button_dismiss, null);
+		dialog.setNegativeButton(R.string.button_retry, new DialogInterface.OnClickListener()
 		{
-			Constants.EXTERNAL_WALLET_BACKUP_DIR.mkdirs();
-			final DateFormat dateFormat = Iso8601Format.newDateFormat();
-			dateFormat.setTimeZone(TimeZone.getDefault());
-			final File file = new File(Constants.EXTERNAL_WALLET_BACKUP_DIR, Constants.EXTERNAL_WALLET_KEY_BACKUP + "-"
-					+ dateFormat.format(new Date()));
+			@Override
+			public void onClick(final DialogInterface dialog, final int id)
+			{
+				showDialog(DIALOG_IMPORT_KEYS);
+			}
+		});
+		dialog.show();
 
-			final List<ECKey> keys = new LinkedList<ECKey>();
-			for (final ECKey key : wallet.getKeys())
-				if (!wallet.isKeyRotating(key))
-					keys.add(key);
+		log.info("problem reading private keys", x);
+	}
 
-			final StringWriter plainOut = new StringWriter();
-			WalletUtils.writeKeys(plainOut, keys);
-			plainOut.close();
-			final String plainText = plainOut.toString();
+	private void exportPrivateKeys(@Nonnull final String password)
+	{
+		Constants.EXTERNAL_WALLET_BACKUP_DIR.mkdirs();
+		final DateFormat dateFormat = Iso8601Format.newDateFormat();
+		dateFormat.setTimeZone(TimeZone.getDefault());
+		final File file = new File(Constants.EXTERNAL_WALLET_BACKUP_DIR, Constants.EXTERNAL_WALLET_KEY_BACKUP + "-"
+				+ dateFormat.format(new Date()));
+
+		final List<ECKey> keys = new LinkedList<ECKey>();
+		for (final ECKey key : wallet.getKeys())
+			if (!wallet.isKeyRotating(key))
+				keys.add(key);
+
+		final ProgressDialog progressDialog = createProgressDialog(R.string.export_keys_dialog_progress);
+		progressDialog.show();
+		keysProgressDialog = progressDialog;
+
+		exportKeysTask = new ExportKeysTask(backgroundHandler)
+		{
+			@Override
+			protected void onProgress(final int percent)
+			{
+				progressDialog.setProgress(percent);
+			}
+
+			@Override
+			protected void onSuccess(final File file, final int numKeys)
+			{
+				progressDialog.dismiss();
 
-			final String cipherText = Crypto.encrypt(plainText, password.toCharArray());
+				final DialogBuilder dialog = new DialogBuilder(WalletActivity.this);
+				dialog.setMessage(getString(R.string.export_keys_dialog_success, file));
+				dialog.setPositiveButton(R.string.export_keys_dialog_button_archive, new OnClickListener()
+				{
+					@Override
+					public void onClick(final DialogInterface dialog, final int which)
+					{
+						mailPrivateKeys(file);
+					}
+				});
+				dialog.setNegativeButton(R.string.button_dismiss, null);
+				dialog.show();
 
-			final Writer cipherOut = new OutputStreamWriter(new FileOutputStream(file), Constants.UTF_8);
-			cipherOut.write(cipherText);
-			cipherOut.close();
+				log.info("exported " + numKeys + " private keys to " + file);
+			}
 
-			final DialogBuilder dialog = new DialogBuilder(this);
-			dialog.setMessage(getString(R.string.export_keys_dialog_success, file));
-			dialog.setPositiveButton(R.string.export_keys_dialog_button_archive, new OnClickListener()
+			@Override
+			protected void onFailure(final IOException x)
 			{
-				@Override
-				public void onClick(final DialogInterface dialog, final int which)
-				{
-					mailPrivateKeys(file);
-				}
-			});
-			dialog.setNegativeButton(R.string.button_dismiss, null);
-			dialog.show();
+				progressDialog.dismiss();
 
-			log.info("exported " + keys.size() + " private keys to " + file);
-		}
-		catch (final IOException x)
-		{
-			final DialogBuilder dialog = DialogBuilder.warn(this, R.string.import_export_keys_dialog_failure_title);
-			dialog.setMessage(getString(R.string.export_keys_dialog_failure, x.getMessage()));
-			dialog.singleDismissButton(null);
-			dialog.show();
+				final DialogBuilder dialog = DialogBuilder.warn(WalletActivity.this, R.string.import_export_keys_dialog_failure_title);
+				dialog.setMessage(getString(R.string.export_keys_dialog_failure, x.getMessage()));
+				dialog.singleDismissButton(null);
+				dialog.show();
 
-			log.error("problem writing private keys", x);
-		}
+				log.error("problem writing private keys", x);
+			}
+		};
+		exportKeysTask.exportKeys(keys, file, password);
+	}
+
+	private ProgressDialog createProgressDialog(final int messageResId)
+	{
+		final ProgressDialog progressDialog = new ProgressDialog(this);
+		progressDialog.setMessage(getString(messageResId));
+		progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+		progressDialog.setMax(100);
+		progressDialog.setCancelable(false);
+		return progressDialog;
 	}
 
 	private void mailPrivateKeys(@Nonnull final File file)
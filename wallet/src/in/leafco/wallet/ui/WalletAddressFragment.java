@@ -43,7 +43,7 @@ import in.leafco.wallet.Constants;
 import in.leafco.wallet.WalletApplication;
 import in.leafco.wallet.util.BitmapFragment;
 import in.leafco.wallet.util.Nfc;
-import in.leafco.wallet.util.Qr;
+import in.leafco.wallet.util.QrRenderer;
 import in.leafco.wallet.util.WalletUtils;
 import in.leafco.wallet.R;
 
@@ -63,7 +63,9 @@ public final class WalletAddressFragment extends Fragment
 
 	private Address lastSelectedAddress;
 
-	private Bitmap qrCodeBitmap;
+	private QrRenderer qrRenderer;
+	private String qrContent;
+	private int qrSize;
 
 	@Override
 	public void onAttach(final Activity activity)
@@ -112,6 +114,15 @@ public final class WalletAddressFragment extends Fragment
 			}
 		});
 
+		qrRenderer = new QrRenderer()
+		{
+			@Override
+			protected void onBitmap(final Bitmap bitmap)
+			{
+				bitcoinAddressQrView.setImageBitmap(bitmap);
+			}
+		};
+
 		return view;
 	}
 
@@ -132,6 +143,10 @@ public final class WalletAddressFragment extends Fragment
 
 		Nfc.unpublish(nfcManager, getActivity());
 
+		// render again on resume
+		qrRenderer.cancel();
+		lastSelectedAddress = null;
+
 		super.onPause();
 	}
 
@@ -148,9 +163,9 @@ public final class WalletAddressFragment extends Fragment
 
 			final String addressStr = BitcoinURI.convertToBitcoinURI(selectedAddress, null, null, null);
 
-			final int size = (int) (256 * getResources().getDisplayMetrics().density);
-			qrCodeBitmap = Qr.bitmap(addressStr, size);
-			bitcoinAddressQrView.setImageBitmap(qrCodeBitmap);
+			qrContent = addressStr;
+			qrSize = (int) (256 * getResources().getDisplayMetrics().density);
+			qrRenderer.renderNow(qrContent, qrSize);
 
 			Nfc.publishUri(nfcManager, getActivity(), addressStr);
 		}
@@ -158,7 +173,8 @@ public final class WalletAddressFragment extends Fragment
 
 	private void handleShowQRCode()
 	{
-		BitmapFragment.show(getFragmentManager(), qrCodeBitmap);
+		if (qrContent != null)
+			BitmapFragment.showQr(getFragmentManager(), qrContent, qrSize);
 	}
 
 	private final OnSharedPreferenceChangeListener prefsListener = new OnSharedPreferenceChangeListener()
@@ -56,7 +56,6 @@ import in.leafco.wallet.Configuration;
 import in.leafco.wallet.Constants;
 import in.leafco.wallet.WalletApplication;
 import in.leafco.wallet.util.BitmapFragment;
-import in.leafco.wallet.util.Qr;
 import in.leafco.wallet.util.WalletUtils;
 import in.leafco.wallet.R;
 
@@ -252,7 +251,7 @@ public final class WalletAddressesFragment extends SherlockListFragment
 			{
 				final String uri = BitcoinURI.convertToBitcoinURI(address, null, null, null);
 				final int size = (int) (256 * getResources().getDisplayMetrics().density);
-				BitmapFragment.show(getFragmentManager(), Qr.bitmap(uri, size));
+				BitmapFragment.showQr(getFragmentManager(), uri, size);
 			}
 
 			private void handleCopyToClipboard(@Nonnull final Address address)
@@ -80,6 +80,8 @@ public final class WalletBalanceFragment extends Fragment
 	@CheckForNull
 	private Date bestChainDate = null;
 	private boolean replaying = false;
+	private int progressPercent = -1;
+	private long progressEtaMs = -1;
 
 	private static final int ID_BALANCE_LOADER = 0;
 	private static final int ID_RATE_LOADER = 1;
@@ -204,6 +206,12 @@ public final class WalletBalanceFragment extends Fragment
 				final long months = blockchainLag / (30 * DateUtils.DAY_IN_MILLIS);
 				viewProgress.setText(getString(R.string.blockchain_state_progress_months, downloading, months));
 			}
+
+			if (downloadOk && progressPercent >= 0 && progressEtaMs >= 0)
+			{
+				final long minutes = (progressEtaMs + DateUtils.MINUTE_IN_MILLIS - 1) / DateUtils.MINUTE_IN_MILLIS;
+				viewProgress.setText(getString(R.string.blockchain_state_progress_eta, viewProgress.getText(), progressPercent, minutes));
+			}
 		}
 		else
 		{
@@ -264,6 +272,8 @@ public final class WalletBalanceFragment extends Fragment
 			download = intent.getIntExtra(BlockchainService.ACTION_BLOCKCHAIN_STATE_DOWNLOAD, BlockchainService.ACTION_BLOCKCHAIN_STATE_DOWNLOAD_OK);
 			bestChainDate = (Date) intent.getSerializableExtra(BlockchainService.ACTION_BLOCKCHAIN_STATE_BEST_CHAIN_DATE);
 			replaying = intent.getBooleanExtra(BlockchainService.ACTION_BLOCKCHAIN_STATE_REPLAYING, false);
+			progressPercent = intent.getIntExtra(BlockchainService.ACTION_BLOCKCHAIN_STATE_PROGRESS_PERCENT, -1);
+			progressEtaMs = intent.getLongExtra(BlockchainService.ACTION_BLOCKCHAIN_STATE_PROGRESS_ETA_MS, -1);
 
 			updateView();
 		}
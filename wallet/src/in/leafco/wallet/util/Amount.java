@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.util;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Immutable monetary value in nanocoins, backed by a long. Use {@link #valueOf(BigInteger)} and {@link #toBigInteger()} to convert
+ * at the leafcoinj boundary.
+ *
+ * @author Andreas Schildbach
+ */
+public final class Amount implements Comparable<Amount>, Serializable
+{
+	public static final Amount ZERO = new Amount(0);
+
+	private final long value;
+
+	private static final long serialVersionUID = 1L;
+
+	private Amount(final long value)
+	{
+		this.value = value;
+	}
+
+	public static Amount valueOf(final long value)
+	{
+		return value == 0 ? ZERO : new Amount(value);
+	}
+
+	public static Amount valueOf(@Nonnull final BigInteger value) throws ArithmeticException
+	{
+		if (value.bitLength() >= 64)
+			throw new ArithmeticException("amount too large: " + value);
+
+		return valueOf(value.longValue());
+	}
+
+	public long longValue()
+	{
+		return value;
+	}
+
+	public BigInteger toBigInteger()
+	{
+		return BigInteger.valueOf(value);
+	}
+
+	public int signum()
+	{
+		return value > 0 ? 1 : (value < 0 ? -1 : 0);
+	}
+
+	public Amount add(@Nonnull final Amount other) throws ArithmeticException
+	{
+		return valueOf(add(value, other.value));
+	}
+
+	public Amount subtract(@Nonnull final Amount other) throws ArithmeticException
+	{
+		return valueOf(subtract(value, other.value));
+	}
+
+	public Amount negate() throws ArithmeticException
+	{
+		return valueOf(subtract(0, value));
+	}
+
+	/**
+	 * Computes this * multiplier / divisor, like {@link #multiplyDivide(long, long, long)}.
+	 *
+	 * @return result, or null if it doesn't fit
+	 */
+	@CheckForNull
+	public Amount multiplyDivide(final long multiplier, final long divisor)
+	{
+		try
+		{
+			return valueOf(multiplyDivide(value, multiplier, divisor));
+		}
+		catch (final ArithmeticException x)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Overflow checking addition, for use on primitive values.
+	 */
+	public static long add(final long lhs, final long rhs) throws ArithmeticException
+	{
+		final long sum = lhs + rhs;
+		if (((lhs ^ sum) & (rhs ^ sum)) < 0)
+			throw new ArithmeticException("overflow: " + lhs + " + " + rhs);
+		return sum;
+	}
+
+	/**
+	 * Overflow checking subtraction, for use on primitive values.
+	 */
+	public static long subtract(final long lhs, final long rhs) throws ArithmeticException
+	{
+		final long difference = lhs - rhs;
+		if (((lhs ^ rhs) & (lhs ^ difference)) < 0)
+			throw new ArithmeticException("overflow: " + lhs + " - " + rhs);
+		return difference;
+	}
+
+	/**
+	 * Computes value * multiplier / divisor, truncated towards zero like {@link BigInteger#divide(BigInteger)}. Uses long arithmetic
+	 * unless an intermediate result would overflow.
+	 */
+	public static long multiplyDivide(final long value, final long multiplier, final long divisor) throws ArithmeticException
+	{
+		if (value != Long.MIN_VALUE && multiplier != Long.MIN_VALUE
+				&& (multiplier == 0 || Math.abs(value) <= Long.MAX_VALUE / Math.abs(multiplier)))
+			return value * multiplier / divisor;
+
+		final BigInteger result = BigInteger.valueOf(value).multiply(BigInteger.valueOf(multiplier)).divide(BigInteger.valueOf(divisor));
+		if (result.bitLength() >= 64)
+			throw new ArithmeticException("overflow: " + value + " * " + multiplier + " / " + divisor);
+		return result.longValue();
+	}
+
+	@Override
+	public int compareTo(final Amount other)
+	{
+		return value < other.value ? -1 : (value > other.value ? 1 : 0);
+	}
+
+	@Override
+	public boolean equals(final Object o)
+	{
+		if (o == this)
+			return true;
+		if (!(o instanceof Amount))
+			return false;
+		return value == ((Amount) o).value;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (int) (value ^ (value >>> 32));
+	}
+
+	@Override
+	public String toString()
+	{
+		return Long.toString(value);
+	}
+}
@@ -16,8 +16,6 @@
 
 package in.leafco.wallet.util;
 
-import java.nio.charset.Charset;
-
 import javax.annotation.Nonnull;
 
 /**
@@ -39,52 +37,71 @@ public class Base43
 			INDEXES[ALPHABET[i]] = i;
 	}
 
-	public static String encode(@Nonnull byte[] input)
+	// largest power of 43 that, multiplied by 2^32, still fits a long
+	private static final int CHUNK_DIGITS = 5;
+	private static final long CHUNK_BASE = 43L * 43 * 43 * 43 * 43;
+
+	public static String encode(@Nonnull final byte[] input)
 	{
 		if (input.length == 0)
 			return "";
 
-		input = copyOfRange(input, 0, input.length);
-
 		// Count leading zeroes.
 		int zeroCount = 0;
 		while (zeroCount < input.length && input[zeroCount] == 0)
 			++zeroCount;
 
-		// The actual encoding.
-		final byte[] temp = new byte[input.length * 2];
+		// Convert the rest to big-endian 32 bit limbs.
+		final int numBytes = input.length - zeroCount;
+		final int[] limbs = new int[(numBytes + 3) / 4];
+		for (int i = 0; i < numBytes; i++)
+			limbs[limbs.length - 1 - i / 4] |= (input[input.length - 1 - i] & 0xFF) << (8 * (i % 4));
+
+		// The actual encoding, CHUNK_DIGITS digits per pass.
+		final char[] temp = new char[zeroCount + numBytes * 2 + CHUNK_DIGITS];
 		int j = temp.length;
 
-		int startAt = zeroCount;
-		while (startAt < input.length)
+		int startAt = 0;
+		while (startAt < limbs.length)
 		{
-			byte mod = divmod43(input, startAt);
-			if (input[startAt] == 0)
+			long remainder = divmodChunk(limbs, startAt);
+			while (startAt < limbs.length && limbs[startAt] == 0)
 				++startAt;
-			temp[--j] = (byte) ALPHABET[mod];
+
+			for (int i = 0; i < CHUNK_DIGITS; i++)
+			{
+				temp[--j] = ALPHABET[(int) (remainder % 43)];
+				remainder /= 43;
+			}
 		}
 
-		// Strip extra '1' if there are some after decoding.
+		// Strip extra '0' if there are some after encoding.
 		while (j < temp.length && temp[j] == ALPHABET[0])
 			++j;
 
-		// Add as many leading '1' as there were leading zeros.
+		// Add as many leading '0' as there were leading zeros.
 		while (--zeroCount >= 0)
-			temp[--j] = (byte) ALPHABET[0];
-
-		final byte[] output = copyOfRange(temp, j, temp.length);
+			temp[--j] = ALPHABET[0];
 
-		return new String(output, Charset.forName("US-ASCII"));
+		return new String(temp, j, temp.length - j);
 	}
 
 	public static byte[] decode(@Nonnull final String input) throws IllegalArgumentException
 	{
-		if (input.length() == 0)
+		final int length = input.length();
+		if (length == 0)
 			return new byte[0];
 
-		final byte[] input43 = new byte[input.length()];
-		// Transform the String to a base43 byte sequence
-		for (int i = 0; i < input.length(); ++i)
+		// Little-endian 32 bit limbs, each chunk of CHUNK_DIGITS digits grows the number by less than one limb.
+		final int[] limbs = new int[length / CHUNK_DIGITS + 1];
+		int numLimbs = 0;
+
+		int zeroCount = 0;
+		boolean leading = true;
+		int chunk = 0;
+		int chunkDigits = 0;
+		long chunkBase = 1;
+		for (int i = 0; i < length; ++i)
 		{
 			final char c = input.charAt(i);
 
@@ -96,78 +113,70 @@ public class Base43
 			if (digit43 < 0)
 				throw new IllegalArgumentException("Illegal character " + c + " at " + i);
 
-			input43[i] = (byte) digit43;
+			// Count leading zeroes
+			if (leading && digit43 == 0)
+				++zeroCount;
+			else
+				leading = false;
+
+			chunk = chunk * 43 + digit43;
+			chunkBase *= 43;
+			if (++chunkDigits == CHUNK_DIGITS || i == length - 1)
+			{
+				numLimbs = multiplyAdd(limbs, numLimbs, chunkBase, chunk);
+				chunk = 0;
+				chunkDigits = 0;
+				chunkBase = 1;
+			}
 		}
 
-		// Count leading zeroes
-		int zeroCount = 0;
-		while (zeroCount < input43.length && input43[zeroCount] == 0)
-			++zeroCount;
-
-		// The encoding
-		final byte[] temp = new byte[input.length()];
-		int j = temp.length;
+		// The most significant limb is never zero, so only it can contribute leading zero bytes.
+		final int numBytes = numLimbs > 0 ? (numLimbs - 1) * 4 + 4 - Integer.numberOfLeadingZeros(limbs[numLimbs - 1]) / 8 : 0;
+		final byte[] output = new byte[zeroCount + numBytes];
+		for (int i = 0; i < numBytes; i++)
+			output[output.length - 1 - i] = (byte) (limbs[i / 4] >>> (8 * (i % 4)));
 
-		int startAt = zeroCount;
-		while (startAt < input43.length)
-		{
-			byte mod = divmod256(input43, startAt);
-			if (input43[startAt] == 0)
-				++startAt;
-
-			temp[--j] = mod;
-		}
-
-		// Do no add extra leading zeroes, move j to first non null byte.
-		while (j < temp.length && temp[j] == 0)
-			++j;
-
-		return copyOfRange(temp, j - zeroCount, temp.length);
+		return output;
 	}
 
 	//
-	// number -> number / 43, returns number % 43
+	// number -> number / 43^5, returns number % 43^5
 	//
-	private static byte divmod43(final byte[] number, final int startAt)
+	private static long divmodChunk(final int[] limbs, final int startAt)
 	{
-		int remainder = 0;
-		for (int i = startAt; i < number.length; i++)
+		long remainder = 0;
+		for (int i = startAt; i < limbs.length; i++)
 		{
-			final int digit256 = (int) number[i] & 0xFF;
-			final int temp = remainder * 256 + digit256;
+			final long temp = (remainder << 32) | (limbs[i] & 0xFFFFFFFFL);
+
+			final long quotient = temp / CHUNK_BASE;
 
-			number[i] = (byte) (temp / 43);
+			limbs[i] = (int) quotient;
 
-			remainder = temp % 43;
+			remainder = temp - quotient * CHUNK_BASE;
 		}
 
-		return (byte) remainder;
+		return remainder;
 	}
 
 	//
-	// number -> number / 256, returns number % 256
+	// number -> number * multiplier + addend, returns the new number of limbs
 	//
-	private static byte divmod256(final byte[] number43, final int startAt)
+	private static int multiplyAdd(final int[] limbs, int numLimbs, final long multiplier, final int addend)
 	{
-		int remainder = 0;
-		for (int i = startAt; i < number43.length; i++)
+		long carry = addend;
+		for (int i = 0; i < numLimbs; i++)
 		{
-			final int digit58 = (int) number43[i] & 0xFF;
-			final int temp = remainder * 43 + digit58;
+			final long temp = (limbs[i] & 0xFFFFFFFFL) * multiplier + carry;
 
-			number43[i] = (byte) (temp / 256);
+			limbs[i] = (int) temp;
 
-			remainder = temp % 256;
+			carry = temp >>> 32;
 		}
 
-		return (byte) remainder;
-	}
-
-	private static byte[] copyOfRange(final byte[] source, final int from, final int to)
-	{
-		final byte[] range = new byte[to - from];
-		System.arraycopy(source, from, range, 0, range.length);
+		if (carry != 0)
+			limbs[numLimbs++] = (int) carry;
 
-		return range;
+		return numLimbs;
 	}
 }
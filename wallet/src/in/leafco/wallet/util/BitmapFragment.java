@@ -37,26 +37,29 @@ public class BitmapFragment extends DialogFragment
 {
 	private static final String FRAGMENT_TAG = BitmapFragment.class.getName();
 
-	private static final String KEY_BITMAP = "bitmap";
+	private static final String KEY_QR_CONTENT = "qr_content";
+	private static final String KEY_QR_SIZE = "qr_size";
 
-	public static void show(final FragmentManager fm, @Nonnull final Bitmap bitmap)
+	public static void showQr(final FragmentManager fm, @Nonnull final String qrContent, final int size)
 	{
-		final DialogFragment newFragment = instance(bitmap);
+		final DialogFragment newFragment = instance(qrContent, size);
 		newFragment.show(fm, FRAGMENT_TAG);
 	}
 
-	private static BitmapFragment instance(@Nonnull final Bitmap bitmap)
+	private static BitmapFragment instance(@Nonnull final String qrContent, final int size)
 	{
 		final BitmapFragment fragment = new BitmapFragment();
 
 		final Bundle args = new Bundle();
-		args.putParcelable(KEY_BITMAP, bitmap);
+		args.putString(KEY_QR_CONTENT, qrContent);
+		args.putInt(KEY_QR_SIZE, size);
 		fragment.setArguments(args);
 
 		return fragment;
 	}
 
 	private Activity activity;
+	private QrRenderer qrRenderer;
 
 	@Override
 	public void onAttach(final Activity activity)
@@ -69,7 +72,7 @@ public class BitmapFragment extends DialogFragment
 	@Override
 	public Dialog onCreateDialog(final Bundle savedInstanceState)
 	{
-		final Bitmap bitmap = (Bitmap) getArguments().getParcelable(KEY_BITMAP);
+		final Bundle args = getArguments();
 
 		final Dialog dialog = new Dialog(activity);
 		dialog.requestWindowFeature(Window.FEATURE_NO_TITLE);
@@ -77,7 +80,6 @@ public class BitmapFragment extends DialogFragment
 		dialog.setCanceledOnTouchOutside(true);
 
 		final ImageView imageView = (ImageView) dialog.findViewById(R.id.bitmap_dialog_image);
-		imageView.setImageBitmap(bitmap);
 		imageView.setOnClickListener(new View.OnClickListener()
 		{
 			@Override
@@ -87,6 +89,24 @@ public class BitmapFragment extends DialogFragment
 			}
 		});
 
+		qrRenderer = new QrRenderer()
+		{
+			@Override
+			protected void onBitmap(final Bitmap bitmap)
+			{
+				imageView.setImageBitmap(bitmap);
+			}
+		};
+		qrRenderer.renderNow(args.getString(KEY_QR_CONTENT), args.getInt(KEY_QR_SIZE));
+
 		return dialog;
 	}
+
+	@Override
+	public void onDestroyView()
+	{
+		qrRenderer.cancel();
+
+		super.onDestroyView();
+	}
 }
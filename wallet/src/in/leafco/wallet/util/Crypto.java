@@ -16,32 +16,41 @@
 
 package in.leafco.wallet.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 import javax.annotation.Nonnull;
 
 import org.spongycastle.crypto.BufferedBlockCipher;
 import org.spongycastle.crypto.CipherParameters;
-import org.spongycastle.crypto.DataLengthException;
-import org.spongycastle.crypto.InvalidCipherTextException;
 import org.spongycastle.crypto.PBEParametersGenerator;
 import org.spongycastle.crypto.engines.AESFastEngine;
 import org.spongycastle.crypto.generators.OpenSSLPBEParametersGenerator;
+import org.spongycastle.crypto.io.CipherInputStream;
+import org.spongycastle.crypto.io.CipherOutputStream;
 import org.spongycastle.crypto.modes.CBCBlockCipher;
 import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
 import org.spongycastle.crypto.params.ParametersWithIV;
 
 import android.util.Base64;
+import android.util.Base64InputStream;
+import android.util.Base64OutputStream;
 import in.leafco.wallet.Constants;
 
 /**
- * This class encrypts and decrypts a string in a manner that is compatible with OpenSSL.
+ * This class encrypts and decrypts a string or a stream in a manner that is compatible with OpenSSL.
  * 
  * If you encrypt a string with this class you can decrypt it with the OpenSSL command: openssl enc -d -aes-256-cbc -a
  * -in cipher.txt -out plain.txt -pass pass:aTestPassword
@@ -127,55 +136,44 @@ public class Crypto
 	 */
 	public static String encrypt(@Nonnull final String plainText, @Nonnull final char[] password) throws IOException
 	{
-		final byte[] plainTextAsBytes = plainText.getBytes(Constants.UTF_8);
+		final ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
 
-		final byte[] encryptedBytes = encrypt(plainTextAsBytes, password);
+		final OutputStream plainOut = encrypt(cipherText, password);
+		plainOut.write(plainText.getBytes(Constants.UTF_8));
+		plainOut.close();
 
-		// OpenSSL prefixes the salt bytes + encryptedBytes with Salted___ and then base64 encodes it
-		final byte[] encryptedBytesPlusSaltedText = concat(OPENSSL_SALTED_BYTES, encryptedBytes);
-
-		return new String(encodeBase64(encryptedBytesPlusSaltedText), Constants.UTF_8);
+		return new String(cipherText.toByteArray(), Constants.UTF_8);
 	}
 
 	/**
-	 * Password based encryption using AES - CBC 256 bits.
+	 * Password based encryption using AES - CBC 256 bits, as a stream. Bytes written to the returned stream are encrypted and
+	 * base64 encoded on the fly, prefixed with Salted__ and the salt like OpenSSL does. The encryption is only complete once the
+	 * returned stream has been closed, which also closes the given stream.
 	 * 
-	 * @param plainBytes
-	 *            The bytes to encrypt
+	 * @param cipherOut
+	 *            The stream to write the encrypted text to
 	 * @param password
 	 *            The password to use for encryption
-	 * @return SALT_LENGTH bytes of salt followed by the encrypted bytes.
+	 * @return The stream to write the plain bytes to
 	 * @throws IOException
 	 */
-	private static byte[] encrypt(final byte[] plainTextAsBytes, final char[] password) throws IOException
+	public static OutputStream encrypt(@Nonnull final OutputStream cipherOut, @Nonnull final char[] password) throws IOException
 	{
-		try
-		{
-			// Generate salt - each encryption call has a different salt.
-			final byte[] salt = new byte[SALT_LENGTH];
-			secureRandom.nextBytes(salt);
+		// Generate salt - each encryption call has a different salt.
+		final byte[] salt = new byte[SALT_LENGTH];
+		secureRandom.nextBytes(salt);
 
-			final ParametersWithIV key = (ParametersWithIV) getAESPasswordKey(password, salt);
+		final ParametersWithIV key = (ParametersWithIV) getAESPasswordKey(password, salt);
 
-			// The following code uses an AES cipher to encrypt the message.
-			final BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()));
-			cipher.init(true, key);
-			final byte[] encryptedBytes = new byte[cipher.getOutputSize(plainTextAsBytes.length)];
-			final int length = cipher.processBytes(plainTextAsBytes, 0, plainTextAsBytes.length, encryptedBytes, 0);
+		final BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()));
+		cipher.init(true, key);
 
-			cipher.doFinal(encryptedBytes, length);
+		// OpenSSL prefixes the salt bytes + encryptedBytes with Salted___ and then base64 encodes it
+		final OutputStream base64Out = new Base64OutputStream(cipherOut, Base64.DEFAULT);
+		base64Out.write(OPENSSL_SALTED_BYTES);
+		base64Out.write(salt);
 
-			// The result bytes are the SALT_LENGTH bytes followed by the encrypted bytes.
-			return concat(salt, encryptedBytes);
-		}
-		catch (final InvalidCipherTextException x)
-		{
-			throw new IOException("Could not encrypt bytes", x);
-		}
-		catch (final DataLengthException x)
-		{
-			throw new IOException("Could not encrypt bytes", x);
-		}
+		return new CipherOutputStream(base64Out, cipher);
 	}
 
 	/**
@@ -190,91 +188,65 @@ public class Crypto
 	 */
 	public static String decrypt(@Nonnull final String textToDecode, @Nonnull final char[] password) throws IOException
 	{
-		final byte[] decodeTextAsBytes = decodeBase64(textToDecode.getBytes(Constants.UTF_8));
-
-		if (decodeTextAsBytes.length < OPENSSL_SALTED_BYTES.length)
-			throw new IOException("out of salt");
+		final Reader plainIn = new InputStreamReader(decrypt(new ByteArrayInputStream(textToDecode.getBytes(Constants.UTF_8)), password),
+				Constants.UTF_8);
+		final StringBuilder plainText = new StringBuilder();
 
-		final byte[] cipherBytes = new byte[decodeTextAsBytes.length - OPENSSL_SALTED_BYTES.length];
-		System.arraycopy(decodeTextAsBytes, OPENSSL_SALTED_BYTES.length, cipherBytes, 0, decodeTextAsBytes.length - OPENSSL_SALTED_BYTES.length);
-
-		final byte[] decryptedBytes = decrypt(cipherBytes, password);
+		try
+		{
+			Io.copy(plainIn, plainText);
+		}
+		finally
+		{
+			plainIn.close();
+		}
 
-		return new String(decryptedBytes, Constants.UTF_8).trim();
+		return plainText.toString().trim();
 	}
 
 	/**
-	 * Decrypt bytes previously encrypted with this class.
+	 * Decrypt a stream previously encrypted with this class or with OpenSSL. The salt is read right away, the rest is decoded and
+	 * decrypted as the returned stream is read. Closing the returned stream closes the given stream.
 	 * 
-	 * @param bytesToDecode
-	 *            The bytes to decrypt
-	 * @param passwordbThe
+	 * @param cipherIn
+	 *            The stream to read the encrypted text from
+	 * @param password
 	 *            password to use for decryption
-	 * @return The decrypted bytes
+	 * @return The stream to read the decrypted bytes from
 	 * @throws IOException
+	 *             also if the stream doesn't start like an OpenSSL encrypted file, or from the returned stream if the password was
+	 *             wrong
 	 */
-	private static byte[] decrypt(final byte[] bytesToDecode, final char[] password) throws IOException
+	public static InputStream decrypt(@Nonnull final InputStream cipherIn, @Nonnull final char[] password) throws IOException
 	{
-		try
-		{
-			// separate the salt and bytes to decrypt
-			final byte[] salt = new byte[SALT_LENGTH];
-
-			System.arraycopy(bytesToDecode, 0, salt, 0, SALT_LENGTH);
-
-			final byte[] cipherBytes = new byte[bytesToDecode.length - SALT_LENGTH];
-			System.arraycopy(bytesToDecode, SALT_LENGTH, cipherBytes, 0, bytesToDecode.length - SALT_LENGTH);
+		final DataInputStream base64In = new DataInputStream(new Base64InputStream(cipherIn, Base64.DEFAULT));
 
-			final ParametersWithIV key = (ParametersWithIV) getAESPasswordKey(password, salt);
-
-			// decrypt the message
-			final BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()));
-			cipher.init(false, key);
-
-			final byte[] decryptedBytes = new byte[cipher.getOutputSize(cipherBytes.length)];
-			final int length = cipher.processBytes(cipherBytes, 0, cipherBytes.length, decryptedBytes, 0);
-
-			cipher.doFinal(decryptedBytes, length);
-
-			return decryptedBytes;
-		}
-		catch (final InvalidCipherTextException x)
+		// separate the salt and bytes to decrypt
+		final byte[] saltedBytes = new byte[OPENSSL_SALTED_BYTES.length];
+		final byte[] salt = new byte[SALT_LENGTH];
+		try
 		{
-			throw new IOException("Could not decrypt input string", x);
+			base64In.readFully(saltedBytes);
+			base64In.readFully(salt);
 		}
-		catch (final DataLengthException x)
+		catch (final EOFException x)
 		{
-			throw new IOException("Could not decrypt input string", x);
+			throw new IOException("out of salt", x);
 		}
-	}
+		if (!Arrays.equals(saltedBytes, OPENSSL_SALTED_BYTES))
+			throw new IOException("not salted");
 
-	private static byte[] encodeBase64(byte[] decoded)
-	{
-		return Base64.encode(decoded, Base64.DEFAULT);
-	}
+		final ParametersWithIV key = (ParametersWithIV) getAESPasswordKey(password, salt);
 
-	private static byte[] decodeBase64(byte[] encoded) throws IOException
-	{
-		try
-		{
-			return Base64.decode(encoded, Base64.DEFAULT);
-		}
-		catch (final IllegalArgumentException x)
-		{
-			throw new IOException("illegal base64 padding", x);
-		}
+		final BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()));
+		cipher.init(false, key);
+
+		return new CipherInputStream(base64In, cipher);
 	}
 
-	/**
-	 * Concatenate two byte arrays.
-	 */
-	private static byte[] concat(final byte[] arrayA, final byte[] arrayB)
+	private static byte[] encodeBase64(byte[] decoded)
 	{
-		final byte[] result = new byte[arrayA.length + arrayB.length];
-		System.arraycopy(arrayA, 0, result, 0, arrayA.length);
-		System.arraycopy(arrayB, 0, result, arrayA.length, arrayB.length);
-
-		return result;
+		return Base64.encode(decoded, Base64.DEFAULT);
 	}
 
 	public final static FileFilter OPENSSL_FILE_FILTER = new FileFilter()
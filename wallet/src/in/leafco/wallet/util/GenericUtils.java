@@ -20,7 +20,6 @@ package in.leafco.wallet.util;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.Locale;
 
 import javax.annotation.Nonnull;
 
@@ -48,65 +47,245 @@ public class GenericUtils
 	public static String formatValue(@Nonnull final BigInteger value, @Nonnull final String plusSign, @Nonnull final String minusSign,
 			final int precision, final int shift)
 	{
-        BigInteger newValue = value;
+		if (value.bitLength() < 64)
+			return formatValue(value.longValue(), plusSign, minusSign, precision, shift);
+		else
+			return formatBigValue(value, plusSign, minusSign, precision, shift);
+	}
+
+	private static String formatBigValue(@Nonnull final BigInteger value, @Nonnull final String plusSign, @Nonnull final String minusSign,
+			final int precision, final int shift)
+	{
+		final BigInteger coin = shift == 0 ? ONE_BTC : ONE_MBTC;
+		final BigInteger rounding = BigInteger.valueOf(roundingSatoshis(precision, shift));
+
+		final BigInteger remainder = value.mod(rounding);
+		BigInteger rounded = value.subtract(remainder);
+		if (remainder.shiftLeft(1).compareTo(rounding) >= 0 && rounding.compareTo(BigInteger.ONE) > 0)
+			rounded = rounded.add(rounding);
+
+		final BigInteger[] coinsAndSatoshis = rounded.abs().divideAndRemainder(coin);
+
+		final StringBuilder builder = new StringBuilder(value.signum() == -1 ? minusSign : plusSign);
+		builder.append(coinsAndSatoshis[0]).append('.');
+		appendFraction(builder, coinsAndSatoshis[1].intValue(), shift);
+		return builder.toString();
+	}
+
+	public static String formatValue(final long value, final int precision, final int shift)
+	{
+		return formatValue(value, "", "-", precision, shift);
+	}
+
+	public static String formatValue(final long value, @Nonnull final String plusSign, @Nonnull final String minusSign, final int precision,
+			final int shift)
+	{
+		return formatValue(new StringBuilder(24), value, plusSign, minusSign, precision, shift).toString();
+	}
+
+	/**
+	 * Appends the formatted value to the given builder, without any intermediate allocations. Rounding is half up, towards positive
+	 * infinity.
+	 */
+	public static StringBuilder formatValue(@Nonnull final StringBuilder builder, final long value, @Nonnull final String plusSign,
+			@Nonnull final String minusSign, final int precision, final int shift)
+	{
+		final int coinSatoshis = shift == 0 ? ONE_BTC_INT : ONE_MBTC_INT;
+		final int roundingSatoshis = roundingSatoshis(precision, shift);
+
+		// round in units of roundingSatoshis, so nothing can overflow
+		long units = value / roundingSatoshis;
+		long remainder = value % roundingSatoshis;
+		if (remainder < 0)
+		{
+			remainder += roundingSatoshis;
+			units--;
+		}
+		if (remainder * 2 >= roundingSatoshis && roundingSatoshis > 1)
+			units++;
+
+		// magnitude is computed from negative values, so Long.MIN_VALUE works as well
+		final int unitsPerCoin = coinSatoshis / roundingSatoshis;
+		final long negUnits = units < 0 ? units : -units;
+		final long coins = -(negUnits / unitsPerCoin);
+		final int satoshis = (int) -(negUnits % unitsPerCoin) * roundingSatoshis;
+
+		builder.append(value < 0 ? minusSign : plusSign);
+		builder.append(coins);
+		builder.append('.');
 
-		final String sign = value.signum() == -1 ? minusSign : plusSign;
+		appendFraction(builder, satoshis, shift);
 
+		return builder;
+	}
+
+	private static int roundingSatoshis(final int precision, final int shift)
+	{
 		if (shift == 0)
 		{
 			if (precision == 2)
-                newValue = value.subtract(value.mod(new BigInteger("1000000"))).add(value.mod(new BigInteger("1000000")).divide(new BigInteger("500000")).multiply(new BigInteger("1000000")));
+				return 1000000;
 			else if (precision == 4)
-                newValue = value.subtract(value.mod(new BigInteger("10000"))).add(value.mod(new BigInteger("10000")).divide(new BigInteger("5000")).multiply(new BigInteger("10000")));
+				return 10000;
 			else if (precision == 6)
-                newValue = value.subtract(value.mod(new BigInteger("100"))).add(value.mod(new BigInteger("100")).divide(new BigInteger("50")).multiply(new BigInteger("100")));
+				return 100;
 			else if (precision == 8)
-				;
+				return 1;
 			else
 				throw new IllegalArgumentException("cannot handle precision/shift: " + precision + "/" + shift);
-
-            final BigInteger absValue = newValue.abs();
-			final long coins = (absValue.divide(new BigInteger(String.valueOf(ONE_BTC_INT)))).longValue();
-			final int satoshis = (absValue.mod(new BigInteger(String.valueOf(ONE_BTC_INT))).intValue());
-
-			if (satoshis % 1000000 == 0)
-				return String.format(Locale.US, "%s%d.%02d", sign, coins, satoshis / 1000000);
-			else if (satoshis % 10000 == 0)
-				return String.format(Locale.US, "%s%d.%04d", sign, coins, satoshis / 10000);
-			else if (satoshis % 100 == 0)
-				return String.format(Locale.US, "%s%d.%06d", sign, coins, satoshis / 100);
-			else
-				return String.format(Locale.US, "%s%d.%08d", sign, coins, satoshis);
 		}
 		else if (shift == 3)
 		{
 			if (precision == 2)
-                newValue = value.subtract(value.mod(new BigInteger("1000"))).add(value.mod(new BigInteger("1000")).divide(new BigInteger("500")).multiply(new BigInteger("1000")));
+				return 1000;
 			else if (precision == 4)
-                newValue = value.subtract(value.mod(new BigInteger("10"))).add(value.mod(new BigInteger("10")).divide(new BigInteger("5")).multiply(new BigInteger("10")));
+				return 10;
 			else if (precision == 5)
-				;
+				return 1;
 			else
 				throw new IllegalArgumentException("cannot handle precision/shift: " + precision + "/" + shift);
+		}
+		else
+		{
+			throw new IllegalArgumentException("cannot handle shift: " + shift);
+		}
+	}
 
-            final BigInteger absValue = newValue.abs();
-            final long coins = (absValue.divide(new BigInteger(String.valueOf(ONE_MBTC_INT)))).longValue();
-            final int satoshis = (absValue.mod(new BigInteger(String.valueOf(ONE_MBTC_INT))).intValue());
-
-			if (satoshis % 1000 == 0)
-				return String.format(Locale.US, "%s%d.%02d", sign, coins, satoshis / 1000);
-			else if (satoshis % 10 == 0)
-				return String.format(Locale.US, "%s%d.%04d", sign, coins, satoshis / 10);
+	private static void appendFraction(final StringBuilder builder, final int satoshis, final int shift)
+	{
+		// use the shortest of the supported number of decimals that doesn't lose information
+		if (shift == 0)
+		{
+			if (satoshis % 1000000 == 0)
+				appendPadded(builder, satoshis / 1000000, 2);
+			else if (satoshis % 10000 == 0)
+				appendPadded(builder, satoshis / 10000, 4);
+			else if (satoshis % 100 == 0)
+				appendPadded(builder, satoshis / 100, 6);
 			else
-				return String.format(Locale.US, "%s%d.%05d", sign, coins, satoshis);
+				appendPadded(builder, satoshis, 8);
 		}
 		else
 		{
-			throw new IllegalArgumentException("cannot handle shift: " + shift);
+			if (satoshis % 1000 == 0)
+				appendPadded(builder, satoshis / 1000, 2);
+			else if (satoshis % 10 == 0)
+				appendPadded(builder, satoshis / 10, 4);
+			else
+				appendPadded(builder, satoshis, 5);
 		}
 	}
 
+	private static void appendPadded(final StringBuilder builder, final int value, final int digits)
+	{
+		for (int divisor = pow10(digits - 1); divisor > 0; divisor /= 10)
+			builder.append((char) ('0' + (value / divisor) % 10));
+	}
+
+	private static int pow10(final int exponent)
+	{
+		int pow = 1;
+		for (int i = 0; i < exponent; i++)
+			pow *= 10;
+		return pow;
+	}
+
 	public static BigInteger toNanoCoins(final String value, final int shift) throws ArithmeticException
+	{
+		final long nanoCoins = parseNanoCoins(value, 8 - shift);
+		if (nanoCoins != NOT_PARSED)
+			return BigInteger.valueOf(nanoCoins);
+
+		return parseNanoCoinsWithBigDecimal(value, shift);
+	}
+
+	public static Amount toAmount(final String value, final int shift) throws ArithmeticException
+	{
+		final long nanoCoins = parseNanoCoins(value, 8 - shift);
+		if (nanoCoins != NOT_PARSED)
+			return Amount.valueOf(nanoCoins);
+
+		return Amount.valueOf(parseNanoCoinsWithBigDecimal(value, shift));
+	}
+
+	private static final long NOT_PARSED = -1;
+	private static final long MAX_MONEY_LONG = NetworkParameters.MAX_MONEY.bitLength() < 64 ? NetworkParameters.MAX_MONEY.longValue()
+			: Long.MAX_VALUE;
+
+	/**
+	 * Parses plain decimal notation directly into nanocoins. Anything else, like exponents, non-ASCII digits or
+	 * malformed input, is left to {@link BigDecimal} by returning {@link #NOT_PARSED}, so behavior is identical in every case.
+	 */
+	private static long parseNanoCoins(final String value, final int scale) throws ArithmeticException
+	{
+		if (scale < 0)
+			return NOT_PARSED;
+
+		final int length = value.length();
+		int i = 0;
+
+		boolean negative = false;
+		if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+			negative = value.charAt(i++) == '-';
+
+		long nanoCoins = 0;
+		int numDigits = 0;
+		int numFractionDigits = -1;
+		boolean inexact = false;
+
+		for (; i < length; i++)
+		{
+			final char c = value.charAt(i);
+
+			if (c == '.' && numFractionDigits == -1)
+			{
+				numFractionDigits = 0;
+			}
+			else if (c >= '0' && c <= '9')
+			{
+				numDigits++;
+
+				if (numFractionDigits >= 0 && ++numFractionDigits > scale)
+				{
+					if (c != '0')
+						inexact = true;
+				}
+				else
+				{
+					if (nanoCoins > (Long.MAX_VALUE - 9) / 10)
+						return NOT_PARSED;
+
+					nanoCoins = nanoCoins * 10 + (c - '0');
+				}
+			}
+			else
+			{
+				return NOT_PARSED;
+			}
+		}
+
+		if (numDigits == 0)
+			return NOT_PARSED;
+
+		for (int fractionDigits = Math.max(numFractionDigits, 0); fractionDigits < scale; fractionDigits++)
+		{
+			if (nanoCoins > Long.MAX_VALUE / 10)
+				return NOT_PARSED;
+
+			nanoCoins *= 10;
+		}
+
+		if (inexact)
+			throw new ArithmeticException("Rounding necessary");
+		if (negative && nanoCoins != 0)
+			throw new ArithmeticException("negative amount: " + value);
+		if (nanoCoins > MAX_MONEY_LONG)
+			throw new ArithmeticException("amount too large: " + value);
+
+		return nanoCoins;
+	}
+
+	private static BigInteger parseNanoCoinsWithBigDecimal(final String value, final int shift) throws ArithmeticException
 	{
 		final BigInteger nanoCoins = new BigDecimal(value).movePointRight(8 - shift).toBigIntegerExact();
 
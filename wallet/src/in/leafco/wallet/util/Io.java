@@ -17,6 +17,7 @@
 
 package in.leafco.wallet.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -62,6 +63,27 @@ public class Io
 		return count;
 	}
 
+	/**
+	 * Reads a stream to its end, but no more than limit bytes.
+	 *
+	 * @throws IOException
+	 *             also if the stream is longer than the limit, as soon as the first byte beyond it has been read
+	 */
+	public static final byte[] readFully(@Nonnull final InputStream is, final int limit) throws IOException
+	{
+		final ByteArrayOutputStream os = new ByteArrayOutputStream(Math.min(1024, limit));
+		final byte[] buffer = new byte[1024];
+		int n = 0;
+		while (-1 != (n = is.read(buffer, 0, Math.min(buffer.length, limit + 1 - os.size()))))
+		{
+			os.write(buffer, 0, n);
+
+			if (os.size() > limit)
+				throw new IOException("input exceeds " + limit + " bytes");
+		}
+		return os.toByteArray();
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public static void chmod(@Nonnull final File path, final int mode)
 	{
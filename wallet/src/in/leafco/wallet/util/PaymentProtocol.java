@@ -18,6 +18,8 @@
 package in.leafco.wallet.util;
 
 import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,6 +31,7 @@ import org.bitcoin.protocols.payments.Protos;
 import com.google.leafcoin.core.Address;
 import com.google.leafcoin.core.Transaction;
 import com.google.leafcoin.protocols.payments.PaymentRequestException;
+import com.google.leafcoin.protocols.payments.PaymentRequestException.PkiVerificationException;
 import com.google.leafcoin.protocols.payments.PaymentSession;
 import com.google.leafcoin.protocols.payments.PaymentSession.PkiVerificationData;
 import com.google.leafcoin.script.Script;
@@ -45,6 +48,10 @@ import in.leafco.wallet.PaymentIntent;
  */
 public final class PaymentProtocol
 {
+	public static final int MAX_PAYMENT_REQUEST_SIZE = 50000;
+
+	private static final PkiVerificationCache PKI_VERIFICATION_CACHE = new PkiVerificationCache(16);
+
 	public static Protos.PaymentRequest createPaymentRequest(final BigInteger amount, @Nonnull final Address toAddress, final String memo,
 			final String paymentUrl)
 	{
@@ -71,10 +78,16 @@ public final class PaymentProtocol
 	}
 
 	public static PaymentIntent parsePaymentRequest(@Nonnull final byte[] serializedPaymentRequest) throws PaymentRequestException
+	{
+		return parsePaymentRequest(serializedPaymentRequest, PKI_VERIFICATION_CACHE);
+	}
+
+	static PaymentIntent parsePaymentRequest(@Nonnull final byte[] serializedPaymentRequest,
+			@Nonnull final PkiVerificationCache pkiVerificationCache) throws PaymentRequestException
 	{
 		try
 		{
-			if (serializedPaymentRequest.length > 50000)
+			if (serializedPaymentRequest.length > MAX_PAYMENT_REQUEST_SIZE)
 				throw new PaymentRequestException("payment request too big: " + serializedPaymentRequest.length);
 
 			final Protos.PaymentRequest paymentRequest = Protos.PaymentRequest.parseFrom(serializedPaymentRequest);
@@ -84,11 +97,10 @@ public final class PaymentProtocol
 			final String pkiCaName;
 			if (!"none".equals(paymentRequest.getPkiType()))
 			{
-				// implicitly verify PKI signature
-				final PkiVerificationData verificationData = new PaymentSession(paymentRequest, true).pkiVerificationData;
-				pkiName = verificationData.name;
-				pkiOrgName = verificationData.orgName;
-				pkiCaName = verificationData.rootAuthorityName;
+				final PkiVerificationCache.Entry verified = verifyPki(paymentRequest, pkiVerificationCache);
+				pkiName = verified.name;
+				pkiOrgName = verified.orgName;
+				pkiCaName = verified.caName;
 			}
 			else
 			{
@@ -140,6 +152,62 @@ public final class PaymentProtocol
 		}
 	}
 
+	private static PkiVerificationCache.Entry verifyPki(@Nonnull final Protos.PaymentRequest paymentRequest,
+			@Nonnull final PkiVerificationCache cache) throws PaymentRequestException, InvalidProtocolBufferException
+	{
+		final Protos.X509Certificates certificates = Protos.X509Certificates.parseFrom(paymentRequest.getPkiData());
+		final List<byte[]> encodedCertificates = new ArrayList<byte[]>(certificates.getCertificateCount());
+		for (final ByteString certificate : certificates.getCertificateList())
+			encodedCertificates.add(certificate.toByteArray());
+
+		final String fingerprint = PkiVerificationCache.fingerprint(encodedCertificates);
+		final PkiVerificationCache.Entry cached = cache.get(fingerprint, System.currentTimeMillis());
+
+		if (cached != null)
+		{
+			// the chain is known to be good, but the request must still be signed by it
+			final byte[] signedData = paymentRequest.toBuilder().setSignature(ByteString.EMPTY).build().toByteArray();
+
+			try
+			{
+				if (!cached.verifySignature(signatureAlgorithm(paymentRequest.getPkiType()), signedData, paymentRequest.getSignature()
+						.toByteArray()))
+					throw new PkiVerificationException("invalid signature");
+			}
+			catch (final GeneralSecurityException x)
+			{
+				throw new PkiVerificationException(x);
+			}
+
+			return cached;
+		}
+
+		// implicitly verify PKI signature and certificate chain
+		final PkiVerificationData verificationData = new PaymentSession(paymentRequest, true).pkiVerificationData;
+
+		try
+		{
+			final PkiVerificationCache.Entry verified = PkiVerificationCache.Entry.create(PkiVerificationCache.parseChain(encodedCertificates),
+					verificationData.name, verificationData.orgName, verificationData.rootAuthorityName);
+			cache.put(fingerprint, verified);
+			return verified;
+		}
+		catch (final CertificateException x)
+		{
+			throw new PkiVerificationException(x);
+		}
+	}
+
+	private static String signatureAlgorithm(final String pkiType) throws PaymentRequestException
+	{
+		if ("x509+sha256".equals(pkiType))
+			return "SHA256withRSA";
+		else if ("x509+sha1".equals(pkiType))
+			return "SHA1withRSA";
+		else
+			throw new PaymentRequestException.InvalidPkiType("unsupported pki type: " + pkiType);
+	}
+
 	public static Protos.Payment createPaymentMessage(@Nonnull final Transaction transaction, @Nullable final Address refundAddress,
 			@Nullable final BigInteger refundAmount, @Nullable final String memo, @Nullable final byte[] merchantData)
 	{
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.util;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Remembers certificate chains of payment requests that have passed PKI verification, keyed by the fingerprint of the chain. An entry
+ * is valid until the first certificate of its chain expires. The signature of each payment request still needs to be checked against
+ * the cached signing key, only the validation of the chain is skipped.
+ *
+ * @author Andreas Schildbach
+ */
+public final class PkiVerificationCache
+{
+	private final Map<String, Entry> entries;
+
+	public PkiVerificationCache(final int maxEntries)
+	{
+		this.entries = new LinkedHashMap<String, Entry>(maxEntries, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest)
+			{
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	public static final class Entry
+	{
+		@CheckForNull
+		public final String name;
+		@CheckForNull
+		public final String orgName;
+		@CheckForNull
+		public final String caName;
+		public final PublicKey signingKey;
+		public final long expiresAt;
+
+		private Entry(@Nullable final String name, @Nullable final String orgName, @Nullable final String caName,
+				@Nonnull final PublicKey signingKey, final long expiresAt)
+		{
+			this.name = name;
+			this.orgName = orgName;
+			this.caName = caName;
+			this.signingKey = signingKey;
+			this.expiresAt = expiresAt;
+		}
+
+		/**
+		 * @param chain
+		 *            verified chain, starting with the signing certificate
+		 */
+		public static Entry create(@Nonnull final List<X509Certificate> chain, @Nullable final String name, @Nullable final String orgName,
+				@Nullable final String caName)
+		{
+			long expiresAt = Long.MAX_VALUE;
+			for (final X509Certificate certificate : chain)
+				expiresAt = Math.min(expiresAt, certificate.getNotAfter().getTime());
+
+			return new Entry(name, orgName, caName, chain.get(0).getPublicKey(), expiresAt);
+		}
+
+		public boolean verifySignature(@Nonnull final String algorithm, @Nonnull final byte[] data, @Nonnull final byte[] signature)
+				throws GeneralSecurityException
+		{
+			final Signature verifier = Signature.getInstance(algorithm);
+			verifier.initVerify(signingKey);
+			verifier.update(data);
+			return verifier.verify(signature);
+		}
+	}
+
+	@CheckForNull
+	public synchronized Entry get(@Nonnull final String fingerprint, final long now)
+	{
+		final Entry entry = entries.get(fingerprint);
+
+		if (entry != null && now >= entry.expiresAt)
+		{
+			entries.remove(fingerprint);
+			return null;
+		}
+
+		return entry;
+	}
+
+	public synchronized void put(@Nonnull final String fingerprint, @Nonnull final Entry entry)
+	{
+		entries.put(fingerprint, entry);
+	}
+
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @param encodedCertificates
+	 *            DER encoded certificates of the chain
+	 * @return SHA-256 fingerprint of the whole chain, in hex
+	 */
+	public static String fingerprint(@Nonnull final List<byte[]> encodedCertificates)
+	{
+		try
+		{
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (final byte[] encodedCertificate : encodedCertificates)
+			{
+				// length prefix, so the boundaries between certificates count
+				final int length = encodedCertificate.length;
+				digest.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length });
+				digest.update(encodedCertificate);
+			}
+
+			final String hex = new BigInteger(1, digest.digest()).toString(16);
+			final StringBuilder fingerprint = new StringBuilder(64);
+			for (int i = hex.length(); i < 64; i++)
+				fingerprint.append('0');
+			return fingerprint.append(hex).toString();
+		}
+		catch (final NoSuchAlgorithmException x)
+		{
+			throw new RuntimeException(x); // cannot happen
+		}
+	}
+
+	public static List<X509Certificate> parseChain(@Nonnull final List<byte[]> encodedCertificates) throws CertificateException
+	{
+		final CertificateFactory factory = CertificateFactory.getInstance("X.509");
+		final List<X509Certificate> chain = new ArrayList<X509Certificate>(encodedCertificates.size());
+		for (final byte[] encodedCertificate : encodedCertificates)
+			chain.add((X509Certificate) factory.generateCertificate(new ByteArrayInputStream(encodedCertificate)));
+		return chain;
+	}
+}
@@ -22,16 +22,22 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Hashtable;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.v4.util.LruCache;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
@@ -46,33 +52,74 @@ import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 public class Qr
 {
 	private final static QRCodeWriter QR_CODE_WRITER = new QRCodeWriter();
+	private final static Hashtable<EncodeHintType, Object> HINTS = new Hashtable<EncodeHintType, Object>();
+	static
+	{
+		HINTS.put(EncodeHintType.MARGIN, 0);
+		HINTS.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+	}
+
+	private static final int BITMAP_CACHE_SIZE = 2 * 1024 * 1024;
+	private static final LruCache<String, Bitmap> BITMAP_CACHE = new LruCache<String, Bitmap>(BITMAP_CACHE_SIZE)
+	{
+		@Override
+		protected int sizeOf(final String key, final Bitmap bitmap)
+		{
+			return bitmap.getRowBytes() * bitmap.getHeight();
+		}
+	};
 
 	private static final Logger log = LoggerFactory.getLogger(Qr.class);
 
+	/**
+	 * Returns an {@link Bitmap.Config#ALPHA_8} bitmap of the given size, to be drawn in black. Bitmaps are cached and shared, so
+	 * callers must not modify or recycle them.
+	 */
 	public static Bitmap bitmap(@Nonnull final String content, final int size)
 	{
+		final String key = size + ":" + content;
+		final Bitmap cachedBitmap = BITMAP_CACHE.get(key);
+		if (cachedBitmap != null)
+			return cachedBitmap;
+
 		try
 		{
-			final Hashtable<EncodeHintType, Object> hints = new Hashtable<EncodeHintType, Object>();
-			hints.put(EncodeHintType.MARGIN, 0);
-			hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
-			final BitMatrix result = QR_CODE_WRITER.encode(content, BarcodeFormat.QR_CODE, size, size, hints);
+			// one bit per module
+			final BitMatrix result = QR_CODE_WRITER.encode(content, BarcodeFormat.QR_CODE, 0, 0, HINTS);
 
-			final int width = result.getWidth();
-			final int height = result.getHeight();
-			final int[] pixels = new int[width * height];
+			final int modules = result.getWidth();
+			final int[] pixels = new int[modules * modules];
 
-			for (int y = 0; y < height; y++)
+			for (int y = 0; y < modules; y++)
 			{
-				final int offset = y * width;
-				for (int x = 0; x < width; x++)
+				final int offset = y * modules;
+				for (int x = 0; x < modules; x++)
 				{
 					pixels[offset + x] = result.get(x, y) ? Color.BLACK : Color.TRANSPARENT;
 				}
 			}
 
-			final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-			bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+			final Bitmap moduleBitmap = Bitmap.createBitmap(modules, modules, Bitmap.Config.ALPHA_8);
+			moduleBitmap.setPixels(pixels, 0, modules, 0, 0, modules, modules);
+
+			final Bitmap bitmap;
+			if (size > modules)
+			{
+				// scale up by a whole number of pixels per module and center, without filtering
+				final int scaledSize = (size / modules) * modules;
+				final int padding = (size - scaledSize) / 2;
+
+				bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ALPHA_8);
+				final Canvas canvas = new Canvas(bitmap);
+				canvas.drawBitmap(moduleBitmap, null, new Rect(padding, padding, padding + scaledSize, padding + scaledSize), null);
+				moduleBitmap.recycle();
+			}
+			else
+			{
+				bitmap = moduleBitmap;
+			}
+
+			BITMAP_CACHE.put(key, bitmap);
 			return bitmap;
 		}
 		catch (final WriterException x)
@@ -82,28 +129,46 @@ public class Qr
 		}
 	}
 
-	public static String encodeCompressBinary(@Nonnull final byte[] bytes)
-	{
-		try
-		{
-			final ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length);
-			final GZIPOutputStream gos = new GZIPOutputStream(bos);
-			gos.write(bytes);
-			gos.close();
+	private static final char ENCODING_RAW = '-';
+	private static final char ENCODING_GZIP = 'Z';
+	private static final char ENCODING_DEFLATE = 'D';
+	private static final char ENCODING_DEFLATE_DICTIONARY = 'Y';
 
-			final byte[] gzippedBytes = bos.toByteArray();
-			final boolean useCompressioon = gzippedBytes.length < bytes.length;
+	/**
+	 * Preset dictionary for {@link #ENCODING_DEFLATE_DICTIONARY}, made of byte sequences common in serialized transactions, most
+	 * frequent last. Must never change, or previously encoded payloads won't decode any more.
+	 */
+	private static final byte[] TRANSACTION_DICTIONARY = hex("17a914" + "87" + "8b483045022100" + "014104" + "6a47304402200220"
+			+ "012103" + "012102" + "0000000001000000" + "88ac" + "ffffffff" + "1976a914" + "0220" + "6b483045022100");
 
-			final StringBuilder str = new StringBuilder();
-			str.append(useCompressioon ? 'Z' : '-');
-			str.append(Base43.encode(useCompressioon ? gzippedBytes : bytes));
+	/**
+	 * Encodes binary data for a QR code, using whichever of the supported encodings yields the smallest result. The first character
+	 * denotes the encoding.
+	 */
+	public static String encodeCompressBinary(@Nonnull final byte[] bytes)
+	{
+		char encoding = ENCODING_RAW;
+		byte[] encoded = bytes;
 
-			return str.toString();
+		final byte[] deflated = deflate(bytes, null);
+		if (deflated.length < encoded.length)
+		{
+			encoding = ENCODING_DEFLATE;
+			encoded = deflated;
 		}
-		catch (final IOException x)
+
+		final byte[] deflatedWithDictionary = deflate(bytes, TRANSACTION_DICTIONARY);
+		if (deflatedWithDictionary.length < encoded.length)
 		{
-			throw new RuntimeException(x);
+			encoding = ENCODING_DEFLATE_DICTIONARY;
+			encoded = deflatedWithDictionary;
 		}
+
+		final StringBuilder str = new StringBuilder();
+		str.append(encoding);
+		str.append(Base43.encode(encoded));
+
+		return str.toString();
 	}
 
 	public static String encodeBinary(@Nonnull final byte[] bytes)
@@ -113,12 +178,89 @@ public class Qr
 
 	public static byte[] decodeDecompressBinary(@Nonnull final String content) throws IOException
 	{
-		final boolean useCompression = content.charAt(0) == 'Z';
+		final char encoding = content.charAt(0);
 		final byte[] bytes = Base43.decode(content.substring(1));
 
-		InputStream is = new ByteArrayInputStream(bytes);
-		if (useCompression)
-			is = new GZIPInputStream(is);
+		switch (encoding)
+		{
+			case ENCODING_RAW:
+				return bytes;
+
+			case ENCODING_GZIP:
+				return gunzip(bytes);
+
+			case ENCODING_DEFLATE:
+				return inflate(bytes, null);
+
+			case ENCODING_DEFLATE_DICTIONARY:
+				return inflate(bytes, TRANSACTION_DICTIONARY);
+
+			default:
+				throw new IOException("unknown encoding: " + encoding);
+		}
+	}
+
+	private static byte[] deflate(final byte[] bytes, @Nullable final byte[] dictionary)
+	{
+		final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try
+		{
+			if (dictionary != null)
+				deflater.setDictionary(dictionary);
+			deflater.setInput(bytes);
+			deflater.finish();
+
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length);
+			final byte[] buf = new byte[4096];
+			while (!deflater.finished())
+				bos.write(buf, 0, deflater.deflate(buf));
+
+			return bos.toByteArray();
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(final byte[] bytes, @Nullable final byte[] dictionary) throws IOException
+	{
+		final Inflater inflater = new Inflater(true);
+		try
+		{
+			if (dictionary != null)
+				inflater.setDictionary(dictionary);
+
+			// raw inflate may need an extra dummy byte at the end of the input
+			final byte[] input = new byte[bytes.length + 1];
+			System.arraycopy(bytes, 0, input, 0, bytes.length);
+			inflater.setInput(input);
+
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length * 2);
+			final byte[] buf = new byte[4096];
+			while (!inflater.finished())
+			{
+				final int read = inflater.inflate(buf);
+				if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new IOException("truncated deflate data");
+				bos.write(buf, 0, read);
+			}
+
+			return bos.toByteArray();
+		}
+		catch (final DataFormatException x)
+		{
+			throw new IOException("invalid deflate data: " + x.getMessage());
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+
+	private static byte[] gunzip(final byte[] bytes) throws IOException
+	{
+		final InputStream is = new GZIPInputStream(new ByteArrayInputStream(bytes));
 		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
 		final byte[] buf = new byte[4096];
@@ -131,6 +273,14 @@ public class Qr
 		return baos.toByteArray();
 	}
 
+	private static byte[] hex(final String hex)
+	{
+		final byte[] bytes = new byte[hex.length() / 2];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+		return bytes;
+	}
+
 	public static byte[] decodeBinary(@Nonnull final String content) throws IOException
 	{
 		return Base43.decode(content);
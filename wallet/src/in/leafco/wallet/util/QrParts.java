@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import in.leafco.wallet.Constants;
+
+/**
+ * Splits content that is too large for a single QR code into a sequence of parts, to be shown one after another, and reassembles
+ * them on the scanning side. Each part looks like <tt>P&lt;index&gt;/&lt;total&gt;/&lt;crc32&gt;:&lt;chunk&gt;</tt>, with a
+ * 1-based index and the CRC32 of the whole content in uppercase hex, so that the header stays within the QR alphanumeric charset.
+ *
+ * @author Andreas Schildbach
+ */
+public final class QrParts
+{
+	/**
+	 * Content up to these lengths is shown as a single, plain code, readable by older versions. These are the capacities of the largest
+	 * code at the error correction level used by {@link Qr}, in alphanumeric and in byte mode.
+	 */
+	public static final int MAX_SINGLE_LENGTH_ALPHANUMERIC = 1852;
+	public static final int MAX_SINGLE_LENGTH_BYTES = 1273;
+	public static final int MAX_PART_LENGTH = 500;
+	public static final int MAX_PARTS = 99;
+
+	private static final String QR_ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+	private static final Pattern PATTERN_PART = Pattern.compile("P(\\d{1,2})/(\\d{1,2})/([0-9A-F]{8}):(.+)", Pattern.DOTALL);
+
+	private QrParts()
+	{
+	}
+
+	public static List<String> split(@Nonnull final String content) throws IllegalArgumentException
+	{
+		if (content.length() <= maxSingleLength(content))
+			return Collections.singletonList(content);
+
+		final int total = (content.length() + MAX_PART_LENGTH - 1) / MAX_PART_LENGTH;
+		if (total > MAX_PARTS)
+			throw new IllegalArgumentException("content too large: " + content.length());
+
+		// spread evenly, so all parts end up with about the same qr version
+		final int partLength = (content.length() + total - 1) / total;
+		final String checksum = checksum(content);
+
+		final List<String> parts = new ArrayList<String>(total);
+		for (int i = 0; i < total; i++)
+		{
+			final String chunk = content.substring(i * partLength, Math.min((i + 1) * partLength, content.length()));
+			parts.add("P" + (i + 1) + "/" + total + "/" + checksum + ":" + chunk);
+		}
+
+		return parts;
+	}
+
+	public static int maxSingleLength(@Nonnull final String content)
+	{
+		for (int i = 0; i < content.length(); i++)
+			if (QR_ALPHANUMERIC.indexOf(content.charAt(i)) == -1)
+				return MAX_SINGLE_LENGTH_BYTES;
+
+		return MAX_SINGLE_LENGTH_ALPHANUMERIC;
+	}
+
+	/**
+	 * @return true if the content is a well-formed part, which {@link Assembler#add(String)} will accept
+	 */
+	public static boolean isPart(@Nonnull final String content)
+	{
+		return matchPart(content) != null;
+	}
+
+	@CheckForNull
+	private static Matcher matchPart(final String content)
+	{
+		final Matcher m = PATTERN_PART.matcher(content);
+		if (!m.matches())
+			return null;
+
+		final int index = Integer.parseInt(m.group(1));
+		final int total = Integer.parseInt(m.group(2));
+		if (index < 1 || index > total)
+			return null;
+
+		return m;
+	}
+
+	private static String checksum(final String content)
+	{
+		final CRC32 crc = new CRC32();
+		crc.update(content.getBytes(Constants.UTF_8));
+		return String.format(Locale.US, "%08X", crc.getValue());
+	}
+
+	/**
+	 * Collects scanned parts in any order. Parts of a different content start over.
+	 */
+	public static final class Assembler
+	{
+		private String checksum = null;
+		private String[] chunks = null;
+		private int received = 0;
+
+		/**
+		 * @return the reassembled content once all parts have been added, or null if parts are still missing
+		 */
+		@CheckForNull
+		public String add(@Nonnull final String part) throws IllegalArgumentException
+		{
+			final Matcher m = matchPart(part);
+			if (m == null)
+				throw new IllegalArgumentException("not a part: " + part);
+
+			final int index = Integer.parseInt(m.group(1));
+			final int total = Integer.parseInt(m.group(2));
+			final String partChecksum = m.group(3);
+
+			if (chunks == null || chunks.length != total || !partChecksum.equals(checksum))
+			{
+				checksum = partChecksum;
+				chunks = new String[total];
+				received = 0;
+			}
+
+			if (chunks[index - 1] == null)
+			{
+				chunks[index - 1] = m.group(4);
+				received++;
+			}
+
+			if (received < total)
+				return null;
+
+			final StringBuilder content = new StringBuilder();
+			for (final String chunk : chunks)
+				content.append(chunk);
+			final String result = content.toString();
+
+			// a corrupt part went unnoticed, start over
+			final boolean valid = checksum(result).equals(checksum);
+			chunks = null;
+			received = 0;
+			checksum = null;
+
+			return valid ? result : null;
+		}
+
+		public int getReceived()
+		{
+			return received;
+		}
+
+		public int getTotal()
+		{
+			return chunks != null ? chunks.length : 0;
+		}
+	}
+}
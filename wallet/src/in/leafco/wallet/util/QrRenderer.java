@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.util;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * Renders QR codes on a shared background thread and delivers them on the thread that created the renderer. Only the most recent
+ * request is delivered; requests made while a previous one is still pending make it obsolete. Content too large for a single code
+ * is split using {@link QrParts} and its parts are delivered in a loop until the next request.
+ *
+ * @author Andreas Schildbach
+ */
+public abstract class QrRenderer
+{
+	private static final long DEBOUNCE_MS = 150;
+	private static final long FRAME_INTERVAL_MS = 500;
+
+	private static Handler renderHandler;
+
+	private final Handler callbackHandler;
+	private volatile int generation = 0;
+	private Runnable pendingRender = null;
+
+	public QrRenderer()
+	{
+		this.callbackHandler = new Handler(Looper.myLooper());
+	}
+
+	/**
+	 * Renders after input has settled for a short while, for content that changes while the user is typing.
+	 */
+	public final void render(@Nonnull final String content, final int size)
+	{
+		schedule(content, size, DEBOUNCE_MS);
+	}
+
+	public final void renderNow(@Nonnull final String content, final int size)
+	{
+		schedule(content, size, 0);
+	}
+
+	/**
+	 * Drops any pending request, so {@link #onBitmap(Bitmap)} won't be called until the next one.
+	 */
+	public final void cancel()
+	{
+		generation++;
+
+		if (pendingRender != null)
+		{
+			callbackHandler.removeCallbacks(pendingRender);
+			pendingRender = null;
+		}
+	}
+
+	private void schedule(final String content, final int size, final long delayMs)
+	{
+		cancel();
+
+		final int requestGeneration = generation;
+
+		pendingRender = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				pendingRender = null;
+
+				List<String> parts;
+				try
+				{
+					parts = QrParts.split(content);
+				}
+				catch (final IllegalArgumentException x)
+				{
+					parts = Collections.singletonList(content); // will fail to render
+				}
+
+				renderFrame(parts, 0, size, requestGeneration);
+			}
+		};
+
+		if (delayMs > 0)
+			callbackHandler.postDelayed(pendingRender, delayMs);
+		else
+			pendingRender.run();
+	}
+
+	private void renderFrame(final List<String> parts, final int index, final int size, final int requestGeneration)
+	{
+		renderHandler().post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (requestGeneration != generation)
+					return;
+
+				final Bitmap bitmap = Qr.bitmap(parts.get(index), size); // can take long
+
+				callbackHandler.post(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						if (requestGeneration != generation)
+							return;
+
+						onBitmap(bitmap);
+
+						// cycle through the parts of large content
+						if (parts.size() > 1)
+						{
+							pendingRender = new Runnable()
+							{
+								@Override
+								public void run()
+								{
+									pendingRender = null;
+									renderFrame(parts, (index + 1) % parts.size(), size, requestGeneration);
+								}
+							};
+							callbackHandler.postDelayed(pendingRender, FRAME_INTERVAL_MS);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	private static synchronized Handler renderHandler()
+	{
+		if (renderHandler == null)
+		{
+			final HandlerThread renderThread = new HandlerThread("qrRenderThread", Process.THREAD_PRIORITY_BACKGROUND);
+			renderThread.start();
+			renderHandler = new Handler(renderThread.getLooper());
+		}
+
+		return renderHandler;
+	}
+
+	protected abstract void onBitmap(@Nullable Bitmap bitmap);
+}
@@ -131,16 +131,34 @@ public class WalletUtils
 		}
 	}
 
-	public static BigInteger localValue(@Nonnull final BigInteger btcValue, @Nonnull final BigInteger rate)
+	/**
+	 * @return value in local currency, or null if it doesn't fit an {@link Amount}
+	 */
+	@CheckForNull
+	public static Amount localValue(@Nonnull final Amount btcValue, @Nonnull final Amount rate)
 	{
-		return btcValue.multiply(rate).divide(GenericUtils.ONE_BTC);
+		return btcValue.multiplyDivide(rate.longValue(), ONE_BTC_LONG);
 	}
 
-	public static BigInteger btcValue(@Nonnull final BigInteger localValue, @Nonnull final BigInteger rate)
+	/**
+	 * For values straight from the wallet, which can be too large for an {@link Amount}.
+	 */
+	public static BigInteger localValue(@Nonnull final BigInteger btcValue, @Nonnull final Amount rate)
 	{
-		return localValue.multiply(GenericUtils.ONE_BTC).divide(rate);
+		return btcValue.multiply(rate.toBigInteger()).divide(GenericUtils.ONE_BTC);
 	}
 
+	/**
+	 * @return value in nanocoins, or null if it doesn't fit an {@link Amount}, as happens for ordinary local amounts at small rates
+	 */
+	@CheckForNull
+	public static Amount btcValue(@Nonnull final Amount localValue, @Nonnull final Amount rate)
+	{
+		return localValue.multiplyDivide(ONE_BTC_LONG, rate.longValue());
+	}
+
+	private static final long ONE_BTC_LONG = GenericUtils.ONE_BTC.longValue();
+
 	@CheckForNull
 	public static Address getFirstFromAddress(@Nonnull final Transaction tx)
 	{
@@ -205,9 +223,22 @@ public class WalletUtils
 		}
 	}
 
+	public interface ProgressListener
+	{
+		void onProgress(int numKeysDone, int numKeysTotal);
+	}
+
 	public static void writeKeys(@Nonnull final Writer out, @Nonnull final List<ECKey> keys) throws IOException
+	{
+		writeKeys(out, keys, null);
+	}
+
+	public static void writeKeys(@Nonnull final Writer out, @Nonnull final List<ECKey> keys, @Nullable final ProgressListener progressListener)
+			throws IOException
 	{
 		final DateFormat format = Iso8601Format.newDateTimeFormatT();
+		final int numKeys = keys.size();
+		int numKeysDone = 0;
 
 		out.write("# KEEP YOUR PRIVATE KEYS SAFE! Anyone who can read this can spend your Bitcoins.\n");
 
@@ -220,6 +251,9 @@ public class WalletUtils
 				out.write(format.format(new Date(key.getCreationTimeSeconds() * DateUtils.SECOND_IN_MILLIS)));
 			}
 			out.write('\n');
+
+			if (progressListener != null)
+				progressListener.onProgress(++numKeysDone, numKeys);
 		}
 	}
 
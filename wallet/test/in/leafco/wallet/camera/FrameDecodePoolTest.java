@@ -0,0 +1,274 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class FrameDecodePoolTest
+{
+	private static final Logger log = LoggerFactory.getLogger(FrameDecodePoolTest.class);
+
+	@Test
+	public void dropsOldest() throws Exception
+	{
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final BlockingQueue<byte[]> decoded = new LinkedBlockingQueue<byte[]>();
+		final BlockingQueue<byte[]> done = new LinkedBlockingQueue<byte[]>();
+
+		final FrameDecodePool<Object> pool = new FrameDecodePool<Object>(1, 1, new FrameDecodePool.Callback<Object>()
+		{
+			@Override
+			public Object createWorker()
+			{
+				return new Object();
+			}
+
+			@Override
+			public boolean onFrame(final Object worker, final byte[] frame)
+			{
+				decoded.add(frame);
+				started.countDown();
+				try
+				{
+					release.await();
+				}
+				catch (final InterruptedException x)
+				{
+					throw new RuntimeException(x);
+				}
+				return false;
+			}
+
+			@Override
+			public void onFrameDone(final byte[] frame)
+			{
+				done.add(frame);
+			}
+		});
+
+		final byte[] frame1 = new byte[1], frame2 = new byte[1], frame3 = new byte[1];
+		pool.submit(frame1);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		// worker is busy, second frame waits and is replaced by the third
+		pool.submit(frame2);
+		pool.submit(frame3);
+		assertSame(frame2, done.poll(5, TimeUnit.SECONDS));
+
+		release.countDown();
+		assertSame(frame1, done.poll(5, TimeUnit.SECONDS));
+		assertSame(frame3, done.poll(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(frame1, frame3), new ArrayList<byte[]>(decoded));
+
+		pool.stop();
+	}
+
+	@Test
+	public void stopWhenDone() throws Exception
+	{
+		final AtomicInteger decoded = new AtomicInteger();
+		final BlockingQueue<byte[]> done = new LinkedBlockingQueue<byte[]>();
+
+		final FrameDecodePool<Object> pool = new FrameDecodePool<Object>(2, 1, new FrameDecodePool.Callback<Object>()
+		{
+			@Override
+			public Object createWorker()
+			{
+				return new Object();
+			}
+
+			@Override
+			public boolean onFrame(final Object worker, final byte[] frame)
+			{
+				decoded.incrementAndGet();
+				return true;
+			}
+
+			@Override
+			public void onFrameDone(final byte[] frame)
+			{
+				done.add(frame);
+			}
+		});
+
+		final byte[] frame = new byte[1];
+		pool.submit(frame);
+		assertSame(frame, done.poll(5, TimeUnit.SECONDS));
+		Thread.sleep(50);
+		assertTrue(pool.isStopped());
+
+		// further frames are handed back right away
+		final byte[] lateFrame = new byte[1];
+		pool.submit(lateFrame);
+		assertSame(lateFrame, done.poll());
+		assertEquals(1, decoded.get());
+	}
+
+	/**
+	 * Measures sustained decode throughput for each number of threads. Replays raw NV21 frames from the directory given by the
+	 * <tt>frames.dir</tt> system property if present, using the first frame's size from <tt>frames.width</tt> and
+	 * <tt>frames.height</tt>. Otherwise uses synthetic frames. This is a benchmark, so it only runs if <tt>frames.dir</tt> or
+	 * <tt>benchmark</tt> is set.
+	 */
+	@Test
+	public void throughput() throws Exception
+	{
+		final String framesDir = System.getProperty("frames.dir");
+		assumeTrue(framesDir != null || Boolean.getBoolean("benchmark"));
+
+		final int width = Integer.getInteger("frames.width", 640);
+		final int height = Integer.getInteger("frames.height", 480);
+		final List<byte[]> frames = framesDir != null ? readFrames(new File(framesDir), width * height * 3 / 2) : syntheticFrames(width,
+				height);
+		final int regionSize = Math.min(width, height) * 2 / 3;
+		final int left = (width - regionSize) / 2, top = (height - regionSize) / 2;
+
+		final int maxThreads = Runtime.getRuntime().availableProcessors();
+		for (int numThreads = 1; numThreads <= maxThreads; numThreads++)
+		{
+			final int numFrames = frames.size() * 5;
+			final AtomicInteger numDecoded = new AtomicInteger();
+			final CountDownLatch allDone = new CountDownLatch(numFrames);
+
+			final FrameDecodePool<FrameDecoder> pool = new FrameDecodePool<FrameDecoder>(numThreads, numFrames,
+					new FrameDecodePool.Callback<FrameDecoder>()
+					{
+						@Override
+						public FrameDecoder createWorker()
+						{
+							return new FrameDecoder(null);
+						}
+
+						@Override
+						public boolean onFrame(final FrameDecoder decoder, final byte[] frame)
+						{
+							if (decoder.decode(frame, width, left, top, regionSize, regionSize) != null)
+								numDecoded.incrementAndGet();
+							return false;
+						}
+
+						@Override
+						public void onFrameDone(final byte[] frame)
+						{
+							allDone.countDown();
+						}
+					});
+
+			final long start = System.nanoTime();
+			for (int i = 0; i < numFrames; i++)
+				pool.submit(frames.get(i % frames.size()));
+			assertTrue(allDone.await(60, TimeUnit.SECONDS));
+			final long elapsed = System.nanoTime() - start;
+			pool.stop();
+
+			assertFalse(numDecoded.get() == 0);
+			log.info("{} threads: {} frames/s, {} of {} frames decoded",
+					new Object[] { numThreads, numFrames * 1000000000L / elapsed, numDecoded.get(), numFrames });
+		}
+	}
+
+	private static List<byte[]> readFrames(final File dir, final int frameSize) throws IOException
+	{
+		final List<byte[]> frames = new ArrayList<byte[]>();
+		final File[] files = dir.listFiles();
+		Arrays.sort(files);
+
+		for (final File file : files)
+		{
+			if (file.length() != frameSize)
+				continue;
+
+			final byte[] frame = new byte[frameSize];
+			final DataInputStream is = new DataInputStream(new FileInputStream(file));
+			try
+			{
+				is.readFully(frame);
+			}
+			finally
+			{
+				is.close();
+			}
+			frames.add(frame);
+		}
+
+		return frames;
+	}
+
+	private static List<byte[]> syntheticFrames(final int width, final int height) throws Exception
+	{
+		final List<byte[]> frames = new ArrayList<byte[]>();
+		final Random random = new Random(0);
+		final int codeSize = Math.min(width, height) / 2;
+		final BitMatrix code = new QRCodeWriter().encode("leafcoin:LXpAqSjgoNZjcXYk4Sev7jG6VMvTBXpX6P?amount=1.25", BarcodeFormat.QR_CODE,
+				codeSize, codeSize);
+
+		for (int i = 0; i < 10; i++)
+		{
+			// every other frame without a code, like while aiming
+			final boolean withCode = i % 2 == 0;
+			final int codeLeft = (width - code.getWidth()) / 2 + random.nextInt(21) - 10;
+			final int codeTop = (height - code.getHeight()) / 2 + random.nextInt(21) - 10;
+
+			final byte[] frame = new byte[width * height * 3 / 2];
+			for (int y = 0; y < height; y++)
+			{
+				for (int x = 0; x < width; x++)
+				{
+					final int codeX = x - codeLeft, codeY = y - codeTop;
+					final boolean isDark = withCode && codeX >= 0 && codeX < code.getWidth() && codeY >= 0 && codeY < code.getHeight()
+							&& code.get(codeX, codeY);
+					frame[y * width + x] = (byte) ((isDark ? 30 : 220) + random.nextInt(21) - 10);
+				}
+			}
+			Arrays.fill(frame, width * height, frame.length, (byte) 128);
+			frames.add(frame);
+		}
+
+		return frames;
+	}
+}
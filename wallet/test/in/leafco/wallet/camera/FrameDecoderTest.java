@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+/**
+ * Feeds synthetic NV21 preview frames through the decoder.
+ *
+ * @author Andreas Schildbach
+ */
+public class FrameDecoderTest
+{
+	private static final int FRAME_WIDTH = 640;
+	private static final int FRAME_HEIGHT = 480;
+	private static final int LEFT = 160, TOP = 80, SIZE = 320;
+	private static final String CONTENT = "leafcoin:LXpAqSjgoNZjcXYk4Sev7jG6VMvTBXpX6P?amount=1.25";
+
+	@Test
+	public void normal() throws Exception
+	{
+		final FrameDecoder decoder = new FrameDecoder(null);
+		assertDecodes(decoder, frame(false, 0));
+	}
+
+	@Test
+	public void inverted() throws Exception
+	{
+		final FrameDecoder decoder = new FrameDecoder(null);
+		assertDecodes(decoder, frame(true, 0));
+	}
+
+	@Test
+	public void smallCodeInLargeRegion() throws Exception
+	{
+		// located at half resolution, then decoded from its part of the region
+		final FrameDecoder decoder = new FrameDecoder(null);
+		final byte[] frame = frame(false, 0, 160);
+		final Result result = decoder.decode(frame, FRAME_WIDTH, LEFT, TOP, SIZE, SIZE);
+		assertNotNull(result);
+		assertEquals(CONTENT, result.getText());
+
+		// result points are relative to the whole region
+		final int codeStart = (SIZE - 160) / 2;
+		for (final ResultPoint point : result.getResultPoints())
+		{
+			assertTrue(point.getX() > codeStart && point.getX() < codeStart + 160);
+			assertTrue(point.getY() > codeStart && point.getY() < codeStart + 160);
+		}
+	}
+
+	@Test
+	public void smallRegion() throws Exception
+	{
+		// decoded directly
+		final int size = FrameDecoder.MIN_DETECT_SIZE - 20;
+		final FrameDecoder decoder = new FrameDecoder(null);
+		final Result result = decoder.decode(frame(false, 0, size - 20), FRAME_WIDTH, LEFT + (SIZE - size) / 2, TOP + (SIZE - size) / 2,
+				size, size);
+		assertNotNull(result);
+		assertEquals(CONTENT, result.getText());
+	}
+
+	@Test
+	public void empty() throws Exception
+	{
+		final FrameDecoder decoder = new FrameDecoder(null);
+		final byte[] frame = new byte[FRAME_WIDTH * FRAME_HEIGHT * 3 / 2];
+		for (int i = 0; i < 8; i++)
+			assertNull(decoder.decode(frame, FRAME_WIDTH, LEFT, TOP, SIZE, SIZE));
+	}
+
+	@Test
+	public void sequence() throws Exception
+	{
+		// buffers are reused across frames, also when switching orientation or region size
+		final FrameDecoder decoder = new FrameDecoder(null);
+		for (int i = 0; i < 20; i++)
+			assertDecodes(decoder, frame(i % 3 == 0, i));
+		assertNotNull(decoder.decode(frame(false, 0), FRAME_WIDTH, LEFT - 40, TOP - 40, SIZE + 80, SIZE + 80));
+		assertDecodes(decoder, frame(false, 0));
+	}
+
+	private static void assertDecodes(final FrameDecoder decoder, final byte[] frame)
+	{
+		// one of two consecutive frames must do, even if the orientation guess is off
+		Result result = decoder.decode(frame, FRAME_WIDTH, LEFT, TOP, SIZE, SIZE);
+		if (result == null)
+			result = decoder.decode(frame, FRAME_WIDTH, LEFT, TOP, SIZE, SIZE);
+		assertNotNull(result);
+		assertEquals(CONTENT, result.getText());
+	}
+
+	private static byte[] frame(final boolean inverted, final long seed) throws Exception
+	{
+		return frame(inverted, seed, 240);
+	}
+
+	private static byte[] frame(final boolean inverted, final long seed, final int codeSize) throws Exception
+	{
+		final BitMatrix code = new QRCodeWriter().encode(CONTENT, BarcodeFormat.QR_CODE, codeSize, codeSize);
+		final Random random = new Random(seed);
+		final int light = inverted ? 40 : 220;
+		final int dark = inverted ? 210 : 30;
+
+		final byte[] frame = new byte[FRAME_WIDTH * FRAME_HEIGHT * 3 / 2];
+		final int codeLeft = LEFT + (SIZE - code.getWidth()) / 2;
+		final int codeTop = TOP + (SIZE - code.getHeight()) / 2;
+		for (int y = 0; y < FRAME_HEIGHT; y++)
+		{
+			for (int x = 0; x < FRAME_WIDTH; x++)
+			{
+				final int codeX = x - codeLeft, codeY = y - codeTop;
+				final boolean isDark = codeX >= 0 && codeX < code.getWidth() && codeY >= 0 && codeY < code.getHeight() && code.get(codeX, codeY);
+				final int luminance = (isDark ? dark : light) + random.nextInt(21) - 10;
+				frame[y * FRAME_WIDTH + x] = (byte) luminance;
+			}
+		}
+
+		// neutral chroma
+		for (int i = FRAME_WIDTH * FRAME_HEIGHT; i < frame.length; i++)
+			frame[i] = (byte) 128;
+
+		return frame;
+	}
+}
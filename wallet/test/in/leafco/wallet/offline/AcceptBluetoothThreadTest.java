@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.offline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.leafcoin.core.Transaction;
+
+/**
+ * Runs the classic protocol over local TCP sockets.
+ *
+ * @author Andreas Schildbach
+ */
+public class AcceptBluetoothThreadTest
+{
+	private SocketTransport transport;
+	private ConnectionExecutor executor;
+	private AcceptBluetoothThread thread;
+	private final PaymentServerStats stats = new PaymentServerStats();
+
+	@After
+	public void tearDown()
+	{
+		thread.stopAccepting();
+		executor.shutdown();
+	}
+
+	@Test
+	public void stalledClientDoesNotBlockOthers() throws Exception
+	{
+		start(2, 2, 10000);
+
+		final Socket stalled = connect();
+
+		for (int i = 0; i < 3; i++)
+		{
+			final Socket socket = connect();
+			assertTrue(sendNoTransactions(socket));
+			socket.close();
+		}
+
+		stalled.close();
+
+		// acks are counted after sending
+		for (int i = 0; i < 50 && stats.getAcks() < 3; i++)
+			Thread.sleep(100);
+		assertEquals(3, stats.getAcks());
+	}
+
+	@Test
+	public void stalledClientTimesOut() throws Exception
+	{
+		start(1, 1, 200);
+
+		final Socket stalled = connect();
+		stalled.setSoTimeout(5000);
+		assertEquals(-1, stalled.getInputStream().read());
+		stalled.close();
+
+		// the thread is free again
+		final Socket socket = connect();
+		assertTrue(sendNoTransactions(socket));
+		socket.close();
+	}
+
+	@Test
+	public void rejectWhenBusy() throws Exception
+	{
+		start(1, 1, 10000);
+
+		final Socket stalled1 = connect();
+		final Socket stalled2 = connect();
+		final Socket rejected = connect();
+		rejected.setSoTimeout(5000);
+		assertEquals(-1, rejected.getInputStream().read());
+
+		assertEquals(3, stats.getConnections());
+		assertEquals(1, stats.getRejectedConnections());
+
+		stalled1.close();
+		stalled2.close();
+		rejected.close();
+	}
+
+	private void start(final int numThreads, final int queueCapacity, final long timeoutMs) throws IOException
+	{
+		transport = new SocketTransport();
+		executor = new ConnectionExecutor("test", numThreads, queueCapacity, timeoutMs);
+		thread = new AcceptBluetoothThread.ClassicBluetoothThread(transport, executor, stats)
+		{
+			@Override
+			protected boolean handleTxs(final List<Transaction> txs)
+			{
+				return true;
+			}
+		};
+		thread.start();
+	}
+
+	private Socket connect() throws IOException
+	{
+		return new Socket(InetAddress.getByName(null), transport.getPort());
+	}
+
+	private static boolean sendNoTransactions(final Socket socket) throws IOException
+	{
+		socket.setSoTimeout(5000);
+
+		final DataOutputStream os = new DataOutputStream(socket.getOutputStream());
+		os.writeInt(0);
+		os.flush();
+
+		return new DataInputStream(socket.getInputStream()).readBoolean();
+	}
+
+	private static final class SocketTransport implements PaymentTransport
+	{
+		private final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+
+		public SocketTransport() throws IOException
+		{
+		}
+
+		public int getPort()
+		{
+			return serverSocket.getLocalPort();
+		}
+
+		@Override
+		public Connection accept() throws IOException
+		{
+			final Socket socket = serverSocket.accept();
+
+			return new Connection()
+			{
+				@Override
+				public InputStream getInputStream() throws IOException
+				{
+					return socket.getInputStream();
+				}
+
+				@Override
+				public OutputStream getOutputStream() throws IOException
+				{
+					return socket.getOutputStream();
+				}
+
+				@Override
+				public void close()
+				{
+					try
+					{
+						socket.close();
+					}
+					catch (final IOException x)
+					{
+						// swallow
+					}
+				}
+			};
+		}
+
+		@Override
+		public void close()
+		{
+			try
+			{
+				serverSocket.close();
+			}
+			catch (final IOException x)
+			{
+				// swallow
+			}
+		}
+	}
+}
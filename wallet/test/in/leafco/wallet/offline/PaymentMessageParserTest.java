@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.offline;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.bitcoin.protocols.payments.Protos;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.leafcoin.core.ProtocolException;
+import com.google.leafcoin.core.Transaction;
+import com.google.protobuf.ByteString;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class PaymentMessageParserTest
+{
+	private static final int MAX_PAYMENT_SIZE = 20000;
+	private static final int MAX_TRANSACTION_SIZE = 5000;
+	private static final int MAX_TRANSACTIONS = 10;
+
+	private PaymentMessageParser parser;
+
+	@Before
+	public void setUp()
+	{
+		parser = new PaymentMessageParser(MAX_PAYMENT_SIZE, MAX_TRANSACTION_SIZE, MAX_TRANSACTIONS);
+	}
+
+	@Test
+	public void payment() throws Exception
+	{
+		final Protos.Payment.Builder payment = Protos.Payment.newBuilder();
+		for (int i = 0; i < MAX_TRANSACTIONS; i++)
+			payment.addTransactions(ByteString.copyFrom(serializedTx(i, 25 + i * 100)));
+
+		// twice, so the second time runs on the buffers of the first
+		for (int i = 0; i < 2; i++)
+		{
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			payment.build().writeDelimitedTo(os);
+
+			final List<Transaction> txs = parser.parseTransactions(parser.readDelimitedPayment(new ByteArrayInputStream(os.toByteArray())));
+			assertEquals(MAX_TRANSACTIONS, txs.size());
+			for (int j = 0; j < MAX_TRANSACTIONS; j++)
+				assertArrayEquals(payment.getTransactions(j).toByteArray(), txs.get(j).unsafeBitcoinSerialize());
+		}
+	}
+
+	@Test
+	public void paymentTooLarge() throws Exception
+	{
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		Protos.Payment.newBuilder().setMerchantData(ByteString.copyFrom(new byte[MAX_PAYMENT_SIZE])).build().writeDelimitedTo(os);
+
+		try
+		{
+			parser.readDelimitedPayment(new ByteArrayInputStream(os.toByteArray()));
+			fail();
+		}
+		catch (final IOException x)
+		{
+			// expected
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void tooManyTransactions() throws Exception
+	{
+		final Protos.Payment.Builder payment = Protos.Payment.newBuilder();
+		for (int i = 0; i < MAX_TRANSACTIONS + 1; i++)
+			payment.addTransactions(ByteString.copyFrom(serializedTx(i, 25)));
+
+		parser.parseTransactions(payment.build());
+	}
+
+	@Test
+	public void classic() throws Exception
+	{
+		final byte[] largeTx = serializedTx(1, 1000);
+		final byte[] smallTx = serializedTx(2, 25);
+		final byte[] trailingGarbage = new byte[smallTx.length + 3];
+		System.arraycopy(smallTx, 0, trailingGarbage, 0, smallTx.length);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream os = new DataOutputStream(bytes);
+		for (final byte[] tx : new byte[][] { largeTx, trailingGarbage, smallTx })
+		{
+			os.writeInt(tx.length);
+			os.write(tx);
+		}
+		os.writeInt(Integer.MAX_VALUE);
+		os.writeInt(-1);
+
+		final DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertArrayEquals(largeTx, parser.readTransaction(is).unsafeBitcoinSerialize());
+
+		try
+		{
+			parser.readTransaction(is);
+			fail();
+		}
+		catch (final ProtocolException x)
+		{
+			// expected
+		}
+
+		// the small transaction is read into the buffer of the large one, and the stream is still in sync
+		assertArrayEquals(smallTx, parser.readTransaction(is).unsafeBitcoinSerialize());
+
+		// rejected before allocating
+		for (int i = 0; i < 2; i++)
+		{
+			try
+			{
+				parser.readTransaction(is);
+				fail();
+			}
+			catch (final IOException x)
+			{
+				// expected
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void classicTooManyTransactions() throws Exception
+	{
+		parser.checkTransactionCount(MAX_TRANSACTIONS + 1);
+	}
+
+	/**
+	 * @return serialized transaction with one input and one output, the size of the output script can be chosen
+	 */
+	private static byte[] serializedTx(final int seed, final int scriptSize) throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream os = new DataOutputStream(bytes);
+
+		os.write(new byte[] { 1, 0, 0, 0 }); // version
+		os.write(1); // inputs
+		final byte[] prevHash = new byte[32];
+		prevHash[0] = (byte) seed;
+		prevHash[1] = (byte) (seed >> 8);
+		os.write(prevHash);
+		os.write(new byte[] { 0, 0, 0, 0 }); // index
+		os.write(0); // script
+		os.write(new byte[] { -1, -1, -1, -1 }); // sequence
+		os.write(1); // outputs
+		os.write(new byte[] { 0, (byte) 0xe1, (byte) 0xf5, 0x05, 0, 0, 0, 0 }); // value
+		writeVarInt(os, scriptSize);
+		os.write(new byte[scriptSize]);
+		os.write(new byte[] { 0, 0, 0, 0 }); // lock time
+
+		return bytes.toByteArray();
+	}
+
+	private static void writeVarInt(final DataOutputStream os, final int value) throws IOException
+	{
+		if (value < 0xfd)
+		{
+			os.write(value);
+		}
+		else
+		{
+			os.write(0xfd);
+			os.write(value & 0xff);
+			os.write(value >> 8);
+		}
+	}
+}
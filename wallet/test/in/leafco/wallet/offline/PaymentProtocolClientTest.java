@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.offline;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs against a local stand-in for a merchant's payment protocol server.
+ *
+ * @author Andreas Schildbach
+ */
+public class PaymentProtocolClientTest
+{
+	private static final String MIMETYPE_PAYMENTREQUEST = "application/leafcoin-paymentrequest";
+	private static final String MIMETYPE_PAYMENT = "application/leafcoin-payment";
+	private static final String MIMETYPE_PAYMENTACK = "application/leafcoin-paymentack";
+	private static final byte[] PAYMENT_REQUEST = new byte[] { 1, 2, 3 };
+	private static final byte[] PAYMENT_ACK = new byte[] { 4, 5 };
+
+	private HttpServer server;
+	private final List<Integer> clientPorts = new ArrayList<Integer>();
+	private byte[] receivedPayment;
+	private PaymentProtocolClient client;
+	private String baseUrl;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), 0), 0);
+		server.createContext("/request", new HttpHandler()
+		{
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException
+			{
+				record(exchange);
+				respond(exchange, 200, MIMETYPE_PAYMENTREQUEST, PAYMENT_REQUEST);
+			}
+		});
+		server.createContext("/pay", new HttpHandler()
+		{
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException
+			{
+				record(exchange);
+				receivedPayment = read(exchange.getRequestBody());
+				respond(exchange, 200, MIMETYPE_PAYMENTACK, PAYMENT_ACK);
+			}
+		});
+		server.createContext("/missing", new HttpHandler()
+		{
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException
+			{
+				record(exchange);
+				respond(exchange, 404, "text/plain", "not here".getBytes("UTF-8"));
+			}
+		});
+		server.createContext("/huge", new HttpHandler()
+		{
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException
+			{
+				record(exchange);
+				respond(exchange, 200, MIMETYPE_PAYMENTREQUEST, new byte[PaymentProtocolClient.MAX_RESPONSE_SIZE + 1]);
+			}
+		});
+		server.start();
+
+		baseUrl = "http://localhost:" + server.getAddress().getPort();
+		client = new PaymentProtocolClient("test", 5000);
+	}
+
+	@After
+	public void tearDown()
+	{
+		server.stop(0);
+	}
+
+	@Test
+	public void requestThenPay() throws Exception
+	{
+		final PaymentProtocolClient.Response request = client.get(baseUrl + "/request", MIMETYPE_PAYMENTREQUEST);
+		assertEquals(200, request.code);
+		assertEquals(MIMETYPE_PAYMENTREQUEST, request.contentType);
+		assertArrayEquals(PAYMENT_REQUEST, request.body);
+
+		final byte[] payment = new byte[] { 6, 7, 8, 9 };
+		final PaymentProtocolClient.Response ack = client.post(baseUrl + "/pay", MIMETYPE_PAYMENT, payment, MIMETYPE_PAYMENTACK);
+		assertEquals(200, ack.code);
+		assertArrayEquals(PAYMENT_ACK, ack.body);
+		assertArrayEquals(payment, receivedPayment);
+
+		// the payment went over the connection of the payment request
+		assertEquals(2, clientPorts.size());
+		assertEquals(clientPorts.get(0), clientPorts.get(1));
+
+		assertNotNull(client.getTimings("localhost"));
+	}
+
+	@Test
+	public void httpError() throws Exception
+	{
+		final PaymentProtocolClient.Response response = client.get(baseUrl + "/missing", MIMETYPE_PAYMENTREQUEST);
+		assertEquals(404, response.code);
+		assertNull(response.body);
+
+		// connection is still usable
+		assertEquals(200, client.get(baseUrl + "/request", MIMETYPE_PAYMENTREQUEST).code);
+		assertEquals(clientPorts.get(0), clientPorts.get(1));
+	}
+
+	@Test(expected = IOException.class)
+	public void tooLarge() throws Exception
+	{
+		client.get(baseUrl + "/huge", MIMETYPE_PAYMENTREQUEST);
+	}
+
+	private synchronized void record(final HttpExchange exchange)
+	{
+		clientPorts.add(exchange.getRemoteAddress().getPort());
+	}
+
+	private static void respond(final HttpExchange exchange, final int code, final String contentType, final byte[] body) throws IOException
+	{
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(code, body.length);
+		final OutputStream os = exchange.getResponseBody();
+		os.write(body);
+		os.close();
+	}
+
+	private static byte[] read(final InputStream is) throws IOException
+	{
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[256];
+		int n;
+		while (-1 != (n = is.read(buffer)))
+			os.write(buffer, 0, n);
+		is.close();
+		return os.toByteArray();
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.leafcoin.core.NetworkParameters;
+
+import android.app.AlarmManager;
+import android.text.format.DateUtils;
+import in.leafco.wallet.service.AutosyncScheduler.Failure;
+import in.leafco.wallet.service.AutosyncScheduler.SyncResult;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class AutosyncSchedulerTest
+{
+	private long now;
+	private long lastUsed;
+	private int failures;
+	private boolean pendingIncoming;
+	private float syncBlocksPerSecond;
+	private boolean willSync;
+
+	@Before
+	public void setUp()
+	{
+		now = 1400000000000l;
+		lastUsed = now;
+		failures = 0;
+		pendingIncoming = false;
+		syncBlocksPerSecond = 0;
+		willSync = true;
+	}
+
+	@Test
+	public void lastUsed() throws Exception
+	{
+		assertEquals(AlarmManager.INTERVAL_FIFTEEN_MINUTES, nextInterval());
+
+		now += 2 * DateUtils.HOUR_IN_MILLIS;
+		assertEquals(AlarmManager.INTERVAL_HALF_DAY, nextInterval());
+
+		now += 3 * DateUtils.DAY_IN_MILLIS;
+		assertEquals(AlarmManager.INTERVAL_DAY, nextInterval());
+	}
+
+	@Test
+	public void pendingIncoming() throws Exception
+	{
+		now += 3 * DateUtils.DAY_IN_MILLIS;
+
+		record(new SyncResult(100, DateUtils.MINUTE_IN_MILLIS, Failure.NONE, true));
+		assertEquals(AutosyncScheduler.INTERVAL_PENDING_INCOMING_MS, nextInterval());
+
+		record(new SyncResult(1, DateUtils.MINUTE_IN_MILLIS, Failure.NONE, false));
+		assertEquals(AlarmManager.INTERVAL_DAY, nextInterval());
+	}
+
+	@Test
+	public void backoff() throws Exception
+	{
+		now += 3 * DateUtils.DAY_IN_MILLIS;
+
+		long previousInterval = 0;
+		for (int i = 0; i < 20; i++)
+		{
+			record(new SyncResult(0, DateUtils.MINUTE_IN_MILLIS, Failure.NETWORK_PROBLEM, false));
+			final long interval = nextInterval();
+
+			assertTrue(interval >= previousInterval);
+			assertTrue(interval <= AlarmManager.INTERVAL_DAY);
+			if (previousInterval > 0 && interval < AlarmManager.INTERVAL_DAY)
+				assertEquals(previousInterval * 2, interval);
+
+			previousInterval = interval;
+			now += interval;
+		}
+		assertEquals(AlarmManager.INTERVAL_DAY, previousInterval);
+
+		// success resets backoff
+		record(new SyncResult(500, DateUtils.MINUTE_IN_MILLIS, Failure.NONE, false));
+		assertEquals(0, failures);
+		assertEquals(AlarmManager.INTERVAL_DAY, nextInterval());
+	}
+
+	@Test
+	public void firstRetry() throws Exception
+	{
+		now += 3 * DateUtils.DAY_IN_MILLIS;
+
+		record(new SyncResult(0, DateUtils.MINUTE_IN_MILLIS, Failure.NO_PROGRESS, false));
+		assertEquals(AutosyncScheduler.INTERVAL_RETRY_MIN_MS, nextInterval());
+	}
+
+	@Test
+	public void backoffNeverExceedsRegularInterval() throws Exception
+	{
+		for (int i = 0; i < 100; i++)
+			record(new SyncResult(0, 0, Failure.STORAGE_PROBLEM, false));
+
+		assertEquals(AlarmManager.INTERVAL_FIFTEEN_MINUTES, nextInterval());
+	}
+
+	@Test
+	public void backoffWithPendingIncoming() throws Exception
+	{
+		now += 3 * DateUtils.DAY_IN_MILLIS;
+
+		for (int i = 0; i < 10; i++)
+			record(new SyncResult(0, 0, Failure.NETWORK_PROBLEM, true));
+
+		assertEquals(AutosyncScheduler.INTERVAL_PENDING_INCOMING_MS, nextInterval());
+	}
+
+	@Test
+	public void skippedSyncDoesNotRetryEarly() throws Exception
+	{
+		now += 3 * DateUtils.DAY_IN_MILLIS;
+
+		record(new SyncResult(0, DateUtils.MINUTE_IN_MILLIS, Failure.NETWORK_PROBLEM, true));
+		assertEquals(AutosyncScheduler.INTERVAL_RETRY_MIN_MS, nextInterval());
+
+		// autosync off, booting, no wifi or no power: the alarm only rechecks, so don't fire every few minutes
+		willSync = false;
+		for (int i = 0; i < 10; i++)
+		{
+			final long interval = nextInterval();
+			assertEquals(AlarmManager.INTERVAL_DAY, interval);
+			now += interval;
+		}
+
+		// once a sync runs again, the backoff continues where it left off
+		willSync = true;
+		assertEquals(1, failures);
+		record(new SyncResult(0, DateUtils.MINUTE_IN_MILLIS, Failure.NETWORK_PROBLEM, false));
+		assertEquals(AutosyncScheduler.INTERVAL_RETRY_MIN_MS * 2, nextInterval());
+	}
+
+	@Test
+	public void skippedSyncIsNotAFailure() throws Exception
+	{
+		now += 3 * DateUtils.DAY_IN_MILLIS;
+
+		record(new SyncResult(0, 0, Failure.SKIPPED, false));
+		assertEquals(0, failures);
+		assertEquals(AlarmManager.INTERVAL_DAY, nextInterval());
+
+		record(new SyncResult(0, DateUtils.MINUTE_IN_MILLIS, Failure.NO_PROGRESS, false));
+		record(new SyncResult(0, DateUtils.MINUTE_IN_MILLIS, Failure.NO_PROGRESS, false));
+		assertEquals(2, failures);
+
+		// neither counts nor resets
+		record(new SyncResult(0, 0, Failure.SKIPPED, false));
+		assertEquals(2, failures);
+		assertEquals(AutosyncScheduler.INTERVAL_RETRY_MIN_MS * 2, nextInterval());
+	}
+
+	@Test
+	public void slowSyncsSyncMoreOften() throws Exception
+	{
+		now += 3 * DateUtils.DAY_IN_MILLIS;
+
+		// fast enough to catch up a day of blocks
+		syncBlocksPerSecond = 1000000;
+		assertEquals(AlarmManager.INTERVAL_DAY, nextInterval());
+
+		long previousInterval = AlarmManager.INTERVAL_DAY;
+		for (float blocksPerSecond = 1; blocksPerSecond > 0.0001f; blocksPerSecond /= 2)
+		{
+			syncBlocksPerSecond = blocksPerSecond;
+			final long interval = nextInterval();
+			assertTrue(interval <= previousInterval);
+			assertTrue(interval >= AlarmManager.INTERVAL_FIFTEEN_MINUTES);
+			previousInterval = interval;
+		}
+
+		// two hours worth of blocks take exactly the catch up time
+		syncBlocksPerSecond = (float) (2 * DateUtils.HOUR_IN_MILLIS / (double) (NetworkParameters.TARGET_SPACING * DateUtils.SECOND_IN_MILLIS)
+				/ (AutosyncScheduler.MAX_CATCH_UP_MS / DateUtils.SECOND_IN_MILLIS));
+		assertEquals(2 * DateUtils.HOUR_IN_MILLIS, nextInterval(), DateUtils.SECOND_IN_MILLIS);
+
+		// never more often than the most frequent regular interval
+		syncBlocksPerSecond = 0.000001f;
+		assertEquals(AlarmManager.INTERVAL_FIFTEEN_MINUTES, nextInterval());
+
+		// unknown rate
+		syncBlocksPerSecond = 0;
+		assertEquals(AlarmManager.INTERVAL_DAY, nextInterval());
+	}
+
+	private void record(final SyncResult result)
+	{
+		failures = AutosyncScheduler.consecutiveFailures(failures, result);
+		pendingIncoming = result.pendingIncoming;
+	}
+
+	private long nextInterval()
+	{
+		return AutosyncScheduler.nextIntervalMs(now, lastUsed, failures, pendingIncoming, syncBlocksPerSecond, willSync);
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class BlockchainStallDetectorTest
+{
+	private static final long WINDOW_MS = 60000;
+	private static final long CHECK_INTERVAL_MS = 10000;
+
+	private BlockchainStallDetector detector;
+	private long now;
+
+	@Before
+	public void setUp()
+	{
+		detector = new BlockchainStallDetector(WINDOW_MS, 10);
+		now = 1000000;
+	}
+
+	@Test
+	public void steadyDownload() throws Exception
+	{
+		detector.reset(1000, now);
+
+		// peer delivers 5 blocks per check, 30 per window
+		for (int height = 1005; height <= 1300; height += 5)
+			assertFalse(check(height, 2000));
+	}
+
+	@Test
+	public void stalledPeer() throws Exception
+	{
+		detector.reset(1000, now);
+
+		boolean stalled = false;
+		for (int i = 0; i < 6; i++)
+			stalled |= check(1001, 2000);
+
+		assertTrue(stalled);
+	}
+
+	@Test
+	public void stallAfterPeerSwitch() throws Exception
+	{
+		detector.reset(1000, now);
+
+		// first peer delivers, then stops
+		assertFalse(check(1050, 2000));
+		assertFalse(check(1100, 2000));
+		int checks = 0;
+		while (!check(1100, 2000))
+			checks++;
+		assertTrue(checks * CHECK_INTERVAL_MS <= 2 * WINDOW_MS);
+
+		// next peer picks up from where the first one stopped
+		detector.reset(1100, now);
+		for (int height = 1110; height <= 1400; height += 10)
+			assertFalse(check(height, 2000));
+	}
+
+	@Test
+	public void caughtUp() throws Exception
+	{
+		detector.reset(2000, now);
+
+		// no blocks being mined is not a stall
+		for (int i = 0; i < 20; i++)
+			assertFalse(check(2000, 2000));
+	}
+
+	@Test
+	public void almostCaughtUp() throws Exception
+	{
+		detector.reset(1995, now);
+
+		// only five blocks missing, less than the minimum per window but all of them arrive
+		assertFalse(check(1995, 2000));
+		assertFalse(check(1995, 2000));
+		assertFalse(check(1996, 2000));
+		assertFalse(check(1998, 2000));
+		assertFalse(check(1998, 2000));
+		assertFalse(check(2000, 2000));
+	}
+
+	@Test
+	public void peersHeightUnknown() throws Exception
+	{
+		detector.reset(1000, now);
+
+		for (int i = 0; i < 20; i++)
+			assertFalse(check(1000, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void badWindow() throws Exception
+	{
+		new BlockchainStallDetector(0, 10);
+	}
+
+	private boolean check(final int chainHeight, final int peersHeight)
+	{
+		now += CHECK_INTERVAL_MS;
+		return detector.check(chainHeight, peersHeight, now);
+	}
+}
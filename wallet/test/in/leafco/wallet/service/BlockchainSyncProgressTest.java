@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.service;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class BlockchainSyncProgressTest
+{
+	@Test
+	public void percent() throws Exception
+	{
+		final BlockchainSyncProgress progress = new BlockchainSyncProgress(0);
+		assertEquals(-1, progress.getPercent());
+
+		progress.onBlocksDownloaded(1000, 1000, 0);
+		assertEquals(0, progress.getPercent());
+
+		progress.onBlocksDownloaded(1500, 500, 500);
+		assertEquals(50, progress.getPercent());
+
+		progress.onBlocksDownloaded(2000, 0, 1000);
+		assertEquals(100, progress.getPercent());
+	}
+
+	@Test
+	public void etaFromHistoricalRate() throws Exception
+	{
+		final BlockchainSyncProgress progress = new BlockchainSyncProgress(10);
+		assertEquals(-1, progress.getEtaMs());
+
+		progress.onBlocksDownloaded(1000, 1000, 0);
+		assertEquals(100000, progress.getEtaMs());
+	}
+
+	@Test
+	public void etaFollowsMovingAverage() throws Exception
+	{
+		final BlockchainSyncProgress progress = new BlockchainSyncProgress(10);
+		progress.onBlocksDownloaded(1000, 1000, 0);
+
+		// no new sample within the sample interval
+		progress.onBlocksDownloaded(1010, 990, 500);
+		assertEquals(99000, progress.getEtaMs());
+
+		// 20 blocks/s, weighed in with 0.2: 12 blocks/s
+		progress.onBlocksDownloaded(1020, 980, 1000);
+		assertEquals(81667, progress.getEtaMs(), 1);
+
+		// idling pulls the average down
+		progress.onBlocksDownloaded(1020, 980, 2000);
+		assertEquals(102083, progress.getEtaMs(), 1);
+
+		progress.onBlocksDownloaded(2000, 0, 3000);
+		assertEquals(0, progress.getEtaMs());
+	}
+
+	@Test
+	public void etaUnknownWithoutRate() throws Exception
+	{
+		final BlockchainSyncProgress progress = new BlockchainSyncProgress(0);
+		progress.onBlocksDownloaded(1000, 1000, 0);
+		assertEquals(-1, progress.getEtaMs());
+
+		// first sample is taken as is
+		progress.onBlocksDownloaded(1050, 950, 1000);
+		assertEquals(19000, progress.getEtaMs());
+	}
+
+	@Test
+	public void averageExcludesIdleTime() throws Exception
+	{
+		final BlockchainSyncProgress progress = new BlockchainSyncProgress(10);
+		progress.onBlocksDownloaded(1000, 1000, 0);
+		assertEquals(0, progress.getAverageBlocksPerSecond(), 0);
+
+		progress.onBlocksDownloaded(1020, 980, 1000);
+		progress.onBlocksDownloaded(1020, 980, 2000);
+		progress.onBlocksDownloaded(1030, 970, 3000);
+		assertEquals(15, progress.getAverageBlocksPerSecond(), 0.001);
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import in.leafco.wallet.service.BroadcastQueue.Entry;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class BroadcastQueueTest
+{
+	private static final long INITIAL_BACKOFF_MS = 10000;
+	private static final long MAX_BACKOFF_MS = 60000;
+	private static final long MAX_AGE_MS = 3600000;
+
+	private BroadcastQueue queue;
+	private long now;
+
+	@Before
+	public void setUp()
+	{
+		queue = new BroadcastQueue(INITIAL_BACKOFF_MS, MAX_BACKOFF_MS, MAX_AGE_MS);
+		now = 1400000000000l;
+	}
+
+	@Test
+	public void backoff() throws Exception
+	{
+		assertTrue(queue.add("a", new byte[] { 1 }, now));
+		assertEquals(1, queue.takeDue(now).size());
+		assertEquals(0, queue.takeDue(now).size());
+
+		// 10s, 20s, 40s, then capped at 60s
+		assertEquals(now + 10000, queue.nextAttemptAt());
+		now = queue.nextAttemptAt();
+		assertEquals(1, queue.takeDue(now).size());
+		assertEquals(now + 20000, queue.nextAttemptAt());
+		now = queue.nextAttemptAt();
+		assertEquals(1, queue.takeDue(now).size());
+		assertEquals(now + 40000, queue.nextAttemptAt());
+		now = queue.nextAttemptAt();
+		final List<Entry> due = queue.takeDue(now);
+		assertEquals(4, due.get(0).getAttempts());
+		assertEquals(now + 60000, queue.nextAttemptAt());
+	}
+
+	@Test
+	public void addAgainMakesDue() throws Exception
+	{
+		queue.add("a", new byte[] { 1 }, now);
+		queue.takeDue(now);
+
+		now += 1000;
+		assertFalse(queue.add("a", new byte[] { 1 }, now));
+		assertEquals(1, queue.takeDue(now).size());
+	}
+
+	@Test
+	public void removeAndExpire() throws Exception
+	{
+		queue.add("a", new byte[] { 1 }, now);
+		queue.add("b", new byte[] { 2 }, now + MAX_AGE_MS / 2);
+		assertTrue(queue.remove("a"));
+		assertFalse(queue.remove("a"));
+		assertEquals(1, queue.size());
+
+		now += 2 * MAX_AGE_MS;
+		assertEquals(0, queue.takeDue(now).size());
+		assertTrue(queue.isEmpty());
+		assertEquals(Long.MAX_VALUE, queue.nextAttemptAt());
+	}
+
+	@Test
+	public void persist() throws Exception
+	{
+		queue.add("a", new byte[] { 1, 2, 3 }, now);
+		queue.add("b", new byte[] { 4 }, now);
+		queue.takeDue(now);
+
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		queue.write(os);
+
+		// entries are due right away after reading
+		now += 1000;
+		final BroadcastQueue restored = new BroadcastQueue(INITIAL_BACKOFF_MS, MAX_BACKOFF_MS, MAX_AGE_MS);
+		restored.read(new ByteArrayInputStream(os.toByteArray()), now);
+		final List<Entry> due = restored.takeDue(now);
+		assertEquals(2, due.size());
+		assertEquals("a", due.get(0).hash);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, due.get(0).tx);
+		assertEquals(2, due.get(0).getAttempts());
+		assertEquals(now - 1000, due.get(0).queuedAt);
+	}
+
+	@Test(expected = IOException.class)
+	public void corrupt() throws Exception
+	{
+		queue.read(new ByteArrayInputStream(new byte[] { 0, 0, 0, 1, 0, 0, 0, 1, 0, 1, 'a', 0, 0 }), now);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.leafcoin.core.NetworkParameters;
+import com.google.leafcoin.core.Peer;
+import com.google.leafcoin.core.PeerAddress;
+import com.google.leafcoin.core.VersionMessage;
+import com.google.leafcoin.params.MainNetParams;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class PeerConnectionPolicyTest
+{
+	private static final NetworkParameters PARAMS = MainNetParams.get();
+
+	private PeerConnectionPolicy policy;
+	private List<Peer> peers;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		policy = new PeerConnectionPolicy(6);
+
+		peers = new ArrayList<Peer>();
+		for (int i = 0; i < 6; i++)
+			peers.add(new Peer(PARAMS, new VersionMessage(PARAMS, 0), null, new PeerAddress(InetAddress.getByAddress(new byte[] { 10, 0, 0,
+					(byte) i }), PARAMS.getPort())));
+	}
+
+	@Test
+	public void maxConnections() throws Exception
+	{
+		assertEquals(8, policy.maxConnections(true, false));
+		assertEquals(8, policy.maxConnections(true, true));
+		assertEquals(6, policy.maxConnections(false, true));
+		assertEquals(3, policy.maxConnections(false, false));
+
+		assertEquals(2, new PeerConnectionPolicy(2).maxConnections(false, false));
+	}
+
+	@Test
+	public void dropsLeastUseful() throws Exception
+	{
+		useful(peers.get(0), 5);
+		useful(peers.get(1), 1);
+		useful(peers.get(3), 3);
+		useful(peers.get(4), 4);
+		useful(peers.get(5), 2);
+
+		// peer 2 is the least useful, but it's the download peer
+		final List<Peer> drop = policy.peersToDrop(peers, peers.get(2), 3);
+		assertEquals(3, drop.size());
+		assertTrue(drop.containsAll(Arrays.asList(peers.get(1), peers.get(5), peers.get(3))));
+	}
+
+	@Test
+	public void countersResetAfterDecision() throws Exception
+	{
+		useful(peers.get(0), 10);
+		policy.peersToDrop(peers, null, 6);
+
+		useful(peers.get(1), 1);
+		for (int i = 2; i < 6; i++)
+			useful(peers.get(i), 2);
+
+		// peer 0 was useful before the last decision only
+		assertEquals(Arrays.asList(peers.get(0)), policy.peersToDrop(peers, null, 5));
+	}
+
+	@Test
+	public void limitAppliedOncePickedPeersAreGone() throws Exception
+	{
+		final List<Peer> drop = policy.peersToDrop(peers, null, 4);
+		assertEquals(2, drop.size());
+		assertEquals(4, policy.getPendingMaxConnections());
+
+		final List<Peer> others = new ArrayList<Peer>(peers);
+		others.removeAll(drop);
+
+		// unrelated disconnects don't apply the limit
+		assertEquals(0, policy.onPeerDisconnected(others.get(0)));
+		assertEquals(0, policy.onPeerDisconnected(drop.get(0)));
+		assertEquals(4, policy.onPeerDisconnected(drop.get(1)));
+		assertEquals(0, policy.getPendingMaxConnections());
+	}
+
+	@Test
+	public void lowerAgainWhileDropping() throws Exception
+	{
+		final List<Peer> drop1 = policy.peersToDrop(peers, null, 5);
+		assertEquals(1, drop1.size());
+
+		// the peer on its way out still shows as connected, but isn't picked or counted again
+		final List<Peer> drop2 = policy.peersToDrop(peers, null, 3);
+		assertEquals(2, drop2.size());
+		assertFalse(drop2.contains(drop1.get(0)));
+		assertEquals(3, policy.getPendingMaxConnections());
+
+		assertEquals(0, policy.onPeerDisconnected(drop1.get(0)));
+		assertEquals(0, policy.onPeerDisconnected(drop2.get(0)));
+		assertEquals(3, policy.onPeerDisconnected(drop2.get(1)));
+	}
+
+	@Test
+	public void nothingToDrop() throws Exception
+	{
+		assertTrue(policy.peersToDrop(peers.subList(0, 3), null, 4).isEmpty());
+		assertEquals(0, policy.getPendingMaxConnections());
+	}
+
+	@Test
+	public void cancelDrop() throws Exception
+	{
+		final List<Peer> drop = policy.peersToDrop(peers, null, 5);
+		policy.cancelDrop();
+
+		assertEquals(0, policy.getPendingMaxConnections());
+		assertEquals(0, policy.onPeerDisconnected(drop.get(0)));
+	}
+
+	private void useful(final Peer peer, final int times)
+	{
+		for (int i = 0; i < times; i++)
+			policy.onPeerUseful(peer);
+	}
+}
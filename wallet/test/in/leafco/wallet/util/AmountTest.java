@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class AmountTest
+{
+	@Test
+	public void valueOf() throws Exception
+	{
+		assertSame(Amount.ZERO, Amount.valueOf(0));
+		assertSame(Amount.ZERO, Amount.valueOf(BigInteger.ZERO));
+		assertEquals(Amount.valueOf(Long.MAX_VALUE), Amount.valueOf(BigInteger.valueOf(Long.MAX_VALUE)));
+		assertEquals(Amount.valueOf(Long.MIN_VALUE), Amount.valueOf(BigInteger.valueOf(Long.MIN_VALUE)));
+		assertEquals(BigInteger.valueOf(-12345), Amount.valueOf(-12345).toBigInteger());
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void valueOfTooLarge() throws Exception
+	{
+		Amount.valueOf(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE));
+	}
+
+	@Test
+	public void arithmetic() throws Exception
+	{
+		assertEquals(Amount.valueOf(150000000), Amount.valueOf(100000000).add(Amount.valueOf(50000000)));
+		assertEquals(Amount.valueOf(-50000000), Amount.valueOf(50000000).subtract(Amount.valueOf(100000000)));
+		assertEquals(Amount.valueOf(-1), Amount.valueOf(1).negate());
+		assertEquals(-1, Amount.valueOf(-1).signum());
+		assertEquals(0, Amount.ZERO.signum());
+		assertEquals(1, Amount.valueOf(1).compareTo(Amount.ZERO));
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void addOverflow() throws Exception
+	{
+		Amount.add(Long.MAX_VALUE, 1);
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void negateOverflow() throws Exception
+	{
+		Amount.valueOf(Long.MIN_VALUE).negate();
+	}
+
+	@Test
+	public void multiplyDivide() throws Exception
+	{
+		// large intermediate result, falls back to BigInteger
+		assertEquals(Long.MAX_VALUE / 3 * 2, Amount.multiplyDivide(Long.MAX_VALUE / 3, 200000000, 100000000));
+
+		final Random random = new Random(0);
+		for (int i = 0; i < 100000; i++)
+		{
+			final long value = random.nextLong() >> random.nextInt(64);
+			final long multiplier = random.nextLong() >> random.nextInt(64);
+			final long divisor = (random.nextLong() >> random.nextInt(64)) | 1;
+
+			final BigInteger expected = BigInteger.valueOf(value).multiply(BigInteger.valueOf(multiplier)).divide(BigInteger.valueOf(divisor));
+			if (expected.bitLength() < 64)
+				assertEquals(expected.longValue(), Amount.multiplyDivide(value, multiplier, divisor));
+		}
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void multiplyDivideOverflow() throws Exception
+	{
+		Amount.multiplyDivide(Long.MAX_VALUE, 2, 1);
+	}
+
+	@Test
+	public void convertAtTinyRate() throws Exception
+	{
+		// Leafcoin rates are a few hundred nanocoins per unit of local currency
+		final long one = 100000000;
+		final long rate = 300;
+
+		// local to nanocoins
+		assertEquals(Amount.valueOf(one * one / rate), Amount.valueOf(one).multiplyDivide(one, rate));
+		assertEquals(Amount.valueOf(100 * one * one / rate), Amount.valueOf(100 * one).multiplyDivide(one, rate));
+		assertNull(Amount.valueOf(1000000 * one).multiplyDivide(one, rate));
+		assertNull(Amount.valueOf(100000 * one).multiplyDivide(one, 100));
+		assertNull(Amount.valueOf(-1000000 * one).multiplyDivide(one, rate));
+
+		// nanocoins to local
+		assertEquals(Amount.valueOf(rate), Amount.valueOf(one).multiplyDivide(rate, one));
+		assertEquals(Amount.valueOf(Long.MAX_VALUE / one * rate), Amount.valueOf(Long.MAX_VALUE / one * one).multiplyDivide(rate, one));
+		assertNull(Amount.valueOf(Long.MAX_VALUE).multiplyDivide(2 * one, one));
+	}
+}
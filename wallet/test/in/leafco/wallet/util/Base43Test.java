@@ -20,6 +20,9 @@ package in.leafco.wallet.util;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.nio.charset.Charset;
+import java.util.Random;
+
 import org.junit.Test;
 
 /**
@@ -50,4 +53,146 @@ public class Base43Test
 
 		assertArrayEquals("Hello World".getBytes(), Base43.decode("RNO2-MYFN0D35RHM"));
 	}
+
+	@Test
+	public void leadingZeroes() throws Exception
+	{
+		assertEquals("000", Base43.encode(new byte[3]));
+		assertArrayEquals(new byte[3], Base43.decode("000"));
+
+		assertEquals("005.", Base43.encode(new byte[] { 0x0, 0x0, (byte) 0xff }));
+		assertArrayEquals(new byte[] { 0x0, 0x0, (byte) 0xff }, Base43.decode("005."));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void decodeIllegalCharacter() throws Exception
+	{
+		Base43.decode("RNO2-MYFN0D35RHm");
+	}
+
+	@Test
+	public void equivalence() throws Exception
+	{
+		final Random random = new Random(0);
+		for (int i = 0; i < 2000; i++)
+		{
+			final byte[] bytes = new byte[random.nextInt(300)];
+			random.nextBytes(bytes);
+			// exercise leading zeroes and limb boundaries
+			for (int z = random.nextInt(6); z > 0 && z <= bytes.length; z--)
+				bytes[z - 1] = 0;
+
+			final String encoded = Base43.encode(bytes);
+			assertEquals(referenceEncode(bytes), encoded);
+			assertArrayEquals(bytes, Base43.decode(encoded));
+		}
+
+		final String alphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ$*+-./:";
+		for (int i = 0; i < 2000; i++)
+		{
+			final StringBuilder str = new StringBuilder();
+			for (int n = random.nextInt(300); n > 0; n--)
+				str.append(alphabet.charAt(random.nextInt(random.nextBoolean() ? alphabet.length() : 2)));
+
+			assertArrayEquals(referenceDecode(str.toString()), Base43.decode(str.toString()));
+		}
+	}
+
+	@Test
+	public void largeRoundTrip() throws Exception
+	{
+		final Random random = new Random(1);
+		final byte[] bytes = new byte[4096];
+		random.nextBytes(bytes);
+
+		final String encoded = Base43.encode(bytes);
+		assertEquals(referenceEncode(bytes), encoded);
+		assertArrayEquals(bytes, Base43.decode(encoded));
+	}
+
+	// the previous, quadratic implementation
+
+	private static final char[] REFERENCE_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ$*+-./:".toCharArray();
+
+	private static String referenceEncode(byte[] input)
+	{
+		if (input.length == 0)
+			return "";
+
+		input = copyOfRange(input, 0, input.length);
+
+		int zeroCount = 0;
+		while (zeroCount < input.length && input[zeroCount] == 0)
+			++zeroCount;
+
+		final byte[] temp = new byte[input.length * 2];
+		int j = temp.length;
+
+		int startAt = zeroCount;
+		while (startAt < input.length)
+		{
+			int remainder = 0;
+			for (int i = startAt; i < input.length; i++)
+			{
+				final int t = remainder * 256 + (input[i] & 0xFF);
+				input[i] = (byte) (t / 43);
+				remainder = t % 43;
+			}
+			if (input[startAt] == 0)
+				++startAt;
+			temp[--j] = (byte) REFERENCE_ALPHABET[remainder];
+		}
+
+		while (j < temp.length && temp[j] == REFERENCE_ALPHABET[0])
+			++j;
+
+		while (--zeroCount >= 0)
+			temp[--j] = (byte) REFERENCE_ALPHABET[0];
+
+		return new String(copyOfRange(temp, j, temp.length), Charset.forName("US-ASCII"));
+	}
+
+	private static byte[] referenceDecode(final String input)
+	{
+		if (input.length() == 0)
+			return new byte[0];
+
+		final byte[] input43 = new byte[input.length()];
+		for (int i = 0; i < input.length(); ++i)
+			input43[i] = (byte) new String(REFERENCE_ALPHABET).indexOf(input.charAt(i));
+
+		int zeroCount = 0;
+		while (zeroCount < input43.length && input43[zeroCount] == 0)
+			++zeroCount;
+
+		final byte[] temp = new byte[input.length()];
+		int j = temp.length;
+
+		int startAt = zeroCount;
+		while (startAt < input43.length)
+		{
+			int remainder = 0;
+			for (int i = startAt; i < input43.length; i++)
+			{
+				final int t = remainder * 43 + (input43[i] & 0xFF);
+				input43[i] = (byte) (t / 256);
+				remainder = t % 256;
+			}
+			if (input43[startAt] == 0)
+				++startAt;
+			temp[--j] = (byte) remainder;
+		}
+
+		while (j < temp.length && temp[j] == 0)
+			++j;
+
+		return copyOfRange(temp, j - zeroCount, temp.length);
+	}
+
+	private static byte[] copyOfRange(final byte[] source, final int from, final int to)
+	{
+		final byte[] range = new byte[to - from];
+		System.arraycopy(source, from, range, 0, range.length);
+		return range;
+	}
 }
@@ -18,8 +18,12 @@
 package in.leafco.wallet.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Locale;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -77,4 +81,254 @@ public class GenericUtilsTest
 
 		assertEquals("100000000000000.00", GenericUtils.formatValue(NetworkParameters.MAX_MONEY, 5, 3));
 	}
+
+	@Test
+	public void formatNegativeValue() throws Exception
+	{
+		assertEquals("-1.00", GenericUtils.formatValue(-100000000l, 4, 0));
+		assertEquals("-0.99999999", GenericUtils.formatValue(-99999999l, 8, 0));
+		assertEquals("-1.00", GenericUtils.formatValue(-100005000l, 4, 0));
+		assertEquals("-1.0001", GenericUtils.formatValue(-100005001l, 4, 0));
+		assertEquals("-0.00", GenericUtils.formatValue(-1l, 2, 0));
+		assertEquals("- 1000.00", GenericUtils.formatValue(-100000000l, "+ ", "- ", 2, 3));
+		assertEquals("+ 0.00", GenericUtils.formatValue(0l, "+ ", "- ", 2, 3));
+	}
+
+	@Test
+	public void formatValueIntoBuilder() throws Exception
+	{
+		final StringBuilder builder = new StringBuilder("LEAF ");
+		GenericUtils.formatValue(builder, 150000000l, "", "-", 4, 0);
+		assertEquals("LEAF 1.50", builder.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void formatValueBadPrecision() throws Exception
+	{
+		GenericUtils.formatValue(1l, 3, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void formatValueBadShift() throws Exception
+	{
+		GenericUtils.formatValue(1l, 2, 6);
+	}
+
+	@Test
+	public void formatValueEquivalence() throws Exception
+	{
+		final int[][] precisionsAndShifts = { { 2, 0 }, { 4, 0 }, { 6, 0 }, { 8, 0 }, { 2, 3 }, { 4, 3 }, { 5, 3 } };
+		final long[] edgeValues = { 0, 1, -1, 4, 5, 6, 49, 50, 51, 499, 500, 501, 4999, 5000, 5001, 499999, 500000, 500001, 99999999,
+				100000000, 100000001, Long.MAX_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE, Long.MIN_VALUE + 1 };
+		final Random random = new Random(0);
+
+		for (final int[] precisionAndShift : precisionsAndShifts)
+		{
+			final int precision = precisionAndShift[0];
+			final int shift = precisionAndShift[1];
+
+			for (final long value : edgeValues)
+			{
+				assertFormatEquivalent(BigInteger.valueOf(value), precision, shift);
+				assertFormatEquivalent(BigInteger.valueOf(value).negate(), precision, shift);
+			}
+
+			for (int i = 0; i < 10000; i++)
+			{
+				// spread magnitudes evenly, so small values get as much coverage as large ones
+				final long value = random.nextLong() >> random.nextInt(64);
+				assertFormatEquivalent(BigInteger.valueOf(value), precision, shift);
+			}
+
+			assertFormatEquivalent(NetworkParameters.MAX_MONEY, precision, shift);
+			assertFormatEquivalent(NetworkParameters.MAX_MONEY.negate(), precision, shift);
+		}
+	}
+
+	private static void assertFormatEquivalent(final BigInteger value, final int precision, final int shift)
+	{
+		final String expected = referenceFormatValue(value, "+", "-", precision, shift);
+		assertEquals(value + " " + precision + "/" + shift, expected, GenericUtils.formatValue(value, "+", "-", precision, shift));
+
+		if (value.bitLength() < 64)
+			assertEquals(value + " " + precision + "/" + shift, expected, GenericUtils.formatValue(value.longValue(), "+", "-", precision, shift));
+	}
+
+	@Test
+	public void toNanoCoins() throws Exception
+	{
+		assertEquals(BigInteger.valueOf(100000000), GenericUtils.toNanoCoins("1", 0));
+		assertEquals(BigInteger.valueOf(150000000), GenericUtils.toNanoCoins("1.5", 0));
+		assertEquals(BigInteger.valueOf(150000000), GenericUtils.toNanoCoins("+1.50000000000", 0));
+		assertEquals(BigInteger.valueOf(50000000), GenericUtils.toNanoCoins(".5", 0));
+		assertEquals(BigInteger.valueOf(100000000), GenericUtils.toNanoCoins("1000", 3));
+		assertEquals(BigInteger.valueOf(1), GenericUtils.toNanoCoins("0.00001", 3));
+		assertEquals(BigInteger.ZERO, GenericUtils.toNanoCoins("-0", 0));
+		assertEquals(BigInteger.valueOf(100000000), GenericUtils.toNanoCoins("1e0", 0));
+		assertEquals(NetworkParameters.MAX_MONEY, GenericUtils.toNanoCoins(GenericUtils.formatValue(NetworkParameters.MAX_MONEY, 8, 0), 0));
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void toNanoCoinsNegative() throws Exception
+	{
+		GenericUtils.toNanoCoins("-1", 0);
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void toNanoCoinsTooPrecise() throws Exception
+	{
+		GenericUtils.toNanoCoins("0.000000001", 0);
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void toNanoCoinsTooLarge() throws Exception
+	{
+		GenericUtils.toNanoCoins(NetworkParameters.MAX_MONEY.toString(), 0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void toNanoCoinsMalformed() throws Exception
+	{
+		GenericUtils.toNanoCoins("1.2.3", 0);
+	}
+
+	@Test
+	public void toNanoCoinsEquivalence() throws Exception
+	{
+		final String[] edgeValues = { "", ".", "-", "+", "-.", "0", "00", "-0", "+0", "0.", ".0", "1.", "-1", "1.00000000", "1.000000000",
+				"1.000000001", "0.00000001", "-0.00000001", "-0.000000001", "9223372036.85477580", "92233720368.54775807",
+				"92233720368.54775808", "99999999999.99999999", "100000000000", "100000000000.00000001", "1e3", "1E-8", "1e-9", "1 ",
+				" 1", "1,5", "\u0661", "000000000000000000000000000001", "1..", "--1", "+-1" };
+		for (final String value : edgeValues)
+		{
+			assertToNanoCoinsEquivalent(value, 0);
+			assertToNanoCoinsEquivalent(value, 3);
+		}
+
+		final Random random = new Random(0);
+		final char[] alphabet = "0123456789.-+ ".toCharArray();
+		for (int i = 0; i < 20000; i++)
+		{
+			// mostly well formed numbers of all magnitudes and precisions
+			final StringBuilder value = new StringBuilder();
+			if (random.nextInt(4) == 0)
+				value.append(random.nextBoolean() ? '-' : '+');
+			value.append(Math.abs(random.nextLong() >> random.nextInt(64)));
+			if (random.nextBoolean())
+			{
+				value.append('.');
+				for (int digits = random.nextInt(12); digits > 0; digits--)
+					value.append((char) ('0' + random.nextInt(10)));
+			}
+			assertToNanoCoinsEquivalent(value.toString(), random.nextBoolean() ? 0 : 3);
+
+			// random garbage
+			final StringBuilder garbage = new StringBuilder();
+			for (int length = random.nextInt(10); length > 0; length--)
+				garbage.append(alphabet[random.nextInt(alphabet.length)]);
+			assertToNanoCoinsEquivalent(garbage.toString(), random.nextBoolean() ? 0 : 3);
+		}
+	}
+
+	private static void assertToNanoCoinsEquivalent(final String value, final int shift)
+	{
+		BigInteger expected = null;
+		Exception expectedException = null;
+		try
+		{
+			expected = referenceToNanoCoins(value, shift);
+		}
+		catch (final Exception x)
+		{
+			expectedException = x;
+		}
+
+		try
+		{
+			final BigInteger actual = GenericUtils.toNanoCoins(value, shift);
+			if (expectedException != null)
+				fail("'" + value + "' expected " + expectedException + " but was " + actual);
+			assertEquals("'" + value + "'", expected, actual);
+		}
+		catch (final Exception x)
+		{
+			if (expectedException == null)
+				fail("'" + value + "' expected " + expected + " but was " + x);
+			assertEquals("'" + value + "'", expectedException.getClass(), x.getClass());
+			if (x instanceof ArithmeticException)
+				assertEquals("'" + value + "'", expectedException.getMessage(), x.getMessage());
+		}
+	}
+
+	/**
+	 * The original BigDecimal based implementation, for checking equivalence.
+	 */
+	private static BigInteger referenceToNanoCoins(final String value, final int shift) throws ArithmeticException
+	{
+		final BigInteger nanoCoins = new BigDecimal(value).movePointRight(8 - shift).toBigIntegerExact();
+
+		if (nanoCoins.signum() < 0)
+			throw new ArithmeticException("negative amount: " + value);
+		if (nanoCoins.compareTo(NetworkParameters.MAX_MONEY) > 0)
+			throw new ArithmeticException("amount too large: " + value);
+
+		return nanoCoins;
+	}
+
+	/**
+	 * The original BigInteger based implementation, for checking equivalence.
+	 */
+	private static String referenceFormatValue(final BigInteger value, final String plusSign, final String minusSign, final int precision,
+			final int shift)
+	{
+		BigInteger newValue = value;
+
+		final String sign = value.signum() == -1 ? minusSign : plusSign;
+
+		if (shift == 0)
+		{
+			if (precision == 2)
+				newValue = value.subtract(value.mod(new BigInteger("1000000"))).add(
+						value.mod(new BigInteger("1000000")).divide(new BigInteger("500000")).multiply(new BigInteger("1000000")));
+			else if (precision == 4)
+				newValue = value.subtract(value.mod(new BigInteger("10000"))).add(
+						value.mod(new BigInteger("10000")).divide(new BigInteger("5000")).multiply(new BigInteger("10000")));
+			else if (precision == 6)
+				newValue = value.subtract(value.mod(new BigInteger("100"))).add(
+						value.mod(new BigInteger("100")).divide(new BigInteger("50")).multiply(new BigInteger("100")));
+
+			final BigInteger absValue = newValue.abs();
+			final long coins = absValue.divide(new BigInteger("100000000")).longValue();
+			final int satoshis = absValue.mod(new BigInteger("100000000")).intValue();
+
+			if (satoshis % 1000000 == 0)
+				return String.format(Locale.US, "%s%d.%02d", sign, coins, satoshis / 1000000);
+			else if (satoshis % 10000 == 0)
+				return String.format(Locale.US, "%s%d.%04d", sign, coins, satoshis / 10000);
+			else if (satoshis % 100 == 0)
+				return String.format(Locale.US, "%s%d.%06d", sign, coins, satoshis / 100);
+			else
+				return String.format(Locale.US, "%s%d.%08d", sign, coins, satoshis);
+		}
+		else
+		{
+			if (precision == 2)
+				newValue = value.subtract(value.mod(new BigInteger("1000"))).add(
+						value.mod(new BigInteger("1000")).divide(new BigInteger("500")).multiply(new BigInteger("1000")));
+			else if (precision == 4)
+				newValue = value.subtract(value.mod(new BigInteger("10"))).add(
+						value.mod(new BigInteger("10")).divide(new BigInteger("5")).multiply(new BigInteger("10")));
+
+			final BigInteger absValue = newValue.abs();
+			final long coins = absValue.divide(new BigInteger("100000")).longValue();
+			final int satoshis = absValue.mod(new BigInteger("100000")).intValue();
+
+			if (satoshis % 1000 == 0)
+				return String.format(Locale.US, "%s%d.%02d", sign, coins, satoshis / 1000);
+			else if (satoshis % 10 == 0)
+				return String.format(Locale.US, "%s%d.%04d", sign, coins, satoshis / 10);
+			else
+				return String.format(Locale.US, "%s%d.%05d", sign, coins, satoshis);
+		}
+	}
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class IoTest
+{
+	@Test
+	public void readFully() throws Exception
+	{
+		final byte[] bytes = new byte[3000];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) i;
+
+		assertArrayEquals(bytes, Io.readFully(new ByteArrayInputStream(bytes), bytes.length));
+		assertArrayEquals(new byte[0], Io.readFully(new ByteArrayInputStream(new byte[0]), 10));
+	}
+
+	@Test
+	public void readFullyTooLarge() throws Exception
+	{
+		final ByteArrayInputStream is = new ByteArrayInputStream(new byte[100000]);
+
+		try
+		{
+			Io.readFully(is, 3000);
+			fail();
+		}
+		catch (final IOException x)
+		{
+			// expected
+		}
+
+		// gave up right after the limit
+		assertEquals(100000 - 3001, is.available());
+	}
+}
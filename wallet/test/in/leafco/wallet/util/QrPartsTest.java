@@ -0,0 +1,180 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class QrPartsTest
+{
+	@Test
+	public void single() throws Exception
+	{
+		final String content = content(QrParts.MAX_SINGLE_LENGTH_ALPHANUMERIC);
+
+		assertEquals(Collections.singletonList(content), QrParts.split(content));
+		assertFalse(QrParts.isPart(content));
+	}
+
+	@Test
+	public void singleCodeCapacity() throws Exception
+	{
+		final String alphanumeric = content(QrParts.MAX_SINGLE_LENGTH_ALPHANUMERIC + 1);
+		assertEncodesAsSingle(alphanumeric.substring(1));
+		assertSplitBecauseTooBig(alphanumeric);
+
+		final String bytes = alphanumeric.toLowerCase(Locale.US).substring(0, QrParts.MAX_SINGLE_LENGTH_BYTES + 1);
+		assertEncodesAsSingle(bytes.substring(1));
+		assertSplitBecauseTooBig(bytes);
+	}
+
+	private static void assertEncodesAsSingle(final String content) throws Exception
+	{
+		assertEquals(Collections.singletonList(content), QrParts.split(content));
+		encode(content);
+	}
+
+	private static void assertSplitBecauseTooBig(final String content) throws Exception
+	{
+		try
+		{
+			encode(content);
+			fail();
+		}
+		catch (final WriterException x)
+		{
+			// too big for a single code
+		}
+
+		final List<String> parts = QrParts.split(content);
+		assertTrue(parts.size() > 1);
+		for (final String part : parts)
+			encode(part);
+	}
+
+	private static void encode(final String content) throws WriterException
+	{
+		final Hashtable<EncodeHintType, Object> hints = new Hashtable<EncodeHintType, Object>();
+		hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+		new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, 0, 0, hints);
+	}
+
+	@Test
+	public void roundTrip() throws Exception
+	{
+		final String content = content(3710);
+		final List<String> parts = new ArrayList<String>(QrParts.split(content));
+		assertEquals(8, parts.size());
+		for (final String part : parts)
+		{
+			assertTrue(QrParts.isPart(part));
+			assertTrue(part.length() <= QrParts.MAX_PART_LENGTH + 16);
+		}
+
+		// scanned out of order, with repetitions
+		Collections.shuffle(parts, new Random(0));
+		final QrParts.Assembler assembler = new QrParts.Assembler();
+		for (int i = 0; i < parts.size() - 1; i++)
+		{
+			assertNull(assembler.add(parts.get(i)));
+			assertNull(assembler.add(parts.get(i)));
+			assertEquals(i + 1, assembler.getReceived());
+			assertEquals(parts.size(), assembler.getTotal());
+		}
+		assertEquals(content, assembler.add(parts.get(parts.size() - 1)));
+	}
+
+	@Test
+	public void otherContentStartsOver() throws Exception
+	{
+		final List<String> parts1 = QrParts.split(content(5000));
+		final List<String> parts2 = QrParts.split(content(5001));
+
+		final QrParts.Assembler assembler = new QrParts.Assembler();
+		assertNull(assembler.add(parts1.get(0)));
+		assertNull(assembler.add(parts2.get(0)));
+		assertEquals(1, assembler.getReceived());
+	}
+
+	@Test
+	public void corruptPart() throws Exception
+	{
+		final List<String> parts = QrParts.split(content(5000));
+
+		final QrParts.Assembler assembler = new QrParts.Assembler();
+		for (int i = 0; i < parts.size() - 1; i++)
+			assembler.add(parts.get(i));
+		final String last = parts.get(parts.size() - 1);
+		assertNull(assembler.add(last.substring(0, last.length() - 1) + (last.endsWith("0") ? "1" : "0")));
+		assertEquals(0, assembler.getReceived());
+	}
+
+	@Test
+	public void outOfRangeIndex() throws Exception
+	{
+		assertTrue(QrParts.isPart("P1/1/00000000:x"));
+		assertTrue(QrParts.isPart("P2/2/00000000:x"));
+		assertFalse(QrParts.isPart("P0/1/00000000:x"));
+		assertFalse(QrParts.isPart("P3/2/00000000:x"));
+		assertFalse(QrParts.isPart("P0/0/00000000:x"));
+		assertFalse(QrParts.isPart("P1/0/00000000:x"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void addOutOfRangeIndex() throws Exception
+	{
+		new QrParts.Assembler().add("P3/2/00000000:x");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void tooLarge() throws Exception
+	{
+		QrParts.split(content(QrParts.MAX_PARTS * QrParts.MAX_PART_LENGTH + 1));
+	}
+
+	private static String content(final int length)
+	{
+		final String alphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ$*+-./:";
+		final Random random = new Random(length);
+		final StringBuilder content = new StringBuilder(length);
+		for (int i = 0; i < length; i++)
+			content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		return content.toString();
+	}
+}
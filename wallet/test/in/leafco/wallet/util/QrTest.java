@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package in.leafco.wallet.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class QrTest
+{
+	@Test
+	public void roundTrip() throws Exception
+	{
+		final Random random = new Random(0);
+		for (int i = 0; i < 200; i++)
+		{
+			final byte[] bytes = new byte[random.nextInt(2000)];
+			random.nextBytes(bytes);
+			// make part of it compressible
+			for (int j = random.nextInt(bytes.length + 1); j < bytes.length; j++)
+				bytes[j] = (byte) (j % 7);
+
+			assertArrayEquals(bytes, Qr.decodeDecompressBinary(Qr.encodeCompressBinary(bytes)));
+		}
+	}
+
+	@Test
+	public void incompressible() throws Exception
+	{
+		final byte[] bytes = new byte[200];
+		new Random(0).nextBytes(bytes);
+
+		assertEquals('-', Qr.encodeCompressBinary(bytes).charAt(0));
+	}
+
+	@Test
+	public void dictionary() throws Exception
+	{
+		final byte[] tx = transaction();
+
+		final String encoded = Qr.encodeCompressBinary(tx);
+		assertEquals('Y', encoded.charAt(0));
+		assertArrayEquals(tx, Qr.decodeDecompressBinary(encoded));
+	}
+
+	@Test
+	public void legacyGzip() throws Exception
+	{
+		final byte[] tx = transaction();
+
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final GZIPOutputStream gos = new GZIPOutputStream(bos);
+		gos.write(tx);
+		gos.close();
+
+		assertArrayEquals(tx, Qr.decodeDecompressBinary('Z' + Base43.encode(bos.toByteArray())));
+		assertArrayEquals(tx, Qr.decodeDecompressBinary('-' + Base43.encode(tx)));
+	}
+
+	@Test(expected = IOException.class)
+	public void unknownEncoding() throws Exception
+	{
+		Qr.decodeDecompressBinary("Q" + Base43.encode(transaction()));
+	}
+
+	@Test(expected = IOException.class)
+	public void truncated() throws Exception
+	{
+		final String encoded = Qr.encodeCompressBinary(transaction());
+		Qr.decodeDecompressBinary(encoded.substring(0, encoded.length() / 2));
+	}
+
+	private static byte[] transaction()
+	{
+		// pay-to-pubkey-hash, one input and two outputs
+		final Random random = new Random(1);
+		final ByteArrayOutputStream tx = new ByteArrayOutputStream();
+		write(tx, "0100000001");
+		write(tx, random, 32);
+		write(tx, "000000006b483045022100");
+		write(tx, random, 32);
+		write(tx, "0220");
+		write(tx, random, 32);
+		write(tx, "012102");
+		write(tx, random, 32);
+		write(tx, "ffffffff02");
+		for (int i = 0; i < 2; i++)
+		{
+			write(tx, random, 4);
+			write(tx, "000000001976a914");
+			write(tx, random, 20);
+			write(tx, "88ac");
+		}
+		write(tx, "00000000");
+		return tx.toByteArray();
+	}
+
+	private static void write(final ByteArrayOutputStream os, final String hex)
+	{
+		for (int i = 0; i < hex.length(); i += 2)
+			os.write(Integer.parseInt(hex.substring(i, i + 2), 16));
+	}
+
+	private static void write(final ByteArrayOutputStream os, final Random random, final int length)
+	{
+		final byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		os.write(bytes, 0, length);
+	}
+}